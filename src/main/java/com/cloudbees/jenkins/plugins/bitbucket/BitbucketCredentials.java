@@ -39,6 +39,7 @@ import hudson.util.FormValidation;
 import hudson.util.ListBoxModel;
 import jenkins.authentication.tokens.api.AuthenticationTokens;
 import jenkins.scm.api.SCMSourceOwner;
+import org.acegisecurity.Authentication;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.QueryParameter;
@@ -57,18 +58,23 @@ class BitbucketCredentials {
                                                                @CheckForNull String id,
                                                                @NonNull Class<T> type) {
         if (StringUtils.isNotBlank(id) && context != null) {
-            return CredentialsMatchers.firstOrNull(
-                    CredentialsProvider.lookupCredentials(
-                            type,
-                            context,
-                            context instanceof Queue.Task
-                                    ? Tasks.getDefaultAuthenticationOf((Queue.Task) context)
-                                    : ACL.SYSTEM,
-                            URIRequirementBuilder.fromUri(serverUrl).build()
-                    ),
-                    CredentialsMatchers.allOf(
-                            CredentialsMatchers.withId(id),
-                            CredentialsMatchers.anyOf(CredentialsMatchers.instanceOf(type))
+            Authentication authentication = context instanceof Queue.Task
+                    ? Tasks.getDefaultAuthenticationOf((Queue.Task) context)
+                    : ACL.SYSTEM;
+            return BitbucketCredentialsCache.get().lookup(
+                    BitbucketCredentialsCache.key(context.getFullName(), authentication, id, serverUrl, type),
+                    type,
+                    () -> CredentialsMatchers.firstOrNull(
+                            CredentialsProvider.lookupCredentials(
+                                    type,
+                                    context,
+                                    authentication,
+                                    URIRequirementBuilder.fromUri(serverUrl).build()
+                            ),
+                            CredentialsMatchers.allOf(
+                                    CredentialsMatchers.withId(id),
+                                    CredentialsMatchers.anyOf(CredentialsMatchers.instanceOf(type))
+                            )
                     )
             );
         }
@@ -0,0 +1,250 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.hudson.plugins.folder.AbstractFolder;
+import com.cloudbees.hudson.plugins.folder.properties.FolderCredentialsProvider.FolderCredentialsProperty;
+import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.acegisecurity.Authentication;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A short-lived cache of resolved credentials, so that the many clients built during a scan or by event processing
+ * do not each run a full {@link com.cloudbees.plugins.credentials.CredentialsProvider#lookupCredentials} pass.
+ * <p>
+ * Entries are keyed by the full name of the context item, the authentication used for the lookup, the credentials
+ * type and id and the server URL. Which credentials an item can see only depends on its location, so the full name is
+ * a safe identity. The whole cache is cleared whenever a credentials store is saved: the system store, a folder or
+ * a user; entries of the stores that do not report their changes expire after a few seconds.
+ */
+@Restricted(NoExternalUse.class)
+public final class BitbucketCredentialsCache {
+
+    private static final Logger LOGGER = Logger.getLogger(BitbucketCredentialsCache.class.getName());
+
+    /**
+     * Maximum number of cached lookups, {@code 0} disables the cache.
+     */
+    private static final int MAX_ENTRIES = Integer.getInteger(BitbucketCredentialsCache.class.getName()
+            + ".maxEntries", 1024);
+
+    /**
+     * How long in milliseconds a lookup is cached.
+     */
+    private static final long TIME_TO_LIVE = Long.getLong(BitbucketCredentialsCache.class.getName()
+            + ".timeToLive", TimeUnit.SECONDS.toMillis(30));
+
+    private static final BitbucketCredentialsCache INSTANCE = new BitbucketCredentialsCache(MAX_ENTRIES,
+            TIME_TO_LIVE);
+
+    /**
+     * The entries in access order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Incremented by {@link #clear()} so that lookups started before are not cached.
+     */
+    private long generation;
+
+    private final int maxEntries;
+
+    private final long timeToLive;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    BitbucketCredentialsCache(int maxEntries, long timeToLive) {
+        this.maxEntries = maxEntries;
+        this.timeToLive = timeToLive;
+    }
+
+    @NonNull
+    static BitbucketCredentialsCache get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Builds the key of a lookup.
+     *
+     * @param contextName the full name of the context item.
+     * @param authentication the authentication the lookup is performed as.
+     * @param id the credentials id.
+     * @param serverUrl the server URL the credentials are for.
+     * @param type the type of credentials.
+     * @return the key.
+     */
+    @NonNull
+    static String key(@NonNull String contextName, @NonNull Authentication authentication, @NonNull String id,
+                      @CheckForNull String serverUrl, @NonNull Class<? extends StandardCredentials> type) {
+        return contextName + '\n' + authentication.getName() + '\n' + type.getName() + '\n' + id + '\n'
+                + serverUrl;
+    }
+
+    /**
+     * Returns the cached result of a lookup, performing it if missing or expired. Lookups that did not find anything
+     * are cached too.
+     *
+     * @param key the key of the lookup, see {@link #key(String, Authentication, String, String, Class)}.
+     * @param type the type of credentials.
+     * @param lookup performs the lookup.
+     * @param <T> the type of credentials.
+     * @return the credentials or {@code null} if not found.
+     */
+    @CheckForNull
+    <T extends StandardCredentials> T lookup(@NonNull String key, @NonNull Class<T> type,
+                                             @NonNull Supplier<T> lookup) {
+        if (maxEntries <= 0 || timeToLive <= 0) {
+            return lookup.get();
+        }
+        long now = System.currentTimeMillis();
+        long generation;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expires > now) {
+                hits.increment();
+                return type.cast(entry.credentials);
+            }
+            generation = this.generation;
+        }
+        misses.increment();
+        T credentials = lookup.get();
+        synchronized (entries) {
+            if (generation != this.generation) {
+                // a store changed during the lookup
+                return credentials;
+            }
+            entries.put(key, new Entry(credentials, now + timeToLive));
+            while (entries.size() > maxEntries) {
+                entries.remove(entries.keySet().iterator().next());
+            }
+        }
+        return credentials;
+    }
+
+    /**
+     * Drops all the cached lookups.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * Returns the number of cached lookups.
+     *
+     * @return the number of cached lookups.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the number of lookups answered from the cache.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that had to query the credentials providers.
+     *
+     * @return the number of lookups that had to query the credentials providers.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("credentials: %d entries, %d hits, %d misses", size(), getHitCount(), getMissCount());
+    }
+
+    /**
+     * A cached lookup.
+     */
+    private static final class Entry {
+        @CheckForNull
+        private final StandardCredentials credentials;
+        private final long expires;
+
+        Entry(@CheckForNull StandardCredentials credentials, long expires) {
+            this.credentials = credentials;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * Clears the cache when a credentials store may have changed. Folders, multibranch projects and organization
+     * folders are saved over and over while they are scanned, only the folders holding credentials clear it. Changes
+     * to the credentials of other providers are seen once the cached lookups expire.
+     */
+    @Extension
+    public static class Invalidator extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (holdsCredentials(o)) {
+                LOGGER.log(Level.FINER, "Clearing the credentials cache after {0} changed", file);
+                get().clear();
+            }
+        }
+
+        /**
+         * Tells whether the saved object holds a credentials store.
+         *
+         * @param o the saved object.
+         * @return {@code true} if it holds a credentials store.
+         */
+        static boolean holdsCredentials(Saveable o) {
+            if (o instanceof SystemCredentialsProvider || o instanceof User) {
+                return true;
+            }
+            return o instanceof AbstractFolder
+                    && ((AbstractFolder<?>) o).getProperties().get(FolderCredentialsProperty.class) != null;
+        }
+    }
+}
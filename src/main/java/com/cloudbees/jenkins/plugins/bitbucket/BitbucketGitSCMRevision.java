@@ -25,6 +25,7 @@ package com.cloudbees.jenkins.plugins.bitbucket;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.text.ParseException;
 import java.util.Date;
@@ -85,10 +86,11 @@ public class BitbucketGitSCMRevision extends SCMRevisionImpl {
     /**
      * Return the revision date in ISO format.
      *
-     * @return date for this revision
+     * @return date for this revision or {@code null} if unknown
      */
+    @CheckForNull
     public Date getDate() {
-        return (Date) date.clone();
+        return date == null ? null : (Date) date.clone();
     }
 
     @Override
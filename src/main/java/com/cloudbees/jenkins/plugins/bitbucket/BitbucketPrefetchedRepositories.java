@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudRepository;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The repositories listed by a {@link BitbucketSCMNavigator} scan, kept for a few minutes so that the
+ * {@link BitbucketSCMSource} of each repository does not fetch again what the listing already returned: the repository
+ * type, links and privacy and, on Bitbucket Cloud, the main branch.
+ * <p>
+ * The navigator does not keep the sources it builds (existing projects keep their own source instance), hence the
+ * snapshots are looked up by server URL, credentials and repository name.
+ */
+final class BitbucketPrefetchedRepositories {
+
+    /**
+     * How long in milliseconds a listed repository is used instead of fetching it, {@code 0} disables the reuse.
+     */
+    private static final long TIME_TO_LIVE = Long.getLong(BitbucketPrefetchedRepositories.class.getName()
+            + ".timeToLive", TimeUnit.MINUTES.toMillis(5));
+
+    /**
+     * Maximum number of snapshots kept.
+     */
+    private static final int MAX_ENTRIES = Integer.getInteger(BitbucketPrefetchedRepositories.class.getName()
+            + ".maxEntries", 10000);
+
+    private static final BitbucketPrefetchedRepositories INSTANCE =
+            new BitbucketPrefetchedRepositories(TIME_TO_LIVE, MAX_ENTRIES);
+
+    private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    private final long timeToLive;
+
+    private final int maxEntries;
+
+    BitbucketPrefetchedRepositories(long timeToLive, int maxEntries) {
+        this.timeToLive = timeToLive;
+        this.maxEntries = maxEntries;
+    }
+
+    @NonNull
+    static BitbucketPrefetchedRepositories get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Remembers a repository returned by a listing.
+     *
+     * @param serverUrl     the server URL.
+     * @param credentialsId the credentials used to list the repository.
+     * @param repository    the repository.
+     */
+    void put(@NonNull String serverUrl, @CheckForNull String credentialsId, @NonNull BitbucketRepository repository) {
+        if (timeToLive <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (snapshots.size() >= maxEntries) {
+            snapshots.values().removeIf(snapshot -> snapshot.expires <= now);
+            if (snapshots.size() >= maxEntries) {
+                return;
+            }
+        }
+        String defaultBranch = repository instanceof BitbucketCloudRepository
+                ? ((BitbucketCloudRepository) repository).getMainBranchName()
+                : null;
+        snapshots.put(key(serverUrl, credentialsId, repository.getOwnerName(), repository.getRepositoryName()),
+                new Snapshot(repository, defaultBranch, now + timeToLive));
+    }
+
+    /**
+     * Returns the listed repository if it is recent enough.
+     *
+     * @param serverUrl     the server URL.
+     * @param credentialsId the credentials of the source.
+     * @param repoOwner     the repository owner.
+     * @param repository    the repository name.
+     * @return the snapshot or {@code null}.
+     */
+    @CheckForNull
+    Snapshot find(@NonNull String serverUrl, @CheckForNull String credentialsId, @NonNull String repoOwner,
+                  @NonNull String repository) {
+        String key = key(serverUrl, credentialsId, repoOwner, repository);
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            return null;
+        }
+        if (snapshot.expires <= System.currentTimeMillis()) {
+            snapshots.remove(key, snapshot);
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the number of snapshots kept.
+     *
+     * @return the number of snapshots kept.
+     */
+    int size() {
+        return snapshots.size();
+    }
+
+    private static String key(String serverUrl, String credentialsId, String repoOwner, String repository) {
+        // owners and repository names are case insensitive on both Bitbucket flavours
+        return serverUrl + '\n' + credentialsId + '\n' + repoOwner.toLowerCase(Locale.ENGLISH) + '/'
+                + repository.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * A repository as returned by the listing.
+     */
+    static final class Snapshot {
+        @NonNull
+        private final BitbucketRepository repository;
+        @CheckForNull
+        private final String defaultBranch;
+        private final long expires;
+
+        Snapshot(@NonNull BitbucketRepository repository, @CheckForNull String defaultBranch, long expires) {
+            this.repository = repository;
+            this.defaultBranch = defaultBranch;
+            this.expires = expires;
+        }
+
+        @NonNull
+        BitbucketRepository getRepository() {
+            return repository;
+        }
+
+        /**
+         * Returns the default branch if the listing included it.
+         *
+         * @return the default branch or {@code null} if unknown.
+         */
+        @CheckForNull
+        String getDefaultBranch() {
+            return defaultBranch;
+        }
+    }
+}
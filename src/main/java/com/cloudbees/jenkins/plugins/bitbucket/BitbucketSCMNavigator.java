@@ -25,6 +25,7 @@ package com.cloudbees.jenkins.plugins.bitbucket;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiFactory;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiMetrics;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketTeam;
@@ -478,7 +479,8 @@ public class BitbucketSCMNavigator extends SCMNavigator {
                     .format("Connecting to %s using %s%n", serverUrl, CredentialsNameProvider.name(credentials));
         }
         try (final BitbucketSCMNavigatorRequest request = new BitbucketSCMNavigatorContext().withTraits(traits)
-                .newRequest(this, observer)) {
+                .newRequest(this, observer);
+             BitbucketApiMetrics.Scope scan = request.statistics().start(listener, observer.getContext())) {
             SourceFactory sourceFactory = new SourceFactory(request);
             WitnessImpl witness = new WitnessImpl(request, listener);
 
@@ -496,7 +498,12 @@ public class BitbucketSCMNavigator extends SCMNavigator {
                 request.withRepositories(bitbucket.getRepositories(UserRoleInRepository.OWNER));
             }
             for (BitbucketRepository repo : request.repositories()) {
-                if (request.process(repo.getRepositoryName(), sourceFactory, null, witness)) {
+                // the sources of the repositories can use what the listing returned instead of fetching it again
+                BitbucketPrefetchedRepositories.get().put(serverUrl, credentialsId, repo);
+                long start = System.nanoTime();
+                boolean complete = request.process(repo.getRepositoryName(), sourceFactory, null, witness);
+                request.statistics().recordProcess(System.nanoTime() - start);
+                if (complete) {
                     listener.getLogger().format(
                             "%d repositories were processed (query completed)%n", witness.getCount()
                     );
@@ -45,6 +45,11 @@ public class BitbucketSCMNavigatorRequest extends SCMNavigatorRequest {
      */
     private final Map<String, BitbucketRepository> repositoryMap = new TreeMap<>();
 
+    /**
+     * The statistics of the scan served by this request.
+     */
+    private final BitbucketScanStatistics statistics;
+
     /**
      * Constructor.
      *
@@ -56,6 +61,9 @@ public class BitbucketSCMNavigatorRequest extends SCMNavigatorRequest {
                                            @NonNull BitbucketSCMNavigatorContext context,
                                            @NonNull SCMSourceObserver observer) {
         super(source, context, observer);
+        statistics = new BitbucketScanStatistics(source instanceof BitbucketSCMNavigator
+                ? ((BitbucketSCMNavigator) source).getRepoOwner()
+                : source.getClass().getSimpleName());
     }
 
     public void withRepositories(List<? extends BitbucketRepository> repositories) {
@@ -73,4 +81,14 @@ public class BitbucketSCMNavigatorRequest extends SCMNavigatorRequest {
         return this.repositoryMap.get(repositoryName);
     }
 
+    /**
+     * Returns the statistics of the scan served by this request.
+     *
+     * @return the statistics.
+     */
+    @NonNull
+    public BitbucketScanStatistics statistics() {
+        return statistics;
+    }
+
 }
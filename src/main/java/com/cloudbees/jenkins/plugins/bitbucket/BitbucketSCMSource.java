@@ -25,10 +25,12 @@ package com.cloudbees.jenkins.plugins.bitbucket;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiFactory;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiMetrics;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketHref;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketParallel;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryProtocol;
@@ -36,11 +38,14 @@ import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRequestException;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketTeam;
 import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudApiClient;
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudRef;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.UserRoleInRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.AbstractBitbucketEndpoint;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketCloudEndpoint;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketEndpointConfiguration;
 import com.cloudbees.jenkins.plugins.bitbucket.hooks.HasPullRequests;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerBranch;
 import com.cloudbees.plugins.credentials.CredentialsNameProvider;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
 import com.cloudbees.plugins.credentials.common.StandardCredentials;
@@ -77,11 +82,11 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import jenkins.authentication.tokens.api.AuthenticationTokens;
 import jenkins.model.Jenkins;
-import jenkins.plugins.git.AbstractGitSCMSource.SCMRevisionImpl;
 import jenkins.plugins.git.traits.GitBrowserSCMSourceTrait;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHeadCategory;
@@ -132,6 +137,12 @@ public class BitbucketSCMSource extends SCMSource {
     private static final Logger LOGGER = Logger.getLogger(BitbucketSCMSource.class.getName());
     private static final String CLOUD_REPO_TEMPLATE = "{/owner,repo}";
     private static final String SERVER_REPO_TEMPLATE = "/projects{/owner}/repos{/repo}";
+    /**
+     * Whether Bitbucket Cloud branches and tags are split from a single listing of the repository refs when both are
+     * discovered, rather than listed one after the other.
+     */
+    private static final boolean SINGLE_REFS_LISTING =
+            Boolean.getBoolean(BitbucketSCMSource.class.getName() + ".singleRefsListing");
 
     /**
      * Bitbucket URL.
@@ -209,10 +220,11 @@ public class BitbucketSCMSource extends SCMSource {
     private transient String bitbucketServerUrl;
 
     /**
-     * The cache of the repository type.
+     * The repository type, refreshed by every indexing and kept with the source so that {@link #build} does not need
+     * to fetch it.
      */
     @CheckForNull
-    private transient BitbucketRepositoryType repositoryType;
+    private BitbucketRepositoryType repositoryType;
 
     /**
      * The cache of pull request titles for each open PR.
@@ -225,10 +237,11 @@ public class BitbucketSCMSource extends SCMSource {
     @CheckForNull
     private transient /*effectively final*/ Map<String, ContributorMetadataAction> pullRequestContributorCache;
     /**
-     * The cache of the clone links.
+     * The clone links, refreshed by every indexing and kept with the source so that {@link #build} does not need to
+     * fetch them.
      */
     @CheckForNull
-    private transient List<BitbucketHref> cloneLinks = null;
+    private List<BitbucketHref> cloneLinks = null;
 
     /**
      * Constructor.
@@ -495,16 +508,60 @@ public class BitbucketSCMSource extends SCMSource {
 
     public BitbucketRepositoryType getRepositoryType() throws IOException, InterruptedException {
         if (repositoryType == null) {
-            BitbucketRepository r = buildBitbucketClient().getRepository();
-            repositoryType = BitbucketRepositoryType.fromString(r.getScm());
-            Map<String, List<BitbucketHref>> links = r.getLinks();
-            if (links != null && links.containsKey("clone")) {
-                cloneLinks = links.get("clone");
-            }
+            BitbucketPrefetchedRepositories.Snapshot prefetched = prefetched();
+            updateFrom(prefetched != null ? prefetched.getRepository() : buildBitbucketClient().getRepository());
         }
         return repositoryType;
     }
 
+    /**
+     * Returns the repository as recently listed by the {@link BitbucketSCMNavigator} that created this source.
+     *
+     * @return the listed repository or {@code null} if not listed recently.
+     */
+    @CheckForNull
+    private BitbucketPrefetchedRepositories.Snapshot prefetched() {
+        return BitbucketPrefetchedRepositories.get().find(getServerUrl(), getCredentialsId(), repoOwner, repository);
+    }
+
+    /**
+     * Remembers the repository type and clone links of the repository.
+     *
+     * @param r the details of the repository.
+     * @return {@code true} if they changed.
+     */
+    /* package */ boolean updateFrom(@NonNull BitbucketRepository r) {
+        boolean changed = false;
+        BitbucketRepositoryType type = BitbucketRepositoryType.fromString(r.getScm());
+        if (type != null && type != repositoryType) {
+            repositoryType = type;
+            changed = true;
+        }
+        Map<String, List<BitbucketHref>> links = r.getLinks();
+        if (links != null && links.containsKey("clone") && !links.get("clone").equals(cloneLinks)) {
+            cloneLinks = new ArrayList<>(links.get("clone"));
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Remembers the repository type and clone links of the repository, saving the owner if they changed.
+     *
+     * @param r the details of the repository.
+     */
+    private void persistFrom(@NonNull BitbucketRepository r) {
+        SCMSourceOwner owner = getOwner();
+        if (updateFrom(r) && owner != null) {
+            try {
+                owner.save();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not save the clone links of " + repoOwner + "/" + repository
+                        + " for " + owner.getFullName(), e);
+            }
+        }
+    }
+
     public BitbucketApi buildBitbucketClient() {
         return buildBitbucketClient(repoOwner, repository);
     }
@@ -534,7 +591,8 @@ public class BitbucketSCMSource extends SCMSource {
             throws IOException, InterruptedException {
         try (BitbucketSCMSourceRequest request = new BitbucketSCMSourceContext(criteria, observer)
                 .withTraits(traits)
-                .newRequest(this, listener)) {
+                .newRequest(this, listener);
+             BitbucketApiMetrics.Scope scan = request.statistics().start(listener, getOwner())) {
             StandardCredentials scanCredentials = credentials();
             if (scanCredentials == null) {
                 listener.getLogger().format("Connecting to %s with no credentials, anonymous access%n", getServerUrl());
@@ -543,6 +601,9 @@ public class BitbucketSCMSource extends SCMSource {
                         CredentialsNameProvider.name(scanCredentials));
             }
             // this has the side-effect of ensuring that repository type is always populated.
+            if (repositoryType == null) {
+                persistFrom(request.repository());
+            }
             listener.getLogger().format("Repository type: %s%n", WordUtils.capitalizeFully(getRepositoryType().name()));
 
             // populate the request with its data sources
@@ -556,19 +617,24 @@ public class BitbucketSCMSource extends SCMSource {
                                 return hasPrEvent.getPullRequests(BitbucketSCMSource.this);
                             }
 
-                            return (Iterable<BitbucketPullRequest>) buildBitbucketClient().getPullRequests();
+                            return (Iterable<BitbucketPullRequest>) request.getBitbucketApi().getPullRequests();
                         } catch (IOException | InterruptedException e) {
                             throw new BitbucketSCMSource.WrappedException(e);
                         }
                     }
                 });
             }
+            final boolean splitRefs = SINGLE_REFS_LISTING && request.isFetchBranches() && request.isFetchTags()
+                    && request.getBitbucketApi() instanceof BitbucketCloudApiClient;
             if (request.isFetchBranches()) {
                 request.setBranches(new LazyIterable<BitbucketBranch>() {
                     @Override
                     protected Iterable<BitbucketBranch> create() {
                         try {
-                            return (Iterable<BitbucketBranch>) buildBitbucketClient().getBranches();
+                            if (splitRefs) {
+                                return refs(request, false);
+                            }
+                            return (Iterable<BitbucketBranch>) request.getBitbucketApi().getBranches();
                         } catch (IOException | InterruptedException e) {
                             throw new BitbucketSCMSource.WrappedException(e);
                         }
@@ -580,7 +646,10 @@ public class BitbucketSCMSource extends SCMSource {
                     @Override
                     protected Iterable<BitbucketBranch> create() {
                         try {
-                            return (Iterable<BitbucketBranch>) buildBitbucketClient().getTags();
+                            if (splitRefs) {
+                                return refs(request, true);
+                            }
+                            return (Iterable<BitbucketBranch>) request.getBitbucketApi().getTags();
                         } catch (IOException | InterruptedException e) {
                             throw new BitbucketSCMSource.WrappedException(e);
                         }
@@ -606,14 +675,36 @@ public class BitbucketSCMSource extends SCMSource {
         }
     }
 
+    /**
+     * Returns the branches or the tags of a Bitbucket Cloud repository, both split from a single listing of its refs.
+     *
+     * @param request the request, which shares the listing between the branches and the tags.
+     * @param tags    whether to return the tags rather than the branches.
+     * @return the branches or the tags.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    private List<BitbucketBranch> refs(BitbucketSCMSourceRequest request, boolean tags)
+            throws IOException, InterruptedException {
+        BitbucketCloudApiClient client = (BitbucketCloudApiClient) request.getBitbucketApi();
+        List<BitbucketCloudRef> refs = request.memoize("refs", repoOwner + "/" + repository, client::getRefs);
+        List<BitbucketBranch> result = new ArrayList<>();
+        for (BitbucketCloudRef ref : refs) {
+            if (ref.isTag() == tags) {
+                result.add(ref.getBranch());
+            }
+        }
+        return result;
+    }
+
     private void retrievePullRequests(final BitbucketSCMSourceRequest request) throws IOException, InterruptedException {
         final String fullName = repoOwner + "/" + repository;
 
         class Skip extends IOException {
         }
 
-        final BitbucketApi originBitbucket = buildBitbucketClient();
-        if (request.isSkipPublicPRs() && !originBitbucket.isPrivate()) {
+        final BitbucketApi originBitbucket = request.getBitbucketApi();
+        if (request.isSkipPublicPRs() && !request.repository().isPrivate()) {
             request.listener().getLogger().printf("Skipping pull requests for %s (public repository)%n", fullName);
             return;
         }
@@ -634,12 +725,7 @@ public class BitbucketSCMSource extends SCMSource {
             String pullRepoOwner = pull.getSource().getRepository().getOwnerName();
             String pullRepository = pull.getSource().getRepository().getRepositoryName();
             final BitbucketApi pullBitbucket = fork && originBitbucket instanceof BitbucketCloudApiClient
-                    ? BitbucketApiFactory.newInstance(
-                    getServerUrl(),
-                    authenticator(),
-                    pullRepoOwner,
-                    pullRepository
-            )
+                    ? request.getBitbucketApi(pullRepoOwner, pullRepository)
                     : originBitbucket;
             count++;
             livePRs.add(pull.getId());
@@ -676,7 +762,8 @@ public class BitbucketSCMSource extends SCMSource {
                                 originOf(pullRepoOwner, pullRepository), //
                                 strategy);
                     }
-                    if (request.process(head, //
+                    long start = System.nanoTime();
+                    boolean complete = request.process(head, //
                         () -> {
                             // use branch instead of commit to postpone closure initialisation
                             return new BranchHeadCommit(pull.getSource().getBranch());
@@ -715,7 +802,9 @@ public class BitbucketSCMSource extends SCMSource {
                                     }
                                 }
                             }, //
-                            new CriteriaWitness(request))) {
+                            new CriteriaWitness(request));
+                    request.statistics().recordProcess(System.nanoTime() - start);
+                    if (complete) {
                         request.listener().getLogger() //
                                .format("%n  %d pull requests were processed (query completed)%n", count);
                         return;
@@ -740,21 +829,30 @@ public class BitbucketSCMSource extends SCMSource {
         String fullName = repoOwner + "/" + repository;
         request.listener().getLogger().println("Looking up " + fullName + " for branches");
 
-        final BitbucketApi bitbucket = buildBitbucketClient();
-        Map<String, List<BitbucketHref>> links = bitbucket.getRepository().getLinks();
-        if (links != null && links.containsKey("clone")) {
-            cloneLinks = links.get("clone");
+        final BitbucketApi bitbucket = request.getBitbucketApi();
+        persistFrom(request.repository());
+        // the revision of every branch head reads the message, author and date of its commit, fetch them up front
+        // for the branches that will be processed
+        List<BitbucketBranch> included = new ArrayList<>();
+        for (BitbucketBranch branch : request.getBranches()) {
+            if (!request.isExcluded(new BranchSCMHead(branch.getName(), repositoryType))) {
+                included.add(branch);
+            }
         }
+        resolveHeadCommits(included, request.getRequestedOriginBranchNames());
         int count = 0;
         for (final BitbucketBranch branch : request.getBranches()) {
             request.listener().getLogger().println("Checking branch " + branch.getName() + " from " + fullName);
             count++;
-            if (request.process( //
+            long start = System.nanoTime();
+            boolean complete = request.process( //
                     new BranchSCMHead(branch.getName(), repositoryType), //
                 (IntermediateLambda<BitbucketCommit>) () -> new BranchHeadCommit(branch), //
                     new BitbucketProbeFactory<>(bitbucket, request), //
                     new BitbucketRevisionFactory<>(bitbucket), //
-                    new CriteriaWitness(request))) {
+                    new CriteriaWitness(request));
+            request.statistics().recordProcess(System.nanoTime() - start);
+            if (complete) {
                 request.listener().getLogger().format("%n  %d branches were processed (query completed)%n", count);
                 return;
             }
@@ -768,20 +866,22 @@ public class BitbucketSCMSource extends SCMSource {
         String fullName = repoOwner + "/" + repository;
         request.listener().getLogger().println("Looking up " + fullName + " for tags");
 
-        final BitbucketApi bitbucket = buildBitbucketClient();
-        Map<String, List<BitbucketHref>> links = bitbucket.getRepository().getLinks();
-        if (links != null && links.containsKey("clone")) {
-            cloneLinks = links.get("clone");
-        }
+        final BitbucketApi bitbucket = request.getBitbucketApi();
+        persistFrom(request.repository());
+        // every tag head needs the date of its commit, fetch them all up front
+        resolveHeadCommits(request.getTags(), request.getRequestedTagNames());
         int count = 0;
         for (final BitbucketBranch tag : request.getTags()) {
             request.listener().getLogger().println("Checking tag " + tag.getName() + " from " + fullName);
             count++;
-            if (request.process(new BitbucketTagSCMHead(tag.getName(), tag.getDateMillis(), repositoryType), //
+            long start = System.nanoTime();
+            boolean complete = request.process(new BitbucketTagSCMHead(tag.getName(), tag.getDateMillis(), repositoryType), //
                 tag::getRawNode, //
                     new BitbucketProbeFactory<>(bitbucket, request), //
                     new BitbucketRevisionFactory<>(bitbucket), //
-                    new CriteriaWitness(request))) {
+                    new CriteriaWitness(request));
+            request.statistics().recordProcess(System.nanoTime() - start);
+            if (complete) {
                 request.listener().getLogger().format("%n  %d tags were processed (query completed)%n", count);
                 return;
             }
@@ -789,6 +889,44 @@ public class BitbucketSCMSource extends SCMSource {
         request.listener().getLogger().format("%n  %d tags were processed%n", count);
     }
 
+    /**
+     * Fetches the head commit details that are still pending for the given branches or tags concurrently, instead of
+     * one at a time while the heads are processed.
+     *
+     * @param branches       the branches or tags.
+     * @param requestedNames the names to restrict to, or {@code null} for all.
+     * @throws IOException          if the details could not be fetched.
+     * @throws InterruptedException if interrupted.
+     */
+    private static void resolveHeadCommits(Iterable<BitbucketBranch> branches, @CheckForNull Set<String> requestedNames)
+            throws IOException, InterruptedException {
+        List<BitbucketBranch> pending = new ArrayList<>();
+        for (BitbucketBranch branch : branches) {
+            if (requestedNames != null && !requestedNames.contains(branch.getName())) {
+                continue;
+            }
+            if (branch instanceof BitbucketServerBranch && ((BitbucketServerBranch) branch).isHeadCommitPending()
+                    || branch instanceof BitbucketCloudBranch && ((BitbucketCloudBranch) branch).isHeadCommitPending()) {
+                pending.add(branch);
+            }
+        }
+        if (pending.size() < 2) {
+            // nothing to gain, leave it to the lazy lookup
+            return;
+        }
+        long start = System.nanoTime();
+        BitbucketParallel.map(pending, BitbucketParallel.PARALLELISM, branch -> {
+            if (branch instanceof BitbucketServerBranch) {
+                ((BitbucketServerBranch) branch).resolveHeadCommit();
+            } else {
+                ((BitbucketCloudBranch) branch).resolveHeadCommit();
+            }
+            return null;
+        });
+        LOGGER.log(Level.FINE, "Resolved {0} head commits in {1} ms",
+                new Object[]{pending.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)});
+    }
+
     @Override
     protected SCMRevision retrieve(SCMHead head, TaskListener listener) throws IOException, InterruptedException {
         final BitbucketApi bitbucket = buildBitbucketClient();
@@ -903,53 +1041,30 @@ public class BitbucketSCMSource extends SCMSource {
         } else {
             throw new IllegalArgumentException("Either PullRequestSCMHead, BitbucketTagSCMHead or BranchSCMHead required as parameter");
         }
+        // builds are scheduled from this method, the details are refreshed by indexing rather than fetched here
         if (type == null) {
-            if (revision instanceof SCMRevisionImpl) {
-                type = BitbucketRepositoryType.GIT;
-            } else {
-                try {
-                    type = getRepositoryType();
-                } catch (IOException | InterruptedException e) {
-                    type = BitbucketRepositoryType.GIT;
-                    LOGGER.log(Level.SEVERE,
-                            "Could not determine repository type of " + getRepoOwner() + "/" + getRepository()
-                                    + " on " + getServerUrl() + " for " + getOwner() + " assuming " + type, e);
-                }
-            }
+            type = repositoryType != null ? repositoryType : BitbucketRepositoryType.GIT;
         }
-        assert type != null;
+        List<BitbucketHref> cloneLinks = this.cloneLinks;
         if (cloneLinks == null) {
+            // saved before the clone links were kept with the source, fetch them once: only Bitbucket Server knows
+            // its SSH port and base URL
             BitbucketApi bitbucket = buildBitbucketClient();
             try {
-                BitbucketRepository r = bitbucket.getRepository();
-                Map<String, List<BitbucketHref>> links = r.getLinks();
-                if (links != null && links.containsKey("clone")) {
-                    cloneLinks = links.get("clone");
-                }
+                persistFrom(bitbucket.getRepository());
+                cloneLinks = this.cloneLinks;
             } catch (IOException | InterruptedException e) {
                 LOGGER.log(Level.SEVERE,
                         "Could not determine clone links of " + getRepoOwner() + "/" + getRepository()
                                 + " on " + getServerUrl() + " for " + getOwner() + " falling back to generated links",
                         e);
+            }
+            if (cloneLinks == null) {
                 cloneLinks = new ArrayList<>();
-                cloneLinks.add(new BitbucketHref("ssh",
-                        bitbucket.getRepositoryUri(
-                                type,
-                                BitbucketRepositoryProtocol.SSH,
-                                null,
-                                getRepoOwner(),
-                                getRepository()
-                        )
-                ));
-                cloneLinks.add(new BitbucketHref("https",
-                        bitbucket.getRepositoryUri(
-                                type,
-                                BitbucketRepositoryProtocol.HTTP,
-                                null,
-                                getRepoOwner(),
-                                getRepository()
-                        )
-                ));
+                cloneLinks.add(new BitbucketHref("ssh", bitbucket.getRepositoryUri(
+                        type, BitbucketRepositoryProtocol.SSH, null, getRepoOwner(), getRepository())));
+                cloneLinks.add(new BitbucketHref("https", bitbucket.getRepositoryUri(
+                        type, BitbucketRepositoryProtocol.HTTP, null, getRepoOwner(), getRepository())));
             }
         }
         switch (type) {
@@ -1014,14 +1129,22 @@ public class BitbucketSCMSource extends SCMSource {
             throws IOException, InterruptedException {
         // TODO when we have support for trusted events, use the details from event if event was from trusted source
         List<Action> result = new ArrayList<>();
-        final BitbucketApi bitbucket = buildBitbucketClient();
-        BitbucketRepository r = bitbucket.getRepository();
-        Map<String, List<BitbucketHref>> links = r.getLinks();
-        if (links != null && links.containsKey("clone")) {
-            cloneLinks = links.get("clone");
+        BitbucketPrefetchedRepositories.Snapshot prefetched = prefetched();
+        BitbucketApi bitbucket = null;
+        BitbucketRepository r;
+        if (prefetched != null) {
+            r = prefetched.getRepository();
+        } else {
+            bitbucket = buildBitbucketClient();
+            r = bitbucket.getRepository();
         }
+        persistFrom(r);
         result.add(new BitbucketRepoMetadataAction(r));
-        String defaultBranch = bitbucket.getDefaultBranch();
+        String defaultBranch = prefetched != null ? prefetched.getDefaultBranch() : null;
+        if (defaultBranch == null) {
+            // Bitbucket Server listings do not include the default branch
+            defaultBranch = (bitbucket != null ? bitbucket : buildBitbucketClient()).getDefaultBranch();
+        }
         if (StringUtils.isNotBlank(defaultBranch)) {
             result.add(new BitbucketDefaultBranch(repoOwner, repository, defaultBranch));
         }
@@ -1336,6 +1459,7 @@ public class BitbucketSCMSource extends SCMSource {
 
                 @Override
                 public long lastModified() {
+                    long start = System.nanoTime();
                     try {
                         BitbucketCommit commit = null;
                         if (hash != null) {
@@ -1354,6 +1478,8 @@ public class BitbucketSCMSource extends SCMSource {
                         request.listener().getLogger().format("Can not resolve commit by hash [%s] on repository %s/%s%n", //
                                 hash, bitbucket.getOwner(), bitbucket.getRepositoryName());
                         return 0;
+                    } finally {
+                        request.statistics().recordProbe(System.nanoTime() - start);
                     }
                 }
 
@@ -1366,10 +1492,13 @@ public class BitbucketSCMSource extends SCMSource {
                         return false;
                     }
 
+                    long start = System.nanoTime();
                     try {
                         return bitbucket.checkPathExists(hash, path);
                     } catch (InterruptedException e) {
                         throw new IOException("Interrupted", e);
+                    } finally {
+                        request.statistics().recordProbe(System.nanoTime() - start);
                     }
                 }
             };
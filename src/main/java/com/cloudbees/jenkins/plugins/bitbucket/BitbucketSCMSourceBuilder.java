@@ -125,6 +125,12 @@ public class BitbucketSCMSourceBuilder extends SCMSourceBuilder<BitbucketSCMSour
         result.setServerUrl(serverUrl());
         result.setCredentialsId(credentialsId());
         result.setTraits(traits());
+        // start with what the navigator listed, as a source that indexed would have it
+        BitbucketPrefetchedRepositories.Snapshot prefetched = BitbucketPrefetchedRepositories.get()
+                .find(serverUrl(), credentialsId(), repoOwner(), projectName());
+        if (prefetched != null) {
+            result.updateFrom(prefetched.getRepository());
+        }
         return result;
     }
 }
@@ -26,6 +26,7 @@ package com.cloudbees.jenkins.plugins.bitbucket;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Util;
@@ -116,9 +117,9 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
     private Iterable<BitbucketBranch> branches;
     // TODO private Iterable<BitbucketTag> tags;
     /**
-     * The BitbucketApi that is used for the request.
+     * The results of the API reads performed for the request, see {@link #memoize(String, String, Read)}.
      */
-    private BitbucketApi api;
+    private final Map<String, Object> memo = new HashMap<>();
     /**
      * The BitbucketSCMSource that is used for the request.
      */
@@ -132,6 +133,10 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
      */
     @CheckForNull
     private Iterable<BitbucketBranch> tags;
+    /**
+     * The statistics of the scan served by this request.
+     */
+    private final BitbucketScanStatistics statistics;
 
     /**
      * Constructor.
@@ -187,6 +192,7 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
         repoOwner = source.getRepoOwner();
         repository = source.getRepository();
         pullRequestData = new HashMap<>();
+        statistics = new BitbucketScanStatistics(repoOwner + "/" + repository);
     }
 
     /**
@@ -372,18 +378,87 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
     @SuppressWarnings("unused") // Used by extension trait plugin
     public final BitbucketPullRequest getPullRequestById(Integer id) throws IOException, InterruptedException {
         if (!pullRequestData.containsKey(id)) {
-            pullRequestData.put(id, getBitbucketApiClient().getPullRequestById(id));
+            pullRequestData.put(id, getBitbucketApi().getPullRequestById(id));
         }
 
         return pullRequestData.get(id);
     }
 
-    private final BitbucketApi getBitbucketApiClient() {
-        if (api == null) {
-            api = source.buildBitbucketClient();
+    /**
+     * Returns the {@link BitbucketApi} of the scanned repository, shared by everything the request does.
+     *
+     * @return the {@link BitbucketApi} of the scanned repository.
+     */
+    @NonNull
+    public final BitbucketApi getBitbucketApi() {
+        return getBitbucketApi(repoOwner, repository);
+    }
+
+    /**
+     * Returns the {@link BitbucketApi} of a repository, e.g. the origin of a pull request from a fork, shared by
+     * everything the request does.
+     *
+     * @param repoOwner  the owner of the repository.
+     * @param repository the name of the repository.
+     * @return the {@link BitbucketApi} of the repository.
+     */
+    @NonNull
+    public final BitbucketApi getBitbucketApi(@NonNull String repoOwner, @NonNull String repository) {
+        String key = "client " + repoOwner + "/" + repository;
+        synchronized (memo) {
+            BitbucketApi api = (BitbucketApi) memo.get(key);
+            if (api != null) {
+                statistics.recordDeduplicated("client");
+                return api;
+            }
+            api = source.buildBitbucketClient(repoOwner, repository);
+            memo.put(key, api);
+            return api;
         }
+    }
 
-        return api;
+    /**
+     * Returns the details of the scanned repository, fetched once per request.
+     *
+     * @return the details of the scanned repository.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    public final BitbucketRepository repository() throws IOException, InterruptedException {
+        return memoize("repository", repoOwner + "/" + repository, () -> getBitbucketApi().getRepository());
+    }
+
+    /**
+     * Performs an API read at most once per request: later calls with the same key return the first result. Failures
+     * are not remembered.
+     *
+     * @param operation what is read, e.g. {@code repository}, to report the calls saved.
+     * @param key       identifies the read within the operation.
+     * @param read      performs the read.
+     * @param <T>       the type of the result.
+     * @return the result of the read.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @SuppressWarnings("unchecked")
+    public final <T> T memoize(@NonNull String operation, @NonNull String key, @NonNull Read<T> read)
+            throws IOException, InterruptedException {
+        String k = operation + " " + key;
+        synchronized (memo) {
+            if (memo.containsKey(k)) {
+                statistics.recordDeduplicated(operation);
+                return (T) memo.get(k);
+            }
+        }
+        T value = read.read();
+        synchronized (memo) {
+            if (memo.containsKey(k)) {
+                return (T) memo.get(k);
+            }
+            memo.put(k, value);
+            return value;
+        }
     }
 
     /**
@@ -426,6 +501,25 @@ public class BitbucketSCMSourceRequest extends SCMSourceRequest {
         return Util.fixNull(tags);
     }
 
+    /**
+     * Returns the statistics of the scan served by this request.
+     *
+     * @return the statistics.
+     */
+    @NonNull
+    public final BitbucketScanStatistics statistics() {
+        return statistics;
+    }
+
+    /**
+     * An API read.
+     *
+     * @param <T> the type of the result.
+     */
+    public interface Read<T> {
+        T read() throws IOException, InterruptedException;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -0,0 +1,277 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiMetrics;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.TaskListener;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Accounts for the Bitbucket API calls and the time spent by a single scan of a source or a navigator.
+ * <p>
+ * The API calls are received as a {@link BitbucketApiMetrics.Listener} while the scanning thread is
+ * {@linkplain BitbucketApiMetrics#listen listened to}, probes and {@code request.process(...)} calls are timed by the
+ * scan itself. The times overlap: probes and processing include the API requests they perform.
+ */
+public class BitbucketScanStatistics implements BitbucketApiMetrics.Listener {
+
+    @NonNull
+    private final String name;
+    private final long timestamp = System.currentTimeMillis();
+    private final long start = System.nanoTime();
+    private volatile long wallNanos = -1;
+    private final ConcurrentMap<String, Operation> operations = new ConcurrentHashMap<>();
+    private final LongAdder rateLimitWaits = new LongAdder();
+    private final LongAdder rateLimitWaitNanos = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder wireBytes = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder probeNanos = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder processNanos = new LongAdder();
+    private final ConcurrentMap<String, LongAdder> deduplicated = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param name what is scanned, e.g. {@code owner/repository}.
+     */
+    public BitbucketScanStatistics(@NonNull String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void onRequest(@NonNull String operation, @NonNull String status, long nanos) {
+        Operation o = operation(operation);
+        o.calls.increment();
+        o.nanos.add(nanos);
+        // 404 is an expected answer to probes, only count what the scan could not get
+        if (BitbucketApiMetrics.STATUS_ERROR.equals(status) || "429".equals(status) || status.charAt(0) == '5') {
+            o.errors.increment();
+        }
+    }
+
+    @Override
+    public void onBytes(@NonNull String operation, long bytes) {
+        operation(operation).bytes.add(bytes);
+    }
+
+    @Override
+    public void onWireBytes(@NonNull String operation, long bytes) {
+        wireBytes.add(bytes);
+    }
+
+    @Override
+    public void onRateLimitWait(long nanos) {
+        rateLimitWaits.increment();
+        rateLimitWaitNanos.add(nanos);
+    }
+
+    @Override
+    public void onCacheHit() {
+        cacheHits.increment();
+    }
+
+    /**
+     * Starts listening to the API calls of the current thread. Closing the returned scope ends the scan: the summary
+     * is printed and recorded as a {@link BitbucketScanStatisticsAction} of the owner.
+     *
+     * @param listener the listener of the scan.
+     * @param owner    the owner of the scanned source or navigator.
+     * @return the scope of the scan.
+     */
+    @NonNull
+    public BitbucketApiMetrics.Scope start(@NonNull TaskListener listener, @CheckForNull Object owner) {
+        BitbucketApiMetrics.Scope scope = BitbucketApiMetrics.listen(this);
+        return () -> {
+            scope.close();
+            finish();
+            print(listener.getLogger());
+            BitbucketScanStatisticsAction.record(owner, toScan());
+        };
+    }
+
+    /**
+     * Records the time spent by a criteria probe.
+     *
+     * @param nanos the duration in nanoseconds.
+     */
+    public void recordProbe(long nanos) {
+        probes.increment();
+        probeNanos.add(nanos);
+    }
+
+    /**
+     * Records the time spent by a {@code request.process(...)} call.
+     *
+     * @param nanos the duration in nanoseconds.
+     */
+    public void recordProcess(long nanos) {
+        processed.increment();
+        processNanos.add(nanos);
+    }
+
+    /**
+     * Records an API call saved because the scan already had its result.
+     *
+     * @param operation what was not fetched again, e.g. {@code repository}.
+     */
+    public void recordDeduplicated(@NonNull String operation) {
+        deduplicated.computeIfAbsent(operation, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Returns the number of API calls saved because the scan already had their result.
+     *
+     * @return the number of saved calls, by operation.
+     */
+    @NonNull
+    public Map<String, Long> getDeduplicated() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> e : deduplicated.entrySet()) {
+            result.put(e.getKey(), e.getValue().sum());
+        }
+        return result;
+    }
+
+    /**
+     * Marks the end of the scan.
+     */
+    public void finish() {
+        if (wallNanos < 0) {
+            wallNanos = System.nanoTime() - start;
+        }
+    }
+
+    private Operation operation(String operation) {
+        return operations.computeIfAbsent(operation, k -> new Operation());
+    }
+
+    private long wallNanos() {
+        long wall = wallNanos;
+        return wall < 0 ? System.nanoTime() - start : wall;
+    }
+
+    /**
+     * Prints the summary of the scan.
+     *
+     * @param logger where to print.
+     */
+    public void print(@NonNull PrintStream logger) {
+        BitbucketScanStatisticsAction.Scan scan = toScan();
+        logger.format("%nBitbucket API usage for %s: %d requests (%d failed), %s received in %s",
+                name, scan.getRequests(), scan.getErrors(), bytes(scan.getBytes()), millis(scan.getNetworkMillis()));
+        if (scan.getWireBytes() > 0 && scan.getWireBytes() != scan.getBytes()) {
+            logger.format(" (%s compressed)", bytes(scan.getWireBytes()));
+        }
+        logger.println();
+        logger.format("  Scan took %s: %s waiting for rate limits (%d waits), %s in %d probes, "
+                        + "%s processing %d heads, %d cache hits%n",
+                millis(scan.getWallMillis()), millis(scan.getRateLimitWaitMillis()), scan.getRateLimitWaits(),
+                millis(scan.getProbeMillis()), scan.getProbes(), millis(scan.getProcessMillis()), scan.getProcessed(),
+                scan.getCacheHits());
+        Map<String, Long> saved = getDeduplicated();
+        if (!saved.isEmpty()) {
+            StringBuilder calls = new StringBuilder();
+            for (Map.Entry<String, Long> e : saved.entrySet()) {
+                calls.append(calls.length() == 0 ? "" : ", ").append(e.getKey()).append(" x").append(e.getValue());
+            }
+            logger.format("  Reused within the scan: %s%n", calls);
+        }
+        for (BitbucketScanStatisticsAction.OperationStats o : scan.getOperations()) {
+            logger.format("    %-24s %5d requests %10s %10s%n", o.getOperation(), o.getRequests(), bytes(o.getBytes()),
+                    millis(o.getMillis()));
+        }
+    }
+
+    /**
+     * @return the snapshot of the statistics to keep in a {@link BitbucketScanStatisticsAction}.
+     */
+    @NonNull
+    public BitbucketScanStatisticsAction.Scan toScan() {
+        List<BitbucketScanStatisticsAction.OperationStats> ops = new ArrayList<>(operations.size());
+        long requests = 0;
+        long errors = 0;
+        long bytes = 0;
+        long nanos = 0;
+        for (Map.Entry<String, Operation> e : operations.entrySet()) {
+            Operation o = e.getValue();
+            ops.add(new BitbucketScanStatisticsAction.OperationStats(e.getKey(), o.calls.sum(), o.errors.sum(),
+                    o.bytes.sum(), NANOSECONDS.toMillis(o.nanos.sum())));
+            requests += o.calls.sum();
+            errors += o.errors.sum();
+            bytes += o.bytes.sum();
+            nanos += o.nanos.sum();
+        }
+        ops.sort((a, b) -> a.getOperation().compareTo(b.getOperation()));
+        return new BitbucketScanStatisticsAction.Scan(name, timestamp,
+                NANOSECONDS.toMillis(wallNanos()),
+                NANOSECONDS.toMillis(nanos),
+                NANOSECONDS.toMillis(probeNanos.sum()),
+                probes.sum(),
+                NANOSECONDS.toMillis(processNanos.sum()),
+                processed.sum(),
+                requests, errors, bytes, wireBytes.sum(),
+                rateLimitWaits.sum(),
+                NANOSECONDS.toMillis(rateLimitWaitNanos.sum()),
+                cacheHits.sum(),
+                ops);
+    }
+
+    private static String millis(long millis) {
+        if (millis < 1000) {
+            return millis + " ms";
+        }
+        return String.format(Locale.ENGLISH, "%.1f s", millis / 1000.0);
+    }
+
+    private static String bytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ENGLISH, "%.1f KiB", bytes / 1024.0);
+        }
+        return String.format(Locale.ENGLISH, "%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static final class Operation {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+}
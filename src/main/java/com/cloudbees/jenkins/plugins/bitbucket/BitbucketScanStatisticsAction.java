@@ -0,0 +1,375 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Action;
+import hudson.model.InvisibleAction;
+import hudson.model.Item;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import jenkins.model.TransientActionFactory;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Keeps the statistics of the latest scans of an {@link Item}, see {@link BitbucketScanStatistics}.
+ * <p>
+ * The history is kept in a file of its own in the directory of the owner, so that scans do not rewrite the
+ * configuration of the owner and the history survives restarts. It is exposed through the remote API of the owner.
+ */
+@ExportedBean
+public class BitbucketScanStatisticsAction extends InvisibleAction {
+
+    private static final Logger LOGGER = Logger.getLogger(BitbucketScanStatisticsAction.class.getName());
+
+    /**
+     * How many scans are kept per owner.
+     */
+    private static final int HISTORY_SIZE = Math.max(1,
+            Integer.getInteger(BitbucketScanStatisticsAction.class.getName() + ".historySize", 20));
+
+    /**
+     * The name of the file holding the history, in the directory of the owner.
+     */
+    private static final String FILE_NAME = BitbucketScanStatisticsAction.class.getName() + ".xml";
+
+    /**
+     * The history of the items looked up since startup, read from their file the first time.
+     */
+    private static final Map<Item, BitbucketScanStatisticsAction> ACTIONS = new WeakHashMap<>();
+
+    /**
+     * The latest scans, most recent first.
+     */
+    private final List<Scan> scans = new ArrayList<>();
+
+    /**
+     * Records the statistics of a scan of the owner.
+     *
+     * @param owner the owner of the source or navigator that was scanned, ignored if not an {@link Item}.
+     * @param scan  the statistics.
+     */
+    public static void record(@CheckForNull Object owner, @NonNull Scan scan) {
+        if (!(owner instanceof Item)) {
+            return;
+        }
+        Item item = (Item) owner;
+        BitbucketScanStatisticsAction action = forItem(item);
+        action.add(scan);
+        action.save(item);
+    }
+
+    /**
+     * @param owner the owner.
+     * @return the statistics of the owner, if it was ever scanned.
+     */
+    @CheckForNull
+    public static BitbucketScanStatisticsAction of(@NonNull Item owner) {
+        BitbucketScanStatisticsAction action = forItem(owner);
+        return action.getLastScan() == null ? null : action;
+    }
+
+    @NonNull
+    private static BitbucketScanStatisticsAction forItem(@NonNull Item item) {
+        synchronized (ACTIONS) {
+            BitbucketScanStatisticsAction action = ACTIONS.get(item);
+            if (action != null) {
+                return action;
+            }
+        }
+        // read outside the lock, every item is looked up when its actions are listed
+        BitbucketScanStatisticsAction loaded = load(item);
+        synchronized (ACTIONS) {
+            BitbucketScanStatisticsAction action = ACTIONS.get(item);
+            if (action == null) {
+                action = loaded;
+                ACTIONS.put(item, action);
+            }
+            return action;
+        }
+    }
+
+    @NonNull
+    private static BitbucketScanStatisticsAction load(@NonNull Item item) {
+        XmlFile file = file(item);
+        if (file != null && file.exists()) {
+            try {
+                Object history = file.read();
+                if (history instanceof BitbucketScanStatisticsAction) {
+                    return (BitbucketScanStatisticsAction) history;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not read the scan statistics of " + item.getFullName(), e);
+            }
+        }
+        return new BitbucketScanStatisticsAction();
+    }
+
+    @CheckForNull
+    private static XmlFile file(@NonNull Item item) {
+        File rootDir = item.getRootDir();
+        return rootDir == null ? null : new XmlFile(Jenkins.XSTREAM2, new File(rootDir, FILE_NAME));
+    }
+
+    synchronized void add(@NonNull Scan scan) {
+        scans.add(0, scan);
+        while (scans.size() > HISTORY_SIZE) {
+            scans.remove(scans.size() - 1);
+        }
+    }
+
+    private synchronized void save(@NonNull Item item) {
+        XmlFile file = file(item);
+        if (file == null) {
+            return;
+        }
+        try {
+            file.write(this);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not save the scan statistics of " + item.getFullName(), e);
+        }
+    }
+
+    /**
+     * @return the latest scans, most recent first.
+     */
+    @Exported
+    @NonNull
+    public synchronized List<Scan> getScans() {
+        return new ArrayList<>(scans);
+    }
+
+    /**
+     * @return the most recent scan.
+     */
+    @CheckForNull
+    public synchronized Scan getLastScan() {
+        return scans.isEmpty() ? null : scans.get(0);
+    }
+
+    /**
+     * Contributes the {@link BitbucketScanStatisticsAction} of scanned items.
+     */
+    @Extension
+    public static class ActionFactory extends TransientActionFactory<Item> {
+
+        @Override
+        public Class<Item> type() {
+            return Item.class;
+        }
+
+        @NonNull
+        @Override
+        public Collection<? extends Action> createFor(@NonNull Item target) {
+            BitbucketScanStatisticsAction action = of(target);
+            return action == null ? Collections.<Action>emptyList() : Collections.singletonList(action);
+        }
+    }
+
+    /**
+     * The statistics of one scan.
+     */
+    @ExportedBean(defaultVisibility = 2)
+    public static final class Scan {
+        private final String name;
+        private final long timestamp;
+        private final long wallMillis;
+        private final long networkMillis;
+        private final long probeMillis;
+        private final long probes;
+        private final long processMillis;
+        private final long processed;
+        private final long requests;
+        private final long errors;
+        private final long bytes;
+        private final long wireBytes;
+        private final long rateLimitWaits;
+        private final long rateLimitWaitMillis;
+        private final long cacheHits;
+        private final List<OperationStats> operations;
+
+        public Scan(@NonNull String name, long timestamp, long wallMillis, long networkMillis, long probeMillis,
+                    long probes, long processMillis, long processed, long requests, long errors, long bytes,
+                    long wireBytes, long rateLimitWaits, long rateLimitWaitMillis, long cacheHits,
+                    @NonNull List<OperationStats> operations) {
+            this.name = name;
+            this.timestamp = timestamp;
+            this.wallMillis = wallMillis;
+            this.networkMillis = networkMillis;
+            this.probeMillis = probeMillis;
+            this.probes = probes;
+            this.processMillis = processMillis;
+            this.processed = processed;
+            this.requests = requests;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.wireBytes = wireBytes;
+            this.rateLimitWaits = rateLimitWaits;
+            this.rateLimitWaitMillis = rateLimitWaitMillis;
+            this.cacheHits = cacheHits;
+            this.operations = new ArrayList<>(operations);
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Exported
+        public long getWallMillis() {
+            return wallMillis;
+        }
+
+        @Exported
+        public long getNetworkMillis() {
+            return networkMillis;
+        }
+
+        @Exported
+        public long getProbeMillis() {
+            return probeMillis;
+        }
+
+        @Exported
+        public long getProbes() {
+            return probes;
+        }
+
+        @Exported
+        public long getProcessMillis() {
+            return processMillis;
+        }
+
+        @Exported
+        public long getProcessed() {
+            return processed;
+        }
+
+        @Exported
+        public long getRequests() {
+            return requests;
+        }
+
+        @Exported
+        public long getErrors() {
+            return errors;
+        }
+
+        @Exported
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the bytes received on the wire, less than {@link #getBytes()} when responses are compressed.
+         */
+        @Exported
+        public long getWireBytes() {
+            return wireBytes;
+        }
+
+        @Exported
+        public long getRateLimitWaits() {
+            return rateLimitWaits;
+        }
+
+        @Exported
+        public long getRateLimitWaitMillis() {
+            return rateLimitWaitMillis;
+        }
+
+        @Exported
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        @Exported
+        public List<OperationStats> getOperations() {
+            return Collections.unmodifiableList(operations);
+        }
+    }
+
+    /**
+     * The API calls of one operation during a scan.
+     */
+    @ExportedBean(defaultVisibility = 3)
+    public static final class OperationStats {
+        private final String operation;
+        private final long requests;
+        private final long errors;
+        private final long bytes;
+        private final long millis;
+
+        public OperationStats(@NonNull String operation, long requests, long errors, long bytes, long millis) {
+            this.operation = operation;
+            this.requests = requests;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.millis = millis;
+        }
+
+        @Exported
+        public String getOperation() {
+            return operation;
+        }
+
+        @Exported
+        public long getRequests() {
+            return requests;
+        }
+
+        @Exported
+        public long getErrors() {
+            return errors;
+        }
+
+        @Exported
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Exported
+        public long getMillis() {
+            return millis;
+        }
+    }
+}
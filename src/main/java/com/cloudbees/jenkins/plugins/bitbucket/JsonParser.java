@@ -23,15 +23,17 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
-import com.google.common.base.Charsets;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.NoExternalUse;
 
@@ -43,22 +45,45 @@ public final class JsonParser {
 
     public static final ObjectMapper mapper = createObjectMapper();
 
+    /**
+     * The readers per target type, so that the deserializer of a type is looked up only once.
+     */
+    private static final ConcurrentMap<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+
     public static <T> T toJava(String data, Class<T> type) throws IOException {
-        return toJava(new StringReader(data), type);
+        return reader(type).readValue(data);
     }
 
+    /**
+     * Parses the UTF-8 bytes of the stream without decoding them to a {@link String} first.
+     */
     public static <T> T toJava(InputStream data, Class<T> type) throws IOException {
-        return toJava(new InputStreamReader(data, Charsets.UTF_8), type);
+        return reader(type).readValue(data);
     }
 
     public static <T> T toJava(Reader data, Class<T> type) throws IOException{
-        return mapper.readValue(data, type);
+        return reader(type).readValue(data);
+    }
+
+    public static <T> T toJava(String data, TypeReference<T> type) throws IOException {
+        return reader(type.getType()).readValue(data);
+    }
+
+    /**
+     * Parses the UTF-8 bytes of the stream without decoding them to a {@link String} first.
+     */
+    public static <T> T toJava(InputStream data, TypeReference<T> type) throws IOException {
+        return reader(type.getType()).readValue(data);
     }
 
     public static String toJson(Object value) throws IOException {
         return mapper.writeValueAsString(value);
     }
 
+    private static ObjectReader reader(Type type) {
+        return readers.computeIfAbsent(type, t -> mapper.readerFor(mapper.constructType(t)));
+    }
+
     private static ObjectMapper createObjectMapper(){
         ObjectMapper mapper = new ObjectMapper();
         mapper.setDateFormat(new StdDateFormat());
@@ -192,6 +192,22 @@ public interface BitbucketApi {
     @NonNull
     String resolveSourceFullHash(@NonNull BitbucketPullRequest pull) throws IOException, InterruptedException;
 
+    /**
+     * Returns the files changed by a commit relative to another.
+     *
+     * @param fromHash the hash of the commit the changes are relative to
+     * @param toHash the hash of the commit holding the changes
+     * @return the changed files
+     * @throws UnsupportedOperationException if the implementation cannot list the changes.
+     * @throws IOException if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    default List<BitbucketChange> getChanges(@NonNull String fromHash, @NonNull String toHash)
+            throws IOException, InterruptedException {
+        throw new UnsupportedOperationException("Listing the changes between commits is not supported");
+    }
+
     /**
      * Register a webhook on the repository.
      *
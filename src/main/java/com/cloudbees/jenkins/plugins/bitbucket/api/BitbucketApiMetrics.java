@@ -0,0 +1,804 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Request metrics of the Bitbucket API clients: a request counter, a latency histogram and the received bytes for
+ * every endpoint, operation and HTTP status. The received bytes are counted once decoded and as received on the wire,
+ * which differ for compressed responses, see {@link #wireBytesInterceptor()}.
+ * <p>
+ * Every {@link Timer} is published as an MXBean named
+ * {@code com.cloudbees.jenkins.plugins.bitbucket:type=ApiRequests,endpoint="...",operation=...,status=...} and the
+ * totals as {@code com.cloudbees.jenkins.plugins.bitbucket:type=ApiMetrics}, unless the
+ * {@code com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiMetrics.disableJmx} system property is set.
+ */
+public final class BitbucketApiMetrics implements BitbucketApiMetricsMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(BitbucketApiMetrics.class.getName());
+    private static final String DOMAIN = "com.cloudbees.jenkins.plugins.bitbucket";
+    private static final boolean DISABLE_JMX = Boolean.getBoolean(BitbucketApiMetrics.class.getName() + ".disableJmx");
+
+    /**
+     * The upper bounds of the latency histogram buckets, in milliseconds. A last bucket counts everything slower.
+     */
+    static final long[] BUCKETS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000};
+
+    /**
+     * Status used for requests that failed without an HTTP response.
+     */
+    public static final String STATUS_ERROR = "error";
+
+    private static final BitbucketApiMetrics INSTANCE = new BitbucketApiMetrics(!DISABLE_JMX);
+
+    private static final ThreadLocal<Listener> LISTENER = new ThreadLocal<>();
+
+    /**
+     * The wire bytes counter of the request the current thread is executing.
+     */
+    private static final ThreadLocal<WireBytes> WIRE_BYTES = new ThreadLocal<>();
+
+    /**
+     * Counts the bytes of encoded response bodies before the client decodes them. Response interceptors run in order,
+     * this one is added first so that it sees the body as received.
+     */
+    private static final HttpResponseInterceptor WIRE_BYTES_INTERCEPTOR = (response, context) -> {
+        WireBytes wire = WIRE_BYTES.get();
+        HttpEntity entity = response.getEntity();
+        if (wire != null && entity != null && entity.getContentEncoding() != null
+                && !"identity".equalsIgnoreCase(entity.getContentEncoding().getValue())) {
+            wire.encoded = true;
+            response.setEntity(new WireCountingEntity(entity, wire));
+        }
+    };
+
+    /**
+     * Maps request paths to the {@link BitbucketApi} operation issuing them, first match wins. Paths are the raw
+     * request path, the Cloud paths start with {@code /2.0} and the Server ones with {@code /rest}.
+     */
+    private static final List<Route> ROUTES = Arrays.asList(
+            new Route("HEAD", "/src/", "checkPathExists"),
+            new Route(null, "/src/", "getFileContent"),
+            new Route(null, "/browse(/|$)", "browse"),
+            new Route(null, "/diffstat/", "getChanges"),
+            new Route(null, "/compare/changes$", "getChanges"),
+            new Route(null, "/pullrequests/[^/]+/commits$", "getPullRequestCommits"),
+            new Route(null, "/pull-requests/[^/]+/merge$", "getPullRequestCanMerge"),
+            new Route(null, "/pull-requests/[^/]+/changes$", "getPullRequestChanges"),
+            new Route(null, "/(pullrequests|pull-requests)/[^/]+$", "getPullRequestById"),
+            new Route(null, "/(pullrequests|pull-requests)$", "getPullRequests"),
+            new Route(null, "/branches/default$", "getDefaultBranch"),
+            new Route(null, "/branches$", "getBranches"),
+            new Route(null, "/tags$", "getTags"),
+            new Route(null, "/refs$", "getRefs"),
+            new Route(null, "/statuses/build$", "postBuildStatus"),
+            new Route(null, "^/rest/build-status/", "postBuildStatus"),
+            new Route(null, "/commits?/[^/]+/(build|comments)$", "postCommitComment"),
+            new Route(null, "/commits?/[^/]+$", "resolveCommit"),
+            new Route("GET", "/(hooks|webhooks|configurations)(/|$)", "getWebHooks"),
+            new Route("POST", "/(hooks|webhooks|configurations)(/|$)", "registerCommitWebHook"),
+            new Route("PUT", "/(hooks|webhooks|configurations)(/|$)", "updateCommitWebHook"),
+            new Route("DELETE", "/(hooks|webhooks|configurations)(/|$)", "removeCommitWebHook"),
+            new Route(null, "/avatar", "getTeamAvatar"),
+            new Route(null, "/teams/[^/]+$", "getTeam"),
+            new Route(null, "/projects/[^/]+/repos/[^/]+$", "getRepository"),
+            new Route(null, "/projects/[^/]+/repos$", "getRepositories"),
+            new Route(null, "/projects/[^/]+$", "getTeam"),
+            new Route(null, "/repositories/[^/]+/[^/]+/?$", "getRepository"),
+            new Route(null, "/repositories/[^/]+$", "getRepositories")
+    );
+
+    private final boolean jmx;
+    private final ConcurrentMap<Key, Timer> timers = new ConcurrentHashMap<>();
+    private final LongAdder rateLimitWaits = new LongAdder();
+    private final LongAdder rateLimitWaitNanos = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder coalescedRequests = new LongAdder();
+
+    BitbucketApiMetrics(boolean jmx) {
+        this.jmx = jmx;
+        if (jmx) {
+            register(this, DOMAIN + ":type=ApiMetrics");
+        }
+    }
+
+    @NonNull
+    public static BitbucketApiMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Makes the {@link Listener} receive the events recorded by the current thread until the returned scope is
+     * closed, e.g. to account for the requests of a single scan.
+     *
+     * @param listener the listener.
+     * @return the scope, closing it restores the previous listener of the thread.
+     */
+    @NonNull
+    public static Scope listen(@NonNull Listener listener) {
+        Listener previous = LISTENER.get();
+        LISTENER.set(listener);
+        return () -> {
+            if (previous == null) {
+                LISTENER.remove();
+            } else {
+                LISTENER.set(previous);
+            }
+        };
+    }
+
+    /**
+     * @return the listener of the current thread, if any.
+     */
+    @CheckForNull
+    public static Listener listener() {
+        return LISTENER.get();
+    }
+
+    /**
+     * Returns the interceptor recording the bytes of encoded responses as received on the wire, next to the decoded
+     * ones. It must be added first to the client so that it sees the body before it is decoded.
+     *
+     * @return the interceptor.
+     */
+    @NonNull
+    public static HttpResponseInterceptor wireBytesInterceptor() {
+        return WIRE_BYTES_INTERCEPTOR;
+    }
+
+    /**
+     * Executes a request and records its latency, status and response size against the operation derived from
+     * the request. The bytes are counted as the response body is read.
+     *
+     * @param endpoint the Bitbucket endpoint URL the request is made to.
+     * @param request the request.
+     * @param execution performs the request.
+     * @return the response.
+     * @throws IOException if the request failed, it is recorded with status {@link #STATUS_ERROR}.
+     */
+    @NonNull
+    public CloseableHttpResponse execute(@NonNull String endpoint, @NonNull HttpRequestBase request,
+                                         @NonNull Execution execution) throws IOException {
+        String operation = operationOf(request.getMethod(), request.getURI().getRawPath(),
+                request.getURI().getRawQuery());
+        Listener listener = LISTENER.get();
+        WireBytes wire = new WireBytes();
+        WireBytes previous = WIRE_BYTES.get();
+        WIRE_BYTES.set(wire);
+        long start = System.nanoTime();
+        CloseableHttpResponse response;
+        try {
+            response = execution.execute();
+        } catch (IOException | RuntimeException e) {
+            long nanos = System.nanoTime() - start;
+            timer(endpoint, operation, STATUS_ERROR).update(nanos);
+            if (listener != null) {
+                listener.onRequest(operation, STATUS_ERROR, nanos);
+            }
+            throw e;
+        } finally {
+            if (previous == null) {
+                WIRE_BYTES.remove();
+            } else {
+                WIRE_BYTES.set(previous);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        String status = Integer.toString(response.getStatusLine().getStatusCode());
+        Timer timer = timer(endpoint, operation, status);
+        timer.update(nanos);
+        if (listener != null) {
+            listener.onRequest(operation, status, nanos);
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            if (wire.encoded) {
+                timer.compressed.increment();
+                wire.bind(timer, listener);
+            }
+            // the body is read after this point, the wire bytes of a plain body are its decoded bytes
+            response.setEntity(new CountingEntity(entity, timer, listener, !wire.encoded));
+        }
+        return response;
+    }
+
+    /**
+     * Records the time spent waiting for a rate limit to expire before retrying a request.
+     *
+     * @param nanos the wait duration.
+     */
+    public void recordRateLimitWait(long nanos) {
+        rateLimitWaits.increment();
+        rateLimitWaitNanos.add(nanos);
+        Listener listener = LISTENER.get();
+        if (listener != null) {
+            listener.onRateLimitWait(nanos);
+        }
+    }
+
+    /**
+     * Records a response served from a client side cache instead of a request.
+     */
+    public void recordCacheHit() {
+        cacheHits.increment();
+        Listener listener = LISTENER.get();
+        if (listener != null) {
+            listener.onCacheHit();
+        }
+    }
+
+    /**
+     * Records a request answered by an identical request in flight, see {@link BitbucketRequestCoalescer}.
+     */
+    public void recordCoalescedRequest() {
+        coalescedRequests.increment();
+    }
+
+    /**
+     * Derives the {@link BitbucketApi} operation name of a request.
+     *
+     * @param method the HTTP method.
+     * @param path the raw request path.
+     * @param query the raw query, if any.
+     * @return the operation name, {@code other} if the request is not recognized.
+     */
+    @NonNull
+    static String operationOf(@NonNull String method, @CheckForNull String path, @CheckForNull String query) {
+        if (path == null) {
+            return "other";
+        }
+        if (query != null && query.contains("fields=mainbranch")) {
+            return "getDefaultBranch";
+        }
+        for (Route route : ROUTES) {
+            if (route.matches(method, path)) {
+                return route.operation;
+            }
+        }
+        return "other";
+    }
+
+    @NonNull
+    Timer timer(@NonNull String endpoint, @NonNull String operation, @NonNull String status) {
+        return timers.computeIfAbsent(new Key(endpoint, operation, status), key -> {
+            Timer timer = new Timer(key);
+            if (jmx) {
+                register(timer, DOMAIN + ":type=ApiRequests,endpoint=" + ObjectName.quote(key.endpoint)
+                        + ",operation=" + ObjectName.quote(key.operation) + ",status=" + key.status);
+            }
+            return timer;
+        });
+    }
+
+    /**
+     * @return a snapshot of all the timers, sorted by endpoint, operation and status.
+     */
+    @NonNull
+    public List<Timer> timers() {
+        List<Timer> result = new ArrayList<>(timers.values());
+        result.sort((a, b) -> a.key.compareTo(b.key));
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public long getRequestCount() {
+        long count = 0;
+        for (Timer timer : timers.values()) {
+            count += timer.getCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getErrorCount() {
+        long count = 0;
+        for (Timer timer : timers.values()) {
+            if (STATUS_ERROR.equals(timer.getStatus()) || timer.getStatus().startsWith("5")) {
+                count += timer.getCount();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getRateLimitedCount() {
+        long count = 0;
+        for (Timer timer : timers.values()) {
+            if ("429".equals(timer.getStatus())) {
+                count += timer.getCount();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long getRateLimitWaitCount() {
+        return rateLimitWaits.sum();
+    }
+
+    @Override
+    public long getRateLimitWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(rateLimitWaitNanos.sum());
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getCoalescedRequestCount() {
+        return coalescedRequests.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        long bytes = 0;
+        for (Timer timer : timers.values()) {
+            bytes += timer.getBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getWireBytesReceived() {
+        long bytes = 0;
+        for (Timer timer : timers.values()) {
+            bytes += timer.getWireBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getCompressedCount() {
+        long count = 0;
+        for (Timer timer : timers.values()) {
+            count += timer.getCompressedCount();
+        }
+        return count;
+    }
+
+    private static void register(Object bean, String name) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(name);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(bean, objectName);
+            }
+        } catch (JMException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not register MBean " + name, e);
+        }
+    }
+
+    /**
+     * Performs the instrumented request.
+     */
+    public interface Execution {
+        CloseableHttpResponse execute() throws IOException;
+    }
+
+    /**
+     * Receives the events recorded by a thread while it is {@linkplain #listen listened to}. Implementations must be
+     * thread safe, the response bytes are reported by whichever thread reads the response.
+     */
+    public interface Listener {
+        void onRequest(@NonNull String operation, @NonNull String status, long nanos);
+
+        void onBytes(@NonNull String operation, long bytes);
+
+        /**
+         * Receives the bytes of a response body as received on the wire, before it is decoded.
+         *
+         * @param operation the operation.
+         * @param bytes the number of bytes.
+         */
+        default void onWireBytes(@NonNull String operation, long bytes) {
+        }
+
+        void onRateLimitWait(long nanos);
+
+        void onCacheHit();
+    }
+
+    /**
+     * The scope of a {@link Listener}.
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /**
+     * The JMX view of a {@link Timer}.
+     */
+    public interface TimerMXBean {
+        String getEndpoint();
+
+        String getOperation();
+
+        String getStatus();
+
+        long getCount();
+
+        long getBytes();
+
+        long getWireBytes();
+
+        long getCompressedCount();
+
+        double getMeanMillis();
+
+        long getMaxMillis();
+
+        long get50thPercentileMillis();
+
+        long get95thPercentileMillis();
+
+        long get99thPercentileMillis();
+
+        long[] getBucketBoundsMillis();
+
+        long[] getBucketCounts();
+    }
+
+    /**
+     * The requests of one endpoint, operation and status.
+     */
+    public static final class Timer implements TimerMXBean {
+        private final Key key;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder wireBytes = new LongAdder();
+        private final LongAdder compressed = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+
+        Timer(Key key) {
+            this.key = key;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void update(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket].increment();
+        }
+
+        void addBytes(long n) {
+            bytes.add(n);
+        }
+
+        void addWireBytes(long n) {
+            wireBytes.add(n);
+        }
+
+        @Override
+        public String getEndpoint() {
+            return key.endpoint;
+        }
+
+        @Override
+        public String getOperation() {
+            return key.operation;
+        }
+
+        @Override
+        public String getStatus() {
+            return key.status;
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        @Override
+        public long getWireBytes() {
+            return wireBytes.sum();
+        }
+
+        @Override
+        public long getCompressedCount() {
+            return compressed.sum();
+        }
+
+        /**
+         * @return the total time spent in these requests, in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / (n * 1e6);
+        }
+
+        @Override
+        public long getMaxMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+        }
+
+        @Override
+        public long get50thPercentileMillis() {
+            return percentile(0.50);
+        }
+
+        @Override
+        public long get95thPercentileMillis() {
+            return percentile(0.95);
+        }
+
+        @Override
+        public long get99thPercentileMillis() {
+            return percentile(0.99);
+        }
+
+        @Override
+        public long[] getBucketBoundsMillis() {
+            return BUCKETS.clone();
+        }
+
+        @Override
+        public long[] getBucketCounts() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+
+        /**
+         * Estimates a percentile as the upper bound of the bucket it falls in, the slowest bucket reports the
+         * maximum.
+         */
+        long percentile(double quantile) {
+            long[] counts = getBucketCounts();
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i < BUCKETS.length ? Math.min(BUCKETS[i], getMaxMillis()) : getMaxMillis();
+                }
+            }
+            return getMaxMillis();
+        }
+    }
+
+    static final class Key implements Comparable<Key> {
+        final String endpoint;
+        final String operation;
+        final String status;
+
+        Key(String endpoint, String operation, String status) {
+            this.endpoint = endpoint;
+            this.operation = operation;
+            this.status = status;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return endpoint.equals(key.endpoint) && operation.equals(key.operation) && status.equals(key.status);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(endpoint, operation, status);
+        }
+
+        @Override
+        public int compareTo(Key o) {
+            int result = endpoint.compareTo(o.endpoint);
+            if (result == 0) {
+                result = operation.compareTo(o.operation);
+            }
+            return result == 0 ? status.compareTo(o.status) : result;
+        }
+    }
+
+    private static final class Route {
+        private final String method;
+        private final Pattern path;
+        private final String operation;
+
+        Route(@CheckForNull String method, String path, String operation) {
+            this.method = method;
+            this.path = Pattern.compile(path);
+            this.operation = operation;
+        }
+
+        boolean matches(String method, String path) {
+            return (this.method == null || this.method.equals(method)) && this.path.matcher(path).find();
+        }
+    }
+
+    /**
+     * Where the wire bytes of an encoded response go, known once the response status is.
+     */
+    private static final class WireBytes {
+        private boolean encoded;
+        private volatile Timer timer;
+        @CheckForNull
+        private volatile Listener listener;
+
+        void bind(Timer timer, @CheckForNull Listener listener) {
+            this.listener = listener;
+            this.timer = timer;
+        }
+
+        void count(long n) {
+            Timer timer = this.timer;
+            if (timer != null) {
+                timer.addWireBytes(n);
+                Listener listener = this.listener;
+                if (listener != null) {
+                    listener.onWireBytes(timer.getOperation(), n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read from the encoded response body.
+     */
+    private static final class WireCountingEntity extends HttpEntityWrapper {
+        private final WireBytes wire;
+
+        WireCountingEntity(HttpEntity entity, WireBytes wire) {
+            super(entity);
+            this.wire = wire;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return countingStream(super.getContent(), wire::count);
+        }
+    }
+
+    /**
+     * Counts the bytes read from the response body.
+     */
+    private static final class CountingEntity extends HttpEntityWrapper {
+        private final Timer timer;
+        @CheckForNull
+        private final Listener listener;
+        private final boolean plain;
+
+        CountingEntity(HttpEntity entity, Timer timer, @CheckForNull Listener listener, boolean plain) {
+            super(entity);
+            this.timer = timer;
+            this.listener = listener;
+            this.plain = plain;
+        }
+
+        private void count(long n) {
+            timer.addBytes(n);
+            if (plain) {
+                timer.addWireBytes(n);
+            }
+            if (listener != null) {
+                listener.onBytes(timer.getOperation(), n);
+                if (plain) {
+                    listener.onWireBytes(timer.getOperation(), n);
+                }
+            }
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return countingStream(super.getContent(), this::count);
+        }
+    }
+
+    private interface ByteCounter {
+        void count(long n);
+    }
+
+    @CheckForNull
+    private static InputStream countingStream(@CheckForNull InputStream content, ByteCounter counter) {
+        return content == null ? null : new FilterInputStream(content) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    counter.count(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    counter.count(n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                counter.count(skipped);
+                return skipped;
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016-2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * A file changed between two commits.
+ */
+public class BitbucketChange {
+
+    /**
+     * The kind of change.
+     */
+    public enum Type {
+        ADDED, MODIFIED, DELETED, RENAMED, COPIED
+    }
+
+    private final Type type;
+    private final String path;
+    private final String srcPath;
+
+    /**
+     * Constructor.
+     *
+     * @param type the kind of change.
+     * @param path the path of the file after the change, or before the change for a deleted file.
+     * @param srcPath the path of the file before the change when renamed or copied.
+     */
+    public BitbucketChange(@NonNull Type type, @NonNull String path, @CheckForNull String srcPath) {
+        this.type = type;
+        this.path = path;
+        this.srcPath = srcPath;
+    }
+
+    @NonNull
+    public Type getType() {
+        return type;
+    }
+
+    @NonNull
+    public String getPath() {
+        return path;
+    }
+
+    @CheckForNull
+    public String getSrcPath() {
+        return srcPath;
+    }
+}
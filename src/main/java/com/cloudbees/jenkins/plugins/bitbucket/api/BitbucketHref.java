@@ -31,6 +31,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import org.kohsuke.accmod.Restricted;
 import org.kohsuke.accmod.restrictions.DoNotUse;
 
@@ -71,6 +72,23 @@ public class BitbucketHref {
         this.href = href;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BitbucketHref that = (BitbucketHref) o;
+        return Objects.equals(name, that.name) && Objects.equals(href, that.href);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, href);
+    }
+
     public static class Deserializer extends JsonDeserializer<List<BitbucketHref>> {
 
         @Override
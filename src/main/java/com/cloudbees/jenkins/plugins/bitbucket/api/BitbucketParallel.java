@@ -0,0 +1,148 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs independent API calls concurrently with a bounded parallelism, e.g. to resolve many commits or to fetch the
+ * pages of a listing, instead of one after the other.
+ * <p>
+ * The calls run on a shared pool of daemon threads. The {@link BitbucketApiMetrics.Listener} of the calling thread is
+ * propagated to them, so the calls are accounted to the scan that made them.
+ */
+public final class BitbucketParallel {
+
+    /**
+     * Default maximum number of concurrent calls made on behalf of a single operation, {@code 1} disables concurrency.
+     */
+    public static final int PARALLELISM = Math.max(1,
+            Integer.getInteger(BitbucketParallel.class.getName() + ".parallelism", 4));
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(
+            new NamingThreadFactory(new DaemonThreadFactory(), BitbucketParallel.class.getName()));
+
+    private BitbucketParallel() {
+        throw new IllegalAccessError("Utility class");
+    }
+
+    /**
+     * Applies a task to every input, at most {@code parallelism} at a time. The first failure stops the remaining
+     * inputs from being started and is rethrown once the running tasks are interrupted.
+     *
+     * @param inputs      the inputs.
+     * @param parallelism the maximum number of concurrent tasks.
+     * @param task        the task.
+     * @param <I>         the type of the inputs.
+     * @param <O>         the type of the results.
+     * @return the results, in the order of the inputs.
+     * @throws IOException          if a task failed.
+     * @throws InterruptedException if interrupted while waiting for the tasks.
+     */
+    @NonNull
+    public static <I, O> List<O> map(@NonNull List<I> inputs, int parallelism, @NonNull Task<I, O> task)
+            throws IOException, InterruptedException {
+        int size = inputs.size();
+        if (parallelism <= 1 || size <= 1) {
+            List<O> results = new ArrayList<>(size);
+            for (I input : inputs) {
+                results.add(task.apply(input));
+            }
+            return results;
+        }
+        Object[] results = new Object[size];
+        AtomicInteger next = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        BitbucketApiMetrics.Listener listener = BitbucketApiMetrics.listener();
+        Callable<Void> worker = () -> {
+            BitbucketApiMetrics.Scope scope = listener == null ? () -> { } : BitbucketApiMetrics.listen(listener);
+            try {
+                for (int i = next.getAndIncrement(); i < size && !stop.get(); i = next.getAndIncrement()) {
+                    results[i] = task.apply(inputs.get(i));
+                }
+                return null;
+            } catch (IOException | InterruptedException | RuntimeException | Error e) {
+                stop.set(true);
+                throw e;
+            } finally {
+                scope.close();
+            }
+        };
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = Math.min(parallelism, size); i > 0; i--) {
+            futures.add(EXECUTOR.submit(worker));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            stop.set(true);
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+        @SuppressWarnings("unchecked")
+        List<O> list = (List<O>) Arrays.asList(results);
+        return list;
+    }
+
+    /**
+     * A task applied to each input.
+     *
+     * @param <I> the type of the inputs.
+     * @param <O> the type of the results.
+     */
+    public interface Task<I, O> {
+        O apply(I input) throws IOException, InterruptedException;
+    }
+}
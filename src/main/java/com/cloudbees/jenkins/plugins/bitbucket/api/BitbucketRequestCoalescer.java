@@ -0,0 +1,188 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Coalesces identical concurrent GET requests: while a request is in flight, the threads asking for the same URL
+ * with the same credentials wait for its response instead of sending their own, e.g. when an organization folder
+ * and the multibranch projects it contains index the same repository at the same time.
+ * <p>
+ * Threads can join a request until its response arrives. A response nobody joined is streamed to the thread that
+ * made the request, as usual. A response others joined is read in full and its body shared, not the parsed result:
+ * every caller parses its own copy, as the clients adjust the objects they return.
+ */
+public final class BitbucketRequestCoalescer {
+
+    private static final Logger LOGGER = Logger.getLogger(BitbucketRequestCoalescer.class.getName());
+
+    /**
+     * Whether identical concurrent requests are coalesced.
+     */
+    private static final boolean DISABLED = Boolean.getBoolean(BitbucketRequestCoalescer.class.getName()
+            + ".disabled");
+
+    private static final BitbucketRequestCoalescer INSTANCE = new BitbucketRequestCoalescer(!DISABLED);
+
+    private final boolean enabled;
+
+    private final ConcurrentMap<String, Flight> inflight = new ConcurrentHashMap<>();
+
+    BitbucketRequestCoalescer(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @NonNull
+    public static BitbucketRequestCoalescer get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Performs the request, or waits for the identical request in flight and returns its body. Failures of the
+     * request in flight are shared too, except interruptions: the waiting threads then perform the request
+     * themselves.
+     *
+     * @param key identifies the request, see {@link BitbucketResponseCache#key(BitbucketAuthenticator, String)}.
+     * @param request performs the request.
+     * @return the body of the response.
+     * @throws IOException if the request failed.
+     * @throws InterruptedException if interrupted while performing or waiting for the request.
+     */
+    @NonNull
+    public InputStream join(@NonNull String key, @NonNull Request request) throws IOException, InterruptedException {
+        if (!enabled) {
+            return request.open();
+        }
+        while (true) {
+            Flight flight = new Flight();
+            Flight existing = inflight.putIfAbsent(key, flight);
+            if (existing == null) {
+                return lead(key, flight, request);
+            }
+            if (!existing.join()) {
+                // the response is already streamed to its caller, make a request of our own
+                inflight.remove(key, existing);
+                continue;
+            }
+            try {
+                byte[] body = existing.body.get();
+                BitbucketApiMetrics.get().recordCoalescedRequest();
+                return new ByteArrayInputStream(body);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InterruptedException || cause instanceof InterruptedIOException) {
+                    LOGGER.log(Level.FINE, "The request in flight for {0} was interrupted, retrying", key);
+                    continue;
+                }
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private InputStream lead(String key, Flight flight, Request request) throws IOException, InterruptedException {
+        InputStream content;
+        try {
+            content = request.open();
+        } catch (IOException | InterruptedException | RuntimeException | Error e) {
+            flight.close();
+            inflight.remove(key, flight);
+            flight.body.completeExceptionally(e);
+            throw e;
+        }
+        if (!flight.close()) {
+            // nobody joined, stream the response
+            inflight.remove(key, flight);
+            return content;
+        }
+        try (InputStream in = content) {
+            byte[] body = IOUtils.toByteArray(in);
+            flight.body.complete(body);
+            return new ByteArrayInputStream(body);
+        } catch (IOException | RuntimeException | Error e) {
+            flight.body.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, flight);
+        }
+    }
+
+    /**
+     * A request in flight.
+     */
+    private static final class Flight {
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private int followers;
+        private boolean closed;
+
+        /**
+         * @return whether the request can still be joined, the caller then waits for {@link #body}.
+         */
+        synchronized boolean join() {
+            if (closed) {
+                return false;
+            }
+            followers++;
+            return true;
+        }
+
+        /**
+         * Stops the request from being joined, once its response arrived.
+         *
+         * @return whether anyone joined the request.
+         */
+        synchronized boolean close() {
+            closed = true;
+            return followers > 0;
+        }
+    }
+
+    /**
+     * Performs a request.
+     */
+    public interface Request {
+        @NonNull
+        InputStream open() throws IOException, InterruptedException;
+    }
+}
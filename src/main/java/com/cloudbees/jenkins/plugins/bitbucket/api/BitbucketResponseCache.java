@@ -0,0 +1,563 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+
+/**
+ * A cache of the bodies of GET responses that carry validators ({@code ETag} or {@code Last-Modified}), so that
+ * repeated reads of unchanged resources only cost a {@code 304 Not Modified} round trip.
+ * <p>
+ * Entries are keyed by the request URL and the identity of the authenticator and are never served without asking the
+ * server: the validators are sent with every request and the cached body is only used when the server answers
+ * {@code 304}. The bodies are kept in memory up to a total size, the least recently used ones are dropped, or spilled
+ * to {@code JENKINS_HOME/caches} when enabled.
+ */
+public final class BitbucketResponseCache {
+
+    private static final Logger LOGGER = Logger.getLogger(BitbucketResponseCache.class.getName());
+
+    /**
+     * Maximum total size in bytes of the bodies kept in memory, {@code 0} disables the cache.
+     */
+    private static final long MAX_SIZE = Long.getLong(BitbucketResponseCache.class.getName() + ".maxSize",
+            32L * 1024 * 1024);
+
+    /**
+     * Maximum size in bytes of a single body, larger responses are not cached.
+     */
+    private static final long MAX_ENTRY_SIZE = Long.getLong(BitbucketResponseCache.class.getName()
+            + ".maxEntrySize", 1024L * 1024);
+
+    /**
+     * Whether bodies evicted from memory are kept on disk.
+     */
+    private static final boolean DISK_SPILL = Boolean.getBoolean(BitbucketResponseCache.class.getName()
+            + ".diskSpill");
+
+    /**
+     * Maximum total size in bytes of the bodies kept on disk.
+     */
+    private static final long DISK_MAX_SIZE = Long.getLong(BitbucketResponseCache.class.getName()
+            + ".diskMaxSize", 256L * 1024 * 1024);
+
+    /**
+     * The file name suffix of spilled bodies.
+     */
+    private static final String SUFFIX = ".response";
+
+    private static BitbucketResponseCache instance;
+
+    /**
+     * The entries in access order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long maxSize;
+
+    private final long maxEntrySize;
+
+    /**
+     * The directory to spill bodies to or {@code null} if disabled.
+     */
+    @CheckForNull
+    private final File spillDir;
+
+    private final long maxSpillSize;
+
+    /**
+     * The total size of the bodies in memory.
+     */
+    private long size;
+
+    /**
+     * The total size of the spilled bodies, {@code -1L} until the spill directory has been looked at.
+     */
+    private long spillSize = -1L;
+
+    private final LongAdder revalidations = new LongAdder();
+
+    private final LongAdder notModified = new LongAdder();
+
+    BitbucketResponseCache(long maxSize, long maxEntrySize, @CheckForNull File spillDir, long maxSpillSize) {
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.min(maxEntrySize, maxSize);
+        this.spillDir = spillDir;
+        this.maxSpillSize = maxSpillSize;
+    }
+
+    /**
+     * Returns the shared cache.
+     *
+     * @return the shared cache.
+     */
+    @NonNull
+    public static synchronized BitbucketResponseCache get() {
+        if (instance == null) {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            instance = new BitbucketResponseCache(MAX_SIZE, MAX_ENTRY_SIZE,
+                    DISK_SPILL && jenkins != null ? new File(jenkins.getRootDir(), "caches/bitbucket-responses") : null,
+                    DISK_MAX_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cache key of a request.
+     *
+     * @param authenticator the authenticator of the client, if any.
+     * @param url the request URL.
+     * @return the cache key.
+     */
+    @NonNull
+    public static String key(@CheckForNull BitbucketAuthenticator authenticator, @NonNull String url) {
+        return authenticator == null ? "anonymous " + url
+                : authenticator.getClass().getName() + ":" + authenticator.getId() + " " + url;
+    }
+
+    /**
+     * Adds the validators of the cached response, if any, to a GET request.
+     *
+     * @param key the cache key of the request.
+     * @param request the request.
+     * @return the cached response to use if the server answers {@code 304}, or {@code null} if there is none.
+     */
+    @CheckForNull
+    public Entry revalidate(@NonNull String key, @NonNull HttpRequest request) {
+        if (maxSize <= 0) {
+            return null;
+        }
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            entry = readSpilled(key);
+            if (entry != null) {
+                put(key, entry);
+            }
+        }
+        if (entry != null) {
+            revalidations.increment();
+            if (entry.etag != null) {
+                request.setHeader(HttpHeaders.IF_NONE_MATCH, entry.etag);
+            }
+            if (entry.lastModified != null) {
+                request.setHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.lastModified);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Records a {@code 304} answer to a request sent with the validators of the entry.
+     *
+     * @param entry the entry returned by {@link #revalidate(String, HttpRequest)}.
+     * @return the cached body.
+     */
+    @NonNull
+    public InputStream notModified(@NonNull Entry entry) {
+        notModified.increment();
+        return new ByteArrayInputStream(entry.body);
+    }
+
+    /**
+     * Returns the body of a {@code 200} response, which is cached as it is read if the response has validators.
+     * The body is only cached once read completely: on close the unread remainder is read, as releasing the
+     * connection would have.
+     *
+     * @param key the cache key of the request.
+     * @param response the response.
+     * @param content the body of the response.
+     * @return the body to read.
+     */
+    @NonNull
+    public InputStream store(@NonNull String key, @NonNull HttpResponse response, @NonNull InputStream content) {
+        if (maxSize <= 0) {
+            return content;
+        }
+        String etag = value(response.getFirstHeader(HttpHeaders.ETAG));
+        String lastModified = value(response.getFirstHeader(HttpHeaders.LAST_MODIFIED));
+        if (etag == null && lastModified == null) {
+            remove(key);
+            return content;
+        }
+        long length = response.getEntity() == null ? 0 : response.getEntity().getContentLength();
+        if (length > maxEntrySize) {
+            remove(key);
+            return content;
+        }
+        return new RecordingInputStream(content, key, etag, lastModified);
+    }
+
+    /**
+     * Empties the cache, the spilled bodies are left to the size bound.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the total size of the bodies in memory.
+     *
+     * @return the total size of the bodies in memory.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return how many requests were sent with validators.
+     */
+    public long getRevalidationCount() {
+        return revalidations.sum();
+    }
+
+    /**
+     * @return how many responses were served from the cache after a {@code 304} answer.
+     */
+    public long getNotModifiedCount() {
+        return notModified.sum();
+    }
+
+    @Override
+    public String toString() {
+        synchronized (this) {
+            return "BitbucketResponseCache{entries=" + entries.size() + ", size=" + size + ", revalidations="
+                    + revalidations.sum() + ", notModified=" + notModified.sum() + '}';
+        }
+    }
+
+    @CheckForNull
+    private static String value(@CheckForNull Header header) {
+        return header == null ? null : Util.fixEmptyAndTrim(header.getValue());
+    }
+
+    private synchronized void remove(@NonNull String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            size -= previous.size(key);
+        }
+    }
+
+    private void put(@NonNull String key, @NonNull Entry entry) {
+        List<Map.Entry<String, Entry>> evicted = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            size += entry.size(key) - (previous == null ? 0 : previous.size(key));
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+                    size > maxSize && it.hasNext(); ) {
+                Map.Entry<String, Entry> e = it.next();
+                it.remove();
+                size -= e.getValue().size(e.getKey());
+                evicted.add(e);
+            }
+        }
+        // disk I/O outside of the lock
+        for (Map.Entry<String, Entry> e : evicted) {
+            spill(e.getKey(), e.getValue());
+        }
+    }
+
+    @CheckForNull
+    private Entry readSpilled(@NonNull String key) {
+        if (spillDir == null) {
+            return null;
+        }
+        File file = new File(spillDir, Util.getDigestOf(key) + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (!key.equals(in.readUTF())) {
+                // digest collision, treat as a miss
+                return null;
+            }
+            String etag = in.readBoolean() ? in.readUTF() : null;
+            String lastModified = in.readBoolean() ? in.readUTF() : null;
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            if (!file.setLastModified(System.currentTimeMillis())) {
+                LOGGER.log(Level.FINE, "Could not touch spilled response {0}", file);
+            }
+            return new Entry(etag, lastModified, body);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not read spilled response " + file, e);
+            return null;
+        }
+    }
+
+    private void spill(@NonNull String key, @NonNull Entry entry) {
+        if (spillDir == null || entry.body.length > maxSpillSize) {
+            return;
+        }
+        File file = new File(spillDir, Util.getDigestOf(key) + SUFFIX);
+        Path tmp = null;
+        try {
+            Files.createDirectories(spillDir.toPath());
+            tmp = Files.createTempFile(spillDir.toPath(), "spill", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeUTF(key);
+                out.writeBoolean(entry.etag != null);
+                if (entry.etag != null) {
+                    out.writeUTF(entry.etag);
+                }
+                out.writeBoolean(entry.lastModified != null);
+                if (entry.lastModified != null) {
+                    out.writeUTF(entry.lastModified);
+                }
+                out.writeInt(entry.body.length);
+                out.write(entry.body);
+            }
+            long length = Files.size(tmp);
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+            boolean trim;
+            synchronized (this) {
+                if (spillSize < 0L) {
+                    spillSize = 0L;
+                    File[] files = spillDir.listFiles((d, name) -> name.endsWith(SUFFIX));
+                    for (File f : files == null ? new File[0] : files) {
+                        spillSize += f.length();
+                    }
+                } else {
+                    spillSize += length;
+                }
+                trim = spillSize > maxSpillSize;
+            }
+            if (trim) {
+                trimSpilled();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not spill response " + key, e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used spilled bodies until the total size is within the bound.
+     */
+    private synchronized void trimSpilled() {
+        File[] files = spillDir == null ? null : spillDir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        SpilledFile[] spilled = new SpilledFile[files.length];
+        long total = 0L;
+        for (int i = 0; i < files.length; i++) {
+            spilled[i] = new SpilledFile(files[i]);
+            total += spilled[i].length;
+        }
+        Arrays.sort(spilled, Comparator.comparingLong(f -> f.lastModified));
+        for (SpilledFile f : spilled) {
+            if (total <= maxSpillSize) {
+                break;
+            }
+            if (f.file.delete()) {
+                total -= f.length;
+            }
+        }
+        spillSize = total;
+    }
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry {
+        @CheckForNull
+        private final String etag;
+        @CheckForNull
+        private final String lastModified;
+        @NonNull
+        private final byte[] body;
+
+        Entry(@CheckForNull String etag, @CheckForNull String lastModified, @NonNull byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+
+        private long size(String key) {
+            return body.length + 2L * key.length();
+        }
+    }
+
+    /**
+     * Copies the body as it is read and caches it once read completely.
+     */
+    private final class RecordingInputStream extends FilterInputStream {
+        private final String key;
+        @CheckForNull
+        private final String etag;
+        @CheckForNull
+        private final String lastModified;
+        @CheckForNull
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private boolean complete;
+        private boolean closed;
+
+        RecordingInputStream(InputStream in, String key, @CheckForNull String etag,
+                             @CheckForNull String lastModified) {
+            super(in);
+            this.key = key;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = read0(() -> super.read());
+            if (b >= 0) {
+                record(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = read0(() -> super.read(b, off, len));
+            if (n > 0) {
+                record(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // skipped bytes are not seen, the body cannot be cached
+            copy = null;
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private int read0(Read read) throws IOException {
+            try {
+                int n = read.read();
+                if (n < 0) {
+                    complete = true;
+                }
+                return n;
+            } catch (IOException e) {
+                copy = null;
+                throw e;
+            }
+        }
+
+        private void record(byte[] b, int off, int len) {
+            if (copy != null) {
+                if (copy.size() + len > maxEntrySize) {
+                    copy = null;
+                } else {
+                    copy.write(b, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                byte[] buffer = new byte[8192];
+                while (copy != null && !complete) {
+                    read(buffer, 0, buffer.length);
+                }
+                if (copy != null) {
+                    put(key, new Entry(etag, lastModified, copy.toByteArray()));
+                } else {
+                    remove(key);
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not read the remainder of " + key, e);
+                remove(key);
+            } finally {
+                copy = null;
+                super.close();
+            }
+        }
+    }
+
+    private interface Read {
+        int read() throws IOException;
+    }
+
+    /**
+     * A point in time view of a spilled file, so that concurrent touches cannot break the sort.
+     */
+    private static class SpilledFile {
+        private final File file;
+        private final long lastModified;
+        private final long length;
+
+        private SpilledFile(File file) {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+    }
+}
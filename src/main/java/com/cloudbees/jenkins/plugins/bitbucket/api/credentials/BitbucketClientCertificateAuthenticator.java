@@ -26,12 +26,22 @@ package com.cloudbees.jenkins.plugins.bitbucket.api.credentials;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
 import com.cloudbees.plugins.credentials.common.StandardCertificateCredentials;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import hudson.util.Secret;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.SSLContext;
@@ -49,6 +59,24 @@ public class BitbucketClientCertificateAuthenticator extends BitbucketAuthentica
 
     private static final Logger LOGGER = Logger.getLogger(BitbucketClientCertificateAuthenticator.class.getName());
 
+    /**
+     * Maximum number of {@link SSLContext} kept, one per distinct client certificate.
+     */
+    private static final int MAX_CONTEXTS = 16;
+
+    /**
+     * The {@link SSLContext} built for each client certificate, by {@link #fingerprint()}. Reusing the context saves
+     * unlocking the key material for every client and lets TLS sessions be resumed across connections. A changed
+     * credential has a different fingerprint, the context of the old one is eventually evicted.
+     */
+    private static final Map<String, SSLContext> CONTEXTS = Collections.synchronizedMap(
+            new LinkedHashMap<String, SSLContext>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SSLContext> eldest) {
+                    return size() > MAX_CONTEXTS;
+                }
+            });
+
     /**
      * {@inheritDoc}
      */
@@ -65,13 +93,64 @@ public class BitbucketClientCertificateAuthenticator extends BitbucketAuthentica
     @Override
     public void configureBuilder(HttpClientBuilder builder) {
         try {
-            builder.setSSLContext(buildSSLContext());
+            builder.setSSLContext(getSSLContext());
         } catch (NoSuchAlgorithmException | UnrecoverableKeyException | KeyStoreException | KeyManagementException e) {
             LOGGER.log(Level.WARNING, "Failed to set up SSL context from provided client certificate: " + e.getMessage());
             // TODO: handle this error in a way that provides feedback to the user
         }
     }
 
+    private SSLContext getSSLContext() throws NoSuchAlgorithmException, KeyStoreException, UnrecoverableKeyException, KeyManagementException {
+        String fingerprint = fingerprint();
+        if (fingerprint == null) {
+            return buildSSLContext();
+        }
+        SSLContext context = CONTEXTS.get(fingerprint);
+        if (context == null) {
+            // concurrent builds of the same context are harmless, the last one wins
+            context = buildSSLContext();
+            CONTEXTS.put(fingerprint, context);
+        }
+        return context;
+    }
+
+    /**
+     * Identifies the key material: the credentials id, the certificates of every entry and the password.
+     *
+     * @return the fingerprint or {@code null} if the key store cannot be read.
+     */
+    @CheckForNull
+    private String fingerprint() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(getId().getBytes(StandardCharsets.UTF_8));
+            List<String> aliases = new ArrayList<>(Collections.list(keyStore.aliases()));
+            Collections.sort(aliases);
+            for (String alias : aliases) {
+                digest.update((byte) 0);
+                digest.update(alias.getBytes(StandardCharsets.UTF_8));
+                Certificate[] chain = keyStore.getCertificateChain(alias);
+                if (chain == null) {
+                    Certificate certificate = keyStore.getCertificate(alias);
+                    chain = certificate == null ? new Certificate[0] : new Certificate[]{certificate};
+                }
+                for (Certificate certificate : chain) {
+                    digest.update(certificate.getEncoded());
+                }
+            }
+            digest.update((byte) 0);
+            digest.update(password.getPlainText().getBytes(StandardCharsets.UTF_8));
+            StringBuilder fingerprint = new StringBuilder();
+            for (byte b : digest.digest()) {
+                fingerprint.append(String.format("%02x", b));
+            }
+            return fingerprint.toString();
+        } catch (NoSuchAlgorithmException | KeyStoreException | CertificateEncodingException e) {
+            LOGGER.log(Level.FINE, "Could not fingerprint the client certificate, its SSL context is not cached", e);
+            return null;
+        }
+    }
+
     private SSLContext buildSSLContext() throws NoSuchAlgorithmException, KeyStoreException, UnrecoverableKeyException, KeyManagementException {
         SSLContextBuilder contextBuilder = SSLContexts.custom();
         contextBuilder.loadKeyMaterial(keyStore, password.getPlainText().toCharArray());
@@ -30,6 +30,7 @@ import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.Util;
+import hudson.model.PeriodicWork;
 import hudson.model.RootAction;
 import hudson.model.UnprotectedRootAction;
 import hudson.util.DaemonThreadFactory;
@@ -39,27 +40,36 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.imageio.ImageIO;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletResponse;
 import jenkins.model.Jenkins;
+import jenkins.util.Timer;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.HttpResponse;
 import org.kohsuke.stapler.QueryParameter;
@@ -80,6 +90,11 @@ import static java.awt.RenderingHints.VALUE_INTERPOLATION_BICUBIC;
 @Extension
 public class AvatarCache implements UnprotectedRootAction {
 
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(AvatarCache.class.getName());
+
     /**
      * URI For this action
      */
@@ -91,7 +106,28 @@ public class AvatarCache implements UnprotectedRootAction {
     private static final int CONCURRENT_REQUEST_LIMIT = 4;
 
     /**
-     * The cache of entries. Unused entries will be removed over time.
+     * Default maximum number of entries to keep in the cache.
+     */
+    private static final int MAX_ENTRIES = Integer.getInteger(AvatarCache.class.getName() + ".maxEntries", 1024);
+
+    /**
+     * Default maximum total weight, that is the number of bytes of decoded image data, of the cached entries.
+     */
+    private static final long MAX_WEIGHT = Long.getLong(AvatarCache.class.getName() + ".maxWeight", 32L * 1024 * 1024);
+
+    /**
+     * Whether fetched avatars are also stored under {@code JENKINS_HOME/caches} to survive restarts.
+     */
+    private static final boolean DISK_CACHE = Boolean.getBoolean(AvatarCache.class.getName() + ".diskCache");
+
+    /**
+     * Maximum total size in bytes of the avatars stored on disk.
+     */
+    private static final long DISK_CACHE_MAX_SIZE = Long.getLong(AvatarCache.class.getName() + ".diskCacheMaxSize",
+            64L * 1024 * 1024);
+
+    /**
+     * The cache of entries. Unused entries will be removed by {@link #evict()}.
      */
     private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
 
@@ -103,15 +139,40 @@ public class AvatarCache implements UnprotectedRootAction {
             new NamingThreadFactory(new DaemonThreadFactory(), getClass().getName()));
 
     /**
-     * The lock to ensure we prevent concurrent requests for the same URL.
+     * The maximum number of entries to keep in the cache.
+     */
+    private final int maxEntries;
+
+    /**
+     * The maximum total weight of the cached entries.
+     */
+    private final long maxWeight;
+
+    /**
+     * The on disk tier or {@code null} if disabled.
      */
-    private final Object serviceLock = new Object();
+    @CheckForNull
+    private final AvatarDiskCache diskCache;
 
     /**
-     * The iterator that searches for unused entries. The search is amortized over
-     * every access.
+     * Flag to prevent scheduling more than one eviction when the cache overflows.
      */
-    private Iterator<Map.Entry<String, CacheEntry>> iterator = null;
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+
+    /**
+     * The number of lookups that found an entry.
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * The number of lookups that did not find an entry.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * The number of entries removed by eviction.
+     */
+    private final AtomicLong evictionCount = new AtomicLong();
 
     /**
      * The time this service was started (used as the last modified for generated
@@ -123,6 +184,23 @@ public class AvatarCache implements UnprotectedRootAction {
      * Constructor.
      */
     public AvatarCache() {
+        this(MAX_ENTRIES, MAX_WEIGHT, DISK_CACHE
+                ? new AvatarDiskCache(new File(Jenkins.get().getRootDir(), "caches/bitbucket-avatars"),
+                        DISK_CACHE_MAX_SIZE)
+                : null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries the maximum number of entries to keep in the cache.
+     * @param maxWeight  the maximum total weight of the cached entries.
+     * @param diskCache  the on disk tier or {@code null} to keep the entries in memory only.
+     */
+    AvatarCache(int maxEntries, long maxWeight, @CheckForNull AvatarDiskCache diskCache) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.diskCache = diskCache;
         service.allowCoreThreadTimeOut(true);
         // Remove any milliseconds from the started time to the nearest second
         startedTime = System.currentTimeMillis() / 1000L * 1000L;
@@ -174,7 +252,7 @@ public class AvatarCache implements UnprotectedRootAction {
      * @return an image of {@code size x size}.
      */
     @NonNull
-    private static BufferedImage scaleImage(@NonNull BufferedImage src, int size) {
+    /* package */ static BufferedImage scaleImage(@NonNull BufferedImage src, int size) {
         BufferedImage imageSrc = src;
         int newWidth;
         int newHeight;
@@ -243,6 +321,20 @@ public class AvatarCache implements UnprotectedRootAction {
         return imageSrc;
     }
 
+    /**
+     * Encodes the provided image as PNG.
+     *
+     * @param image the image to encode.
+     * @return the PNG bytes.
+     * @throws IOException if the image could not be encoded.
+     */
+    @NonNull
+    /* package */ static byte[] encodePng(@NonNull BufferedImage image) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bos);
+        return bos.toByteArray();
+    }
+
     /**
      * Generates a consistent (for any given seed) 5x5 symmetric pixel avatar that
      * should be unique but recognizable.
@@ -317,8 +409,9 @@ public class AvatarCache implements UnprotectedRootAction {
      * @param req  the request.
      * @param requestedSize the requested size (defaults to {@code 48x48} if unspecified).
      * @return the response.
+     * @throws IOException if the image could not be encoded.
      */
-    public HttpResponse doDynamic(StaplerRequest req, @QueryParameter String requestedSize) {
+    public HttpResponse doDynamic(StaplerRequest req, @QueryParameter String requestedSize) throws IOException {
         if (StringUtils.isBlank(req.getRestOfPath())) {
             return HttpResponses.notFound();
         }
@@ -363,7 +456,7 @@ public class AvatarCache implements UnprotectedRootAction {
             // we will generate avatars if the URL is not HTTP based
             // since the url string will not magically turn itself into a HTTP url this
             // avatar is immutable
-            return new ImageResponse(generateAvatar(avatar == null ? "" : avatar.source.hashKey(), targetSize), true,
+            return ImageResponse.of(generateAvatar(avatar == null ? "" : avatar.source.hashKey(), targetSize),
                     startedTime, "max-age=365000000, immutable, public");
         }
 
@@ -371,16 +464,17 @@ public class AvatarCache implements UnprotectedRootAction {
             // serve a temporary avatar until we get the remote one, no caching as we could
             // have the real deal
             // real soon now
-            return new ImageResponse(generateAvatar(avatar.source.hashKey(), targetSize), true, -1L,
-                    "no-cache, public");
+            return ImageResponse.of(generateAvatar(avatar.source.hashKey(), targetSize), -1L, "no-cache, public");
         }
-        if (avatar.lastModified <= since) {
+        final String etag = "\"" + key + "-" + targetSize + "-" + avatar.lastModified + "\"";
+        if (avatar.lastModified <= since || etag.equals(req.getHeader("If-None-Match"))) {
             return new HttpResponse() {
 
                 @Override
                 public void generateResponse(StaplerRequest req, StaplerResponse rsp, Object node)
                         throws IOException, ServletException {
                     rsp.addDateHeader("Last-Modified", avatar.lastModified);
+                    rsp.setHeader("ETag", etag);
                     rsp.addHeader("Cache-control", "max-age=3600, public");
                     rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
                 }
@@ -389,78 +483,239 @@ public class AvatarCache implements UnprotectedRootAction {
         // If no image, generate a temp avatar
         if (avatar.image == null) {
             // we can retry in an hour
-            return new ImageResponse(generateAvatar(avatar.source.hashKey(), targetSize), true, -1L,
-                    "max-age=3600, public");
+            return ImageResponse.of(generateAvatar(avatar.source.hashKey(), targetSize), -1L, "max-age=3600, public");
         }
 
-        BufferedImage image = avatar.image;
-        boolean flushImage = false;
-        if (image.getWidth() != targetSize || image.getHeight() != targetSize) {
-            image = scaleImage(image, targetSize);
-            flushImage = true;
+        byte[] bytes = avatar.encoded(targetSize);
+        if (bytes == null) {
+            // the image was flushed while we were looking at it, try again later
+            return ImageResponse.of(generateAvatar(avatar.source.hashKey(), targetSize), -1L, "no-cache, public");
         }
-        return new ImageResponse(image, flushImage, avatar.lastModified, "max-age=3600, public");
+        return new ImageResponse(bytes, etag, avatar.lastModified, "max-age=3600, public");
     }
 
     /**
      * Retrieves the entry from the cache.
      *
      * @param key the cache key.
-     * @param url the URL to fetch if the entry is missing or {@code null} to
+     * @param source the source to fetch if the entry is missing or {@code null} to
      *            perform a read-only check.
      * @return the entry or {@code null} if a read-only check found no matching
      *         entry.
      */
     @Nullable
-    private CacheEntry getCacheEntry(@NonNull final String key, @Nullable final AvatarCacheSource source) {
+    /* package */ CacheEntry getCacheEntry(@NonNull final String key, @Nullable final AvatarCacheSource source) {
         CacheEntry entry = cache.get(key);
         if (entry == null) {
-            synchronized (serviceLock) {
-                entry = cache.get(key);
-                if (entry == null) {
-                    if (source == null) {
-                        return null;
-                    }
-                    entry = new CacheEntry(source, service.submit(new FetchImage(source)));
-                    cache.put(key, entry);
-                }
+            if (source == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            // the miss is counted by the thread creating the entry, concurrent lookups of the key count once
+            entry = load(key, source);
+            if (cache.size() > maxEntries) {
+                scheduleEviction();
             }
         } else {
+            hitCount.incrementAndGet();
             if (entry.isStale()) {
-                synchronized (serviceLock) {
-                    if (!entry.pending()) {
-                        entry.setFuture(service.submit(new FetchImage(entry.source)));
-                    }
-                }
+                entry.refresh(service, new FetchImage(key, entry.source, diskCache));
             }
         }
         entry.touch();
-        if (iterator == null || !iterator.hasNext()) {
-            synchronized (serviceLock) {
-                if (iterator == null || !iterator.hasNext()) {
-                    iterator = cache.entrySet().iterator();
+        return entry;
+    }
+
+    /**
+     * Creates the entry for a missing key, from the disk tier if possible or else by queuing a fetch.
+     * <p>
+     * The disk tier is read and decoded before publishing the entry, without holding any lock of the cache, so
+     * concurrent misses on the same key may both read it but only the first entry published is kept.
+     *
+     * @param key the cache key.
+     * @param source the source to fetch.
+     * @return the entry now in the cache.
+     */
+    @NonNull
+    private CacheEntry load(@NonNull String key, @NonNull AvatarCacheSource source) {
+        AvatarImage stored = diskCache == null ? null : diskCache.read(key);
+        if (stored == null) {
+            // queuing the fetch does not block, so it can run under the lock of the bin holding the key
+            return cache.computeIfAbsent(key, k -> {
+                missCount.incrementAndGet();
+                return new CacheEntry(source, service.submit(new FetchImage(k, source, diskCache)));
+            });
+        }
+        CacheEntry entry = new CacheEntry(source, stored.image, stored.lastModified);
+        CacheEntry existing = cache.putIfAbsent(key, entry);
+        if (existing != null) {
+            return existing;
+        }
+        missCount.incrementAndGet();
+        if (entry.isStale()) {
+            // serve the stored image while we revalidate
+            entry.refresh(service, new FetchImage(key, source, diskCache));
+        }
+        return entry;
+    }
+
+    /**
+     * Queues an eviction run unless one is already pending.
+     */
+    private void scheduleEviction() {
+        if (evictionScheduled.compareAndSet(false, true)) {
+            Timer.get().submit(this::evict);
+        }
+    }
+
+    /**
+     * Removes the unused entries and then the least recently used entries until the cache is back within its
+     * bounds.
+     */
+    /* package */ void evict() {
+        evictionScheduled.set(false);
+        List<EvictionCandidate> candidates = new ArrayList<>(cache.size());
+        long weight = 0L;
+        for (Map.Entry<String, CacheEntry> e : cache.entrySet()) {
+            CacheEntry entry = e.getValue();
+            if (entry.isUnused()) {
+                if (cache.remove(e.getKey(), entry)) {
+                    evictionCount.incrementAndGet();
                 }
+            } else {
+                // snapshot the access time so that concurrent touches cannot break the sort
+                EvictionCandidate candidate = new EvictionCandidate(e.getKey(), entry);
+                candidates.add(candidate);
+                weight += candidate.weight;
             }
-        } else {
-            synchronized (iterator) {
-                // process one entry in the cache each access
-                if (iterator.hasNext()) {
-                    Map.Entry<String, CacheEntry> next = iterator.next();
-                    if (next.getValue().isUnused()) {
-                        iterator.remove();
-                    }
-                } else {
-                    iterator = null;
+        }
+        int size = candidates.size();
+        if (size <= maxEntries && weight <= maxWeight) {
+            return;
+        }
+        candidates.sort(Comparator.comparingLong(c -> c.lastAccessed));
+        for (EvictionCandidate candidate : candidates) {
+            if (size <= maxEntries && weight <= maxWeight) {
+                break;
+            }
+            if (cache.remove(candidate.key, candidate.entry)) {
+                evictionCount.incrementAndGet();
+                size--;
+                weight -= candidate.weight;
+            }
+        }
+        LOGGER.log(Level.FINE, "Avatar cache trimmed to {0} entries", size);
+    }
+
+    /**
+     * Returns the statistics of this cache.
+     *
+     * @return the statistics of this cache.
+     */
+    @NonNull
+    public Stats stats() {
+        long weight = 0L;
+        for (CacheEntry entry : cache.values()) {
+            weight += entry.weight();
+        }
+        return new Stats(cache.size(), weight, hitCount.get(), missCount.get(), evictionCount.get());
+    }
+
+    /**
+     * Statistics of the avatar cache.
+     */
+    public static class Stats {
+        private final int size;
+        private final long weight;
+        private final long hitCount;
+        private final long missCount;
+        private final long evictionCount;
+
+        private Stats(int size, long weight, long hitCount, long missCount, long evictionCount) {
+            this.size = size;
+            this.weight = weight;
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+
+        @Override
+        public String toString() {
+            return size + " entries (" + weight + " bytes), " + hitCount + " hits, " + missCount + " misses, "
+                    + evictionCount + " evictions";
+        }
+    }
+
+    /**
+     * Periodically removes unused entries, so that eviction does not depend on traffic.
+     */
+    @Extension
+    public static class EvictionWork extends PeriodicWork {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public long getRecurrencePeriod() {
+            return TimeUnit.MINUTES.toMillis(5);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void doRun() throws Exception {
+            AvatarCache instance = ExtensionList.lookup(RootAction.class).get(AvatarCache.class);
+            if (instance != null) {
+                instance.evict();
+                if (instance.diskCache != null) {
+                    instance.diskCache.trim();
                 }
             }
         }
-        return entry;
+    }
+
+    /**
+     * A point in time view of an entry considered for eviction.
+     */
+    private static class EvictionCandidate {
+        private final String key;
+        private final CacheEntry entry;
+        private final long lastAccessed;
+        private final long weight;
+
+        private EvictionCandidate(String key, CacheEntry entry) {
+            this.key = key;
+            this.entry = entry;
+            this.lastAccessed = entry.lastAccessed;
+            this.weight = entry.weight();
+        }
     }
 
     /**
      * A cache entry.
      */
-    private static class CacheEntry {
+    /* package */ static class CacheEntry {
 
         /**
          * Source for avatar
@@ -483,10 +738,15 @@ public class AvatarCache implements UnprotectedRootAction {
          * The last accessed timestamp, comparable to
          * {@link System#currentTimeMillis()}, {@code -1L} signals never accessed.
          */
-        private long lastAccessed = -1L;
+        private volatile long lastAccessed = -1L;
 
         /**
-         * The queued request to retrieve the image from the {@link #url}.
+         * The PNG encoded image, by target size. Replaced whenever the {@link #image} changes.
+         */
+        private ConcurrentMap<Integer, byte[]> encodings = new ConcurrentHashMap<>();
+
+        /**
+         * The queued request to retrieve the image from the {@link #source}.
          */
         private Future<CacheEntry> future;
 
@@ -523,7 +783,7 @@ public class AvatarCache implements UnprotectedRootAction {
             this.lastModified = System.currentTimeMillis();
         }
 
-        private synchronized boolean pending() {
+        /* package */ synchronized boolean pending() {
             if (future == null) {
                 return false;
             }
@@ -535,6 +795,7 @@ public class AvatarCache implements UnprotectedRootAction {
                     }
                     if (pending.image != null) {
                         image = pending.image;
+                        encodings = new ConcurrentHashMap<>();
                     }
                     lastModified = pending.lastModified;
                     future = null;
@@ -547,8 +808,63 @@ public class AvatarCache implements UnprotectedRootAction {
             return true;
         }
 
-        private synchronized void setFuture(Future<CacheEntry> future) {
-            this.future = future;
+        private synchronized void refresh(ExecutorService service, Callable<CacheEntry> task) {
+            if (!pending()) {
+                future = service.submit(task);
+            }
+        }
+
+        /**
+         * Returns the PNG encoded image scaled to the requested size, encoding it only on the first request for each
+         * size.
+         *
+         * @param size the size of the image.
+         * @return the PNG bytes or {@code null} if there is no image.
+         * @throws IOException if the image could not be encoded.
+         */
+        @CheckForNull
+        /* package */ byte[] encoded(int size) throws IOException {
+            BufferedImage image;
+            ConcurrentMap<Integer, byte[]> encodings;
+            synchronized (this) {
+                image = this.image;
+                encodings = this.encodings;
+            }
+            if (image == null) {
+                return null;
+            }
+            byte[] bytes = encodings.get(size);
+            if (bytes == null) {
+                if (image.getWidth() == size && image.getHeight() == size) {
+                    bytes = encodePng(image);
+                } else {
+                    BufferedImage scaled = scaleImage(image, size);
+                    try {
+                        bytes = encodePng(scaled);
+                    } finally {
+                        scaled.flush();
+                    }
+                }
+                // if another request raced us, keep the first one so every response shares the same bytes
+                byte[] existing = encodings.putIfAbsent(size, bytes);
+                if (existing != null) {
+                    bytes = existing;
+                }
+            }
+            return bytes;
+        }
+
+        /**
+         * Returns the number of bytes of image data, decoded and encoded, held by this entry.
+         *
+         * @return the weight of this entry.
+         */
+        private synchronized long weight() {
+            long weight = image == null ? 0L : 4L * image.getWidth() * image.getHeight();
+            for (byte[] bytes : encodings.values()) {
+                weight += bytes.length;
+            }
+            return weight;
         }
 
         private synchronized boolean isStale() {
@@ -565,40 +881,53 @@ public class AvatarCache implements UnprotectedRootAction {
     }
 
     /**
-     * A {@link HttpResponse} that serves a {@link BufferedImage} as a PNG
+     * A {@link HttpResponse} that serves PNG encoded image bytes.
      */
     private static class ImageResponse implements HttpResponse {
-        private final BufferedImage image;
-        private final boolean flushImage;
+        private final byte[] bytes;
+        @CheckForNull
+        private final String etag;
         private final String cacheControl;
 
         private final long lastModified;
 
-        private ImageResponse(BufferedImage image, boolean flushImage, long lastModified, String cacheControl) {
+        private ImageResponse(byte[] bytes, @CheckForNull String etag, long lastModified, String cacheControl) {
+            this.bytes = bytes;
+            this.etag = etag;
             this.cacheControl = cacheControl;
-            this.image = image;
-            this.flushImage = flushImage;
             this.lastModified = lastModified;
         }
 
+        /**
+         * Creates a response for an image that is not cached, the image will be flushed once encoded.
+         *
+         * @param image the image.
+         * @param lastModified the last modified timestamp or {@code -1L} if unknown.
+         * @param cacheControl the cache control header.
+         * @return the response.
+         * @throws IOException if the image could not be encoded.
+         */
+        private static ImageResponse of(BufferedImage image, long lastModified, String cacheControl)
+                throws IOException {
+            try {
+                return new ImageResponse(encodePng(image), null, lastModified, cacheControl);
+            } finally {
+                image.flush();
+            }
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public void generateResponse(StaplerRequest req, StaplerResponse rsp, Object node)
                 throws IOException, ServletException {
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            try {
-                ImageIO.write(image, "png", bos);
-            } finally {
-                if (flushImage) {
-                    image.flush();
-                }
-            }
-            final byte[] bytes = bos.toByteArray();
             if (lastModified > 0) {
                 rsp.addDateHeader("Last-Modified", lastModified);
             }
+            if (etag != null) {
+                rsp.setHeader("ETag", etag);
+            }
             rsp.addHeader("Cache-control", cacheControl);
             rsp.setContentType("image/png");
             rsp.setContentLength(bytes.length);
@@ -610,10 +939,16 @@ public class AvatarCache implements UnprotectedRootAction {
      * A task to fetch an image from a remote URL.
      */
     private static class FetchImage implements Callable<CacheEntry> {
+        private final String key;
         private final AvatarCacheSource source;
+        @CheckForNull
+        private final AvatarDiskCache diskCache;
 
-        private FetchImage(@NonNull AvatarCacheSource source) {
+        private FetchImage(@NonNull String key, @NonNull AvatarCacheSource source,
+                @CheckForNull AvatarDiskCache diskCache) {
+            this.key = key;
             this.source = source;
+            this.diskCache = diskCache;
         }
 
         /**
@@ -623,10 +958,14 @@ public class AvatarCache implements UnprotectedRootAction {
         public CacheEntry call() throws Exception {
             AvatarImage image = source.fetch();
             // If no image, return no image
-            if (image == null) {
+            if (image == null || image.image == null) {
                 return new CacheEntry(source);
             }
-            return new CacheEntry(source, image.image, image.lastModified);
+            CacheEntry entry = new CacheEntry(source, image.image, image.lastModified);
+            if (diskCache != null) {
+                diskCache.write(key, entry.image, entry.lastModified);
+            }
+            return entry;
         }
     }
 }
@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.avatars;
+
+import com.cloudbees.jenkins.plugins.bitbucket.avatars.AvatarCacheSource.AvatarImage;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
+
+/**
+ * An on disk tier for the {@link AvatarCache}, so that a restart does not have to fetch every avatar again.
+ * Each avatar is stored as its last modified timestamp followed by the PNG encoded image. The total size of the
+ * stored avatars is bounded by removing the least recently used files.
+ */
+class AvatarDiskCache {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(AvatarDiskCache.class.getName());
+
+    /**
+     * The file name suffix of stored avatars.
+     */
+    private static final String SUFFIX = ".avatar";
+
+    /**
+     * Cache keys are digests, anything else is not something we have written.
+     */
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{32}");
+
+    /**
+     * The directory holding the avatars.
+     */
+    private final File dir;
+
+    /**
+     * The maximum total size in bytes of the stored avatars.
+     */
+    private final long maxSize;
+
+    AvatarDiskCache(@NonNull File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Reads a stored avatar.
+     *
+     * @param key the cache key.
+     * @return the avatar or {@code null} if there is no readable avatar stored for the key.
+     */
+    @CheckForNull
+    AvatarImage read(@NonNull String key) {
+        if (!KEY.matcher(key).matches()) {
+            return null;
+        }
+        File file = new File(dir, key + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            long lastModified = in.readLong();
+            BufferedImage image = ImageIO.read(in);
+            if (image == null) {
+                return null;
+            }
+            // keep recently read avatars from being trimmed
+            if (!file.setLastModified(System.currentTimeMillis())) {
+                LOGGER.log(Level.FINE, "Could not touch cached avatar {0}", file);
+            }
+            return new AvatarImage(image, lastModified);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not read cached avatar " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores an avatar, replacing any previously stored one.
+     *
+     * @param key the cache key.
+     * @param image the image.
+     * @param lastModified the last modified timestamp of the image.
+     */
+    void write(@NonNull String key, @NonNull BufferedImage image, long lastModified) {
+        if (!KEY.matcher(key).matches()) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            Files.createDirectories(dir.toPath());
+            tmp = Files.createTempFile(dir.toPath(), key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeLong(lastModified);
+                ImageIO.write(image, "png", out);
+            }
+            Files.move(tmp, new File(dir, key + SUFFIX).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not store cached avatar " + key, e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used avatars until the total size is within the bound.
+     */
+    void trim() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        long[][] stats = new long[files.length][];
+        long size = 0L;
+        for (int i = 0; i < files.length; i++) {
+            // snapshot, the files can be touched while we sort
+            stats[i] = new long[] { i, files[i].lastModified(), files[i].length() };
+            size += stats[i][2];
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        Arrays.sort(stats, Comparator.comparingLong(s -> s[1]));
+        for (long[] stat : stats) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (files[(int) stat[0]].delete()) {
+                size -= stat[2];
+            }
+        }
+        LOGGER.log(Level.FINE, "Avatar disk cache trimmed to {0} bytes", size);
+    }
+}
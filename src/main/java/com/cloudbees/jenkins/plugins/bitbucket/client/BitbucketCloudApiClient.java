@@ -26,21 +26,28 @@ package com.cloudbees.jenkins.plugins.bitbucket.client;
 
 import com.cloudbees.jenkins.plugins.bitbucket.JsonParser;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiMetrics;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBuildStatus;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketChange;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketException;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketParallel;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryProtocol;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRequestCoalescer;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRequestException;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketResponseCache;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketTeam;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketWebHook;
 import com.cloudbees.jenkins.plugins.bitbucket.api.credentials.BitbucketUsernamePasswordAuthenticator;
 import com.cloudbees.jenkins.plugins.bitbucket.avatars.AvatarCacheSource.AvatarImage;
 import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudRef;
 import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestCommit;
 import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestCommits;
 import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestValue;
@@ -52,6 +59,8 @@ import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketReposi
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketRepositorySource;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.PaginatedBitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.UserRoleInRepository;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.AbstractBitbucketEndpoint;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketCloudEndpoint;
 import com.cloudbees.jenkins.plugins.bitbucket.filesystem.BitbucketSCMFile;
 import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
 import com.damnhandy.uri.template.UriTemplate;
@@ -76,9 +85,12 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.imageio.ImageIO;
@@ -134,6 +146,37 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     // Limit images to 16k
     private static final int MAX_AVATAR_LENGTH = 16384;
     private static final int MAX_PAGE_LENGTH = 100;
+    private static final int MAX_CONNECTIONS_PER_ROUTE = 20;
+    /**
+     * How long listings are read one page at a time after the API rate limit was reached.
+     */
+    private static final long RATE_LIMIT_BACKOFF_NANOS = MINUTES.toNanos(1);
+    private static volatile long rateLimitedAt;
+    private static volatile boolean rateLimited;
+    /**
+     * Whether listings return complete objects rather than the fields this plugin reads, e.g. when an extension
+     * needs more of them.
+     */
+    private static final boolean FULL_OBJECTS =
+            Boolean.getBoolean(BitbucketCloudApiClient.class.getName() + ".fullObjects");
+    private static final String PAGE_FIELDS = "next,page,pagelen,size";
+    // the fields mapped by BitbucketCloudBranch
+    private static final String BRANCH_FIELDS = PAGE_FIELDS
+            + ",values.name,values.target.hash,values.target.date,values.target.author.raw,values.target.message";
+    // the fields mapped by BitbucketCloudRef
+    private static final String REF_FIELDS = BRANCH_FIELDS + ",values.type";
+    // the fields mapped by BitbucketPullRequestValue, except the participants which listings do not return
+    private static final String PULL_REQUEST_FIELDS = PAGE_FIELDS
+            + ",values.id,values.title,values.links.html.href,values.author.account_id,values.author.nickname"
+            + ",values.source.branch.name,values.source.commit.hash,values.source.repository.full_name"
+            + ",values.destination.branch.name,values.destination.commit.hash"
+            + ",values.destination.repository.full_name";
+    // the fields mapped by BitbucketCloudRepository
+    private static final String REPOSITORY_FIELDS = PAGE_FIELDS
+            + ",values.scm,values.full_name,values.owner.username,values.owner.display_name,values.is_private"
+            + ",values.updated_on,values.links.clone,values.links.html,values.links.avatar,values.project.key"
+            + ",values.project.name,values.mainbranch.name";
+    private static final int UNKNOWN_LENGTH_BUFFER_SIZE = 8192;
     private static final PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
     private CloseableHttpClient client;
     private HttpClientContext context;
@@ -148,7 +191,7 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     private transient String cachedDefaultBranch;
 
     static {
-        connectionManager.setDefaultMaxPerRoute(20);
+        connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
         connectionManager.setMaxTotal(22);
         connectionManager.setSocketConfig(API_HOST, SocketConfig.custom().setSoTimeout(60 * 1000).build());
     }
@@ -157,12 +200,14 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         List<String> stats = new ArrayList<>();
         stats.add("Team: " + cachedTeam.stats().toString());
         stats.add("Repositories : " + cachedRepositories.stats().toString());
+        stats.add("Responses: " + BitbucketResponseCache.get());
         return stats;
     }
 
     public static void clearCaches() {
         cachedTeam.evictAll();
         cachedRepositories.evictAll();
+        BitbucketResponseCache.get().clear();
     }
 
     @Deprecated
@@ -190,6 +235,8 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         httpClientBuilder.setConnectionManager(connectionManager);
         httpClientBuilder.setConnectionManagerShared(true);
         httpClientBuilder.setRetryHandler(new StandardHttpRequestRetryHandler());
+        AbstractBitbucketEndpoint.configureCompression(httpClientBuilder,
+                AbstractBitbucketEndpoint.isCompressionEnabled(BitbucketCloudEndpoint.SERVER_URL));
 
         if (authenticator != null) {
             authenticator.configureBuilder(httpClientBuilder);
@@ -274,39 +321,38 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         // https://developer.atlassian.com/bitbucket/api/2/reference/resource/repositories/%7Busername%7D/%7Brepo_slug%7D/pullrequests#get
         // so because with values greater than 50 the API returns HTTP 400
         int pageLen = 50;
-        UriTemplate template = UriTemplate.fromTemplate(REPO_URL_TEMPLATE + "/pullrequests{?page,pagelen}")
+        UriTemplate template = UriTemplate.fromTemplate(REPO_URL_TEMPLATE + "/pullrequests{?fields,page,pagelen}")
                 .set("owner", owner)
                 .set("repo", repositoryName)
                 .set("pagelen", pageLen);
+        withFields(template, PULL_REQUEST_FIELDS);
 
-        BitbucketPullRequests page;
-        int pageNumber = 1;
-        do {
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-            String url = template //
-                    .set("page", pageNumber++) //
-                    .expand();
-            String response = getRequest(url);
-            try {
-                page = JsonParser.toJava(response, BitbucketPullRequests.class);
-            } catch (IOException e) {
-                throw new IOException("I/O error when parsing response from URL: " + url, e);
-            }
-            pullRequests.addAll(page.getValues());
-        } while (page.getNext() != null);
+        pullRequests.addAll(getAllPages(template.set("page", 1).expand(), template,
+                url -> getRequest(url, BitbucketPullRequests.class)));
 
         // PRs with missing destination branch are invalid and should be ignored.
         pullRequests.removeIf(this::shouldIgnore);
 
+        // most pull requests have the same source and destination repositories, share their details
+        Map<String, BitbucketCloudRepository> repositories = new HashMap<>();
         for (BitbucketPullRequestValue pullRequest : pullRequests) {
             setupClosureForPRBranch(pullRequest);
+            pullRequest.getSource().setRepository(shared(repositories, pullRequest.getSource().getRepository()));
+            pullRequest.getDestination().setRepository(
+                    shared(repositories, pullRequest.getDestination().getRepository()));
         }
 
         return pullRequests;
     }
 
+    private static BitbucketCloudRepository shared(Map<String, BitbucketCloudRepository> repositories,
+                                                   BitbucketCloudRepository repository) {
+        if (repository == null || repository.getFullName() == null) {
+            return repository;
+        }
+        return repositories.computeIfAbsent(repository.getFullName(), k -> repository);
+    }
+
     /**
      * PRs with missing source / destination branch are invalid and should be ignored.
      *
@@ -326,26 +372,27 @@ public class BitbucketCloudApiClient implements BitbucketApi {
      * @author Nikolas Falco
      */
     private class CommitClosure implements Callable<BitbucketCommit> {
-        private final String hash;
+        // the branch keeps the hash in a compact form, do not hold another copy
+        private final BitbucketBranch branch;
 
-        public CommitClosure(@NonNull String hash) {
-            this.hash = hash;
+        public CommitClosure(@NonNull BitbucketBranch branch) {
+            this.branch = branch;
         }
 
         @Override
         public BitbucketCommit call() throws Exception {
-            return resolveCommit(hash);
+            return resolveCommit(branch.getRawNode());
         }
     }
 
     private void setupClosureForPRBranch(BitbucketPullRequestValue pullRequest) {
         BitbucketCloudBranch branch = pullRequest.getSource().getBranch();
         if (branch != null) {
-            branch.setCommitClosure(new CommitClosure(branch.getRawNode()));
+            branch.setCommitClosure(new CommitClosure(branch));
         }
         branch = pullRequest.getDestination().getBranch();
         if (branch != null) {
-            branch.setCommitClosure(new CommitClosure(branch.getRawNode()));
+            branch.setCommitClosure(new CommitClosure(branch));
         }
     }
 
@@ -369,14 +416,9 @@ public class BitbucketCloudApiClient implements BitbucketApi {
                 .set("repo", repositoryName)
                 .set("id", id)
                 .expand();
-        String response = getRequest(url);
-        try {
-            BitbucketPullRequestValue pr = JsonParser.toJava(response, BitbucketPullRequestValue.class);
-            setupClosureForPRBranch(pr);
-            return pr;
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
-        }
+        BitbucketPullRequestValue pr = getRequest(url, BitbucketPullRequestValue.class);
+        setupClosureForPRBranch(pr);
+        return pr;
     }
 
     /**
@@ -388,17 +430,14 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         if (repositoryName == null) {
             throw new UnsupportedOperationException("Cannot get a repository from an API instance that is not associated with a repository");
         }
-        if (!enableCache || cachedRepository == null) {
+        if (enableCache && cachedRepository != null) {
+            BitbucketApiMetrics.get().recordCacheHit();
+        } else {
             String url = UriTemplate.fromTemplate(REPO_URL_TEMPLATE)
                     .set("owner", owner)
                     .set("repo", repositoryName)
                     .expand();
-            String response = getRequest(url);
-            try {
-                cachedRepository =  JsonParser.toJava(response, BitbucketCloudRepository.class);
-            } catch (IOException e) {
-                throw new IOException("I/O error when parsing response from URL: " + url, e);
-            }
+            cachedRepository = getRequest(url, BitbucketCloudRepository.class);
         }
         return cachedRepository;
     }
@@ -454,21 +493,22 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     @CheckForNull
     @Override
     public String getDefaultBranch() throws IOException, InterruptedException {
-        if (!enableCache || cachedDefaultBranch == null) {
+        if (enableCache && cachedDefaultBranch != null) {
+            BitbucketApiMetrics.get().recordCacheHit();
+        } else {
             String url = UriTemplate.fromTemplate(REPO_URL_TEMPLATE + "/{?fields}")
                     .set("owner", owner)
                     .set("repo", repositoryName)
                     .set("fields", "mainbranch.name")
                     .expand();
-            String response;
+            Map resp;
             try {
-                response = getRequest(url);
+                resp = getRequest(url, Map.class);
             } catch (FileNotFoundException e) {
                 LOGGER.log(Level.FINE, "Could not find default branch for {0}/{1}",
                         new Object[]{this.owner, this.repositoryName});
                 return null;
             }
-            Map resp = JsonParser.toJava(response, Map.class);
             Map mainbranch = (Map) resp.get("mainbranch");
             if (mainbranch != null) {
                 cachedDefaultBranch = (String) mainbranch.get("name");
@@ -496,17 +536,12 @@ public class BitbucketCloudApiClient implements BitbucketApi {
     }
 
     public List<BitbucketCloudBranch> getBranchesByRef(String nodePath) throws IOException, InterruptedException {
-        String url = UriTemplate.fromTemplate(REPO_URL_TEMPLATE + nodePath + "{?pagelen}")
+        UriTemplate template = UriTemplate.fromTemplate(REPO_URL_TEMPLATE + nodePath + "{?fields,pagelen,page}")
                 .set("owner", owner)
                 .set("repo", repositoryName)
-                .set("pagelen", MAX_PAGE_LENGTH)
-                .expand();
-        String response = getRequest(url);
-        try {
-            return getAllBranches(response);
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
-        }
+                .set("pagelen", MAX_PAGE_LENGTH);
+        withFields(template, BRANCH_FIELDS);
+        return getAllBranches(template);
     }
 
     /**
@@ -520,17 +555,54 @@ public class BitbucketCloudApiClient implements BitbucketApi {
                 .set("repo", repositoryName)
                 .set("hash", hash)
                 .expand();
-        String response;
         try {
-            response = getRequest(url);
+            return getRequest(url, BitbucketCloudCommit.class);
         } catch (FileNotFoundException e) {
             return null;
         }
-        try {
-            return JsonParser.toJava(response, BitbucketCloudCommit.class);
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
-        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NonNull
+    @Override
+    public List<BitbucketChange> getChanges(@NonNull String fromHash, @NonNull String toHash)
+            throws IOException, InterruptedException {
+        String url = UriTemplate.fromTemplate(REPO_URL_TEMPLATE + "/diffstat/{spec}{?pagelen}")
+                .set("owner", owner)
+                .set("repo", repositoryName)
+                .set("spec", toHash + ".." + fromHash)
+                .set("pagelen", MAX_PAGE_LENGTH)
+                .expand();
+        List<BitbucketChange> changes = new ArrayList<>();
+        do {
+            BitbucketCloudPage<Map<String, Object>> page = getRequest(url,
+                    new TypeReference<BitbucketCloudPage<Map<String, Object>>>(){});
+            for (Map<String, Object> diffstat : page.getValues()) {
+                String oldPath = diffstatPath(diffstat.get("old"));
+                String newPath = diffstatPath(diffstat.get("new"));
+                String status = String.valueOf(diffstat.get("status"));
+                if (newPath == null) {
+                    if (oldPath != null) {
+                        changes.add(new BitbucketChange(BitbucketChange.Type.DELETED, oldPath, null));
+                    }
+                } else if (oldPath == null || "added".equals(status)) {
+                    changes.add(new BitbucketChange(BitbucketChange.Type.ADDED, newPath, null));
+                } else if ("renamed".equals(status) || !oldPath.equals(newPath)) {
+                    changes.add(new BitbucketChange(BitbucketChange.Type.RENAMED, newPath, oldPath));
+                } else {
+                    changes.add(new BitbucketChange(BitbucketChange.Type.MODIFIED, newPath, null));
+                }
+            }
+            url = page.getNext();
+        } while (url != null);
+        return changes;
+    }
+
+    @CheckForNull
+    private static String diffstatPath(Object file) {
+        return file instanceof Map ? (String) ((Map<?, ?>) file).get("path") : null;
     }
 
     /**
@@ -555,16 +627,11 @@ public class BitbucketCloudApiClient implements BitbucketApi {
                 .set("fields", "values.hash,values.author.raw,values.date,values.message")
                 .set("pagelen", 1)
                 .expand();
-        String response = getRequest(url);
-        try {
-            BitbucketPullRequestCommits commits = JsonParser.toJava(response, BitbucketPullRequestCommits.class);
-            for (BitbucketPullRequestCommit commit : Util.fixNull(commits.getValues())) {
-                return commit;
-            }
-            throw new BitbucketException("Could not determine commit for pull request " + pull.getId());
-        } catch (IOException e) {
-            throw new IOException("I/O error when parsing response from URL: " + url, e);
+        BitbucketPullRequestCommits commits = getRequest(url, BitbucketPullRequestCommits.class);
+        for (BitbucketPullRequestCommit commit : Util.fixNull(commits.getValues())) {
+            return commit;
         }
+        throw new BitbucketException("Could not determine commit for pull request " + pull.getId());
     }
 
     /**
@@ -624,16 +691,14 @@ public class BitbucketCloudApiClient implements BitbucketApi {
                 .set("pagelen", MAX_PAGE_LENGTH);
         String url = template.expand();
         try {
-            String response = getRequest(url);
-            BitbucketRepositoryHooks page = parsePaginatedRepositoryHooks(response);
+            BitbucketRepositoryHooks page = getRequest(url, BitbucketRepositoryHooks.class);
             repositoryHooks.addAll(page.getValues());
             while (page.getNext() != null) {
                 if (Thread.interrupted()) {
                     throw new InterruptedException();
                 }
                 pageNumber++;
-                response = getRequest(url = template.set("page", pageNumber).expand());
-                page = parsePaginatedRepositoryHooks(response);
+                page = getRequest(url = template.set("page", pageNumber).expand(), BitbucketRepositoryHooks.class);
                 repositoryHooks.addAll(page.getValues());
             }
             return repositoryHooks;
@@ -663,12 +728,6 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         return getRepository().isPrivate();
     }
 
-    private BitbucketRepositoryHooks parsePaginatedRepositoryHooks(String response) throws IOException {
-        BitbucketRepositoryHooks parsedResponse;
-        parsedResponse = JsonParser.toJava(response, BitbucketRepositoryHooks.class);
-        return parsedResponse;
-    }
-
     /**
      * {@inheritDoc}
      */
@@ -681,18 +740,15 @@ public class BitbucketCloudApiClient implements BitbucketApi {
 
         Callable<BitbucketTeam> request = () -> {
             try {
-                String response = getRequest(url);
-                return JsonParser.toJava(response, BitbucketCloudTeam.class);
+                return getRequest(url, BitbucketCloudTeam.class);
             } catch (FileNotFoundException e) {
                 return null;
-            } catch (IOException e) {
-                throw new IOException("I/O error when parsing response from URL: " + url, e);
             }
         };
 
         try {
             if (enableCache) {
-                return cachedTeam.get(owner, request);
+                return cached(cachedTeam, owner, request);
             } else {
                 return request.call();
             }
@@ -759,34 +815,23 @@ public class BitbucketCloudApiClient implements BitbucketApi {
             cacheKey.append("::<anonymous>");
         }
 
-        final UriTemplate template = UriTemplate.fromTemplate(V2_API_BASE_URL + "{/owner}{?role,page,pagelen}")
+        final UriTemplate template = UriTemplate.fromTemplate(V2_API_BASE_URL + "{/owner}{?fields,role,page,pagelen}")
                 .set("owner", owner)
                 .set("pagelen", MAX_PAGE_LENGTH);
+        withFields(template, REPOSITORY_FIELDS);
         if (role != null &&  authenticator != null) {
             template.set("role", role.getId());
             cacheKey.append("::").append(role.getId());
         }
         Callable<List<BitbucketCloudRepository>> request = () -> {
-            List<BitbucketCloudRepository> repositories = new ArrayList<>();
-            Integer pageNumber = 1;
-            String url, response;
-            PaginatedBitbucketRepository page;
-            do {
-                response = getRequest(url = template.set("page", pageNumber).expand());
-                try {
-                    page = JsonParser.toJava(response, PaginatedBitbucketRepository.class);
-                    repositories.addAll(page.getValues());
-                } catch (IOException e) {
-                    throw new IOException("I/O error when parsing response from URL: " + url, e);
-                }
-                pageNumber++;
-            } while (page.getNext() != null);
+            List<BitbucketCloudRepository> repositories = getAllPages(template.set("page", 1).expand(), template,
+                    url -> getRequest(url, PaginatedBitbucketRepository.class));
             repositories.sort(Comparator.comparing(BitbucketCloudRepository::getRepositoryName));
             return repositories;
         };
         try {
             if (enableCache) {
-                return cachedRepositories.get(cacheKey.toString(), request);
+                return cached(cachedRepositories, cacheKey.toString(), request);
             } else {
                 return request.call();
             }
@@ -844,6 +889,18 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         }
     }
 
+    private static <V> V cached(Cache<String, V> cache, String key, Callable<V> loader) throws ExecutionException {
+        AtomicBoolean loaded = new AtomicBoolean();
+        V value = cache.get(key, () -> {
+            loaded.set(true);
+            return loader.call();
+        });
+        if (!loaded.get()) {
+            BitbucketApiMetrics.get().recordCacheHit();
+        }
+        return value;
+    }
+
     @Restricted(ProtectedExternally.class)
     protected CloseableHttpResponse executeMethod(HttpRequestBase httpMethod) throws InterruptedException, IOException {
         return executeMethod(API_HOST, httpMethod);
@@ -866,7 +923,10 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         requestConfig.setSocketTimeout(60 * 1000);
         httpMethod.setConfig(requestConfig.build());
 
-        CloseableHttpResponse response = client.execute(host, httpMethod, requestContext);
+        final HttpClientContext executionContext = requestContext;
+        BitbucketApiMetrics metrics = BitbucketApiMetrics.get();
+        BitbucketApiMetrics.Execution execution = () -> client.execute(host, httpMethod, executionContext);
+        CloseableHttpResponse response = metrics.execute(BitbucketCloudEndpoint.SERVER_URL, httpMethod, execution);
         while (response.getStatusLine().getStatusCode() == API_RATE_LIMIT_CODE) {
             release(httpMethod);
             if (Thread.interrupted()) {
@@ -877,12 +937,91 @@ public class BitbucketCloudApiClient implements BitbucketApi {
                       to wait till expiration time is over. It should also fix the wait for ever loop.
              */
             LOGGER.fine("Bitbucket Cloud API rate limit reached, sleeping for 5 sec then retry...");
-            Thread.sleep(5000);
-            response = client.execute(host, httpMethod, requestContext);
+            rateLimitedAt = System.nanoTime();
+            rateLimited = true;
+            long waitStart = System.nanoTime();
+            try {
+                Thread.sleep(5000);
+            } finally {
+                metrics.recordRateLimitWait(System.nanoTime() - waitStart);
+            }
+            response = metrics.execute(BitbucketCloudEndpoint.SERVER_URL, httpMethod, execution);
         }
         return response;
     }
 
+    /**
+     * Reads all the values of a page numbered listing. Once the first page tells the size of the listing, the
+     * following pages are requested concurrently and appended in page order.
+     *
+     * @param firstPage the URL of the first page.
+     * @param template  the listing, expanded with the {@code page} number of the following pages.
+     * @param read      reads a page.
+     * @param <V>       the type of the values.
+     * @param <P>       the type of the pages.
+     * @return the values of all the pages.
+     */
+    private <V, P extends BitbucketPage<V>> List<V> getAllPages(String firstPage, UriTemplate template,
+                                                                BitbucketParallel.Task<String, P> read)
+            throws IOException, InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        P page = read.apply(firstPage);
+        List<V> values = new ArrayList<>(page.getValues());
+        int pageNumber = 1;
+        int parallelism = pageParallelism();
+        if (!page.isLastPage() && parallelism > 1 && page.getPageLength() > 0
+                && page.getSize() > page.getPageLength()) {
+            int pages = (page.getSize() + page.getPageLength() - 1) / page.getPageLength();
+            List<String> urls = new ArrayList<>(pages - 1);
+            for (int number = 2; number <= pages; number++) {
+                urls.add(template.set("page", number).expand());
+            }
+            for (P next : BitbucketParallel.map(urls, parallelism, read)) {
+                page = next;
+                pageNumber++;
+                values.addAll(page.getValues());
+                if (page.isLastPage()) {
+                    // the listing shrank since the first page, the following pages are empty
+                    return values;
+                }
+            }
+        }
+        // the size is unknown, or the listing grew since the first page
+        while (!page.isLastPage()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            page = read.apply(template.set("page", ++pageNumber).expand());
+            values.addAll(page.getValues());
+        }
+        return values;
+    }
+
+    /**
+     * Restricts a listing to the given fields of its values, unless complete objects are asked for.
+     *
+     * @param template the listing, with a {@code fields} variable.
+     * @param fields   the fields to return.
+     */
+    private static void withFields(UriTemplate template, String fields) {
+        if (!FULL_OBJECTS) {
+            template.set("fields", fields);
+        }
+    }
+
+    /**
+     * The number of pages of a listing to request at once: one while the API rate limit was reached recently, so
+     * that concurrent requests do not eat the remaining budget, otherwise bounded by the connection pool.
+     */
+    private static int pageParallelism() {
+        if (rateLimited && System.nanoTime() - rateLimitedAt < RATE_LIMIT_BACKOFF_NANOS) {
+            return 1;
+        }
+        return Math.min(BitbucketParallel.PARALLELISM, MAX_CONNECTIONS_PER_ROUTE);
+    }
+
     /**
      * Caller's responsible to close the InputStream.
      */
@@ -903,8 +1042,17 @@ public class BitbucketCloudApiClient implements BitbucketApi {
             host = API_HOST;
         }
 
+        BitbucketResponseCache responseCache = BitbucketResponseCache.get();
+        String cacheKey = BitbucketResponseCache.key(authenticator, path);
+        BitbucketResponseCache.Entry cached = responseCache.revalidate(cacheKey, httpget);
         try {
             CloseableHttpResponse response =  executeMethod(host, httpget);
+            if (cached != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                EntityUtils.consume(response.getEntity());
+                response.close();
+                release(httpget);
+                return responseCache.notModified(cached);
+            }
             if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
                 EntityUtils.consume(response.getEntity());
                 response.close();
@@ -919,7 +1067,8 @@ public class BitbucketCloudApiClient implements BitbucketApi {
                 throw new BitbucketRequestException(statusCode,
                         "HTTP request error. Status: " + statusCode + ": " + status + ".\n" + content);
             }
-            return new ClosingConnectionInputStream(response, httpget, connectionManager);
+            return responseCache.store(cacheKey, response,
+                    new ClosingConnectionInputStream(response, httpget, connectionManager));
         } catch (BitbucketRequestException | FileNotFoundException e) {
             throw e;
         } catch (IOException e) {
@@ -927,9 +1076,31 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         }
     }
 
-    private String getRequest(String path) throws IOException, InterruptedException {
-        try (InputStream inputStream = getRequestAsInputStream(path)){
-            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+    /**
+     * Performs a GET request, or joins the identical request another thread has in flight.
+     */
+    private InputStream getSharedRequestAsInputStream(String path) throws IOException, InterruptedException {
+        return BitbucketRequestCoalescer.get().join(BitbucketResponseCache.key(authenticator, path),
+                () -> getRequestAsInputStream(path));
+    }
+
+    private <T> T getRequest(String path, Class<T> type) throws IOException, InterruptedException {
+        try (InputStream inputStream = getSharedRequestAsInputStream(path)) {
+            try {
+                return JsonParser.toJava(inputStream, type);
+            } catch (IOException e) {
+                throw new IOException("I/O error when parsing response from URL: " + path, e);
+            }
+        }
+    }
+
+    private <T> T getRequest(String path, TypeReference<T> type) throws IOException, InterruptedException {
+        try (InputStream inputStream = getSharedRequestAsInputStream(path)) {
+            try {
+                return JsonParser.toJava(inputStream, type);
+            } catch (IOException e) {
+                throw new IOException("I/O error when parsing response from URL: " + path, e);
+            }
         }
     }
 
@@ -1014,7 +1185,8 @@ public class BitbucketCloudApiClient implements BitbucketApi {
             if (len > 0 && len <= Integer.MAX_VALUE / 2) {
                 buf = new ByteArrayOutputStream((int) len);
             } else {
-                buf = new ByteArrayOutputStream();
+                // decoded compressed responses have no length
+                buf = new ByteArrayOutputStream(UNKNOWN_LENGTH_BUFFER_SIZE);
             }
             try (InputStream is = response.getEntity().getContent()) {
                 IOUtils.copy(is, buf);
@@ -1042,17 +1214,28 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         return doRequest(httppost);
     }
 
-    private List<BitbucketCloudBranch> getAllBranches(String response) throws IOException, InterruptedException {
-        List<BitbucketCloudBranch> branches = new ArrayList<>();
-        BitbucketCloudPage<BitbucketCloudBranch> page = JsonParser.mapper.readValue(response,
-                new TypeReference<BitbucketCloudPage<BitbucketCloudBranch>>(){});
-        branches.addAll(page.getValues());
-        while (!page.isLastPage()){
-            response = getRequest(page.getNext());
-            page = JsonParser.mapper.readValue(response,
-                    new TypeReference<BitbucketCloudPage<BitbucketCloudBranch>>(){});
-            branches.addAll(page.getValues());
-        }
+    /**
+     * Lists the branches and the tags of the repository at once, instead of {@link #getBranches()} and
+     * {@link #getTags()} listing each of them.
+     *
+     * @return the branches and the tags.
+     * @throws IOException          if there was a network communications error.
+     * @throws InterruptedException if interrupted while waiting on remote communications.
+     */
+    @NonNull
+    public List<BitbucketCloudRef> getRefs() throws IOException, InterruptedException {
+        UriTemplate template = UriTemplate.fromTemplate(REPO_URL_TEMPLATE + "/refs{?fields,pagelen,page}")
+                .set("owner", owner)
+                .set("repo", repositoryName)
+                .set("pagelen", MAX_PAGE_LENGTH);
+        withFields(template, REF_FIELDS);
+        return getAllPages(template.expand(), template,
+                url -> getRequest(url, new TypeReference<BitbucketCloudPage<BitbucketCloudRef>>(){}));
+    }
+
+    private List<BitbucketCloudBranch> getAllBranches(UriTemplate template) throws IOException, InterruptedException {
+        List<BitbucketCloudBranch> branches = getAllPages(template.expand(), template,
+                url -> getRequest(url, new TypeReference<BitbucketCloudPage<BitbucketCloudBranch>>(){}));
 
         // Filter the inactive branches out
         List<BitbucketCloudBranch> activeBranches = new ArrayList<>();
@@ -1074,8 +1257,7 @@ public class BitbucketCloudApiClient implements BitbucketApi {
                 .set("path", parent.getPath())
                 .expand();
         List<SCMFile> result = new ArrayList<>();
-        String response = getRequest(url);
-        BitbucketCloudPage<BitbucketRepositorySource> page = JsonParser.mapper.readValue(response,
+        BitbucketCloudPage<BitbucketRepositorySource> page = getRequest(url,
                 new TypeReference<BitbucketCloudPage<BitbucketRepositorySource>>(){});
 
         for(BitbucketRepositorySource source:page.getValues()){
@@ -1083,8 +1265,7 @@ public class BitbucketCloudApiClient implements BitbucketApi {
         }
 
         while (!page.isLastPage()){
-            response = getRequest(page.getNext());
-            page = JsonParser.mapper.readValue(response,
+            page = getRequest(page.getNext(),
                     new TypeReference<BitbucketCloudPage<BitbucketRepositorySource>>(){});
             for(BitbucketRepositorySource source:page.getValues()){
                 result.add(source.toBitbucketScmFile(parent));
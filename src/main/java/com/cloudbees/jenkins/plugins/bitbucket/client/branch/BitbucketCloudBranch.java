@@ -25,6 +25,7 @@ package com.cloudbees.jenkins.plugins.bitbucket.client.branch;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCompactStrings;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -42,6 +43,8 @@ public class BitbucketCloudBranch implements BitbucketBranch {
 
     private final String name;
     private long dateInMillis;
+    // full hashes are packed, other values are kept as is, see BitbucketCompactStrings
+    private byte[] packedHash;
     private String hash;
     private String author;
     private String message;
@@ -55,8 +58,8 @@ public class BitbucketCloudBranch implements BitbucketBranch {
         this.name = name;
         if (target != null) {
             this.dateInMillis = target.date.getTime();
-            this.hash = target.hash;
-            this.author = target.author.getRaw();
+            setRawNode(target.hash);
+            this.author = BitbucketCompactStrings.intern(target.author.getRaw());
             this.message = target.message;
         }
     }
@@ -64,12 +67,12 @@ public class BitbucketCloudBranch implements BitbucketBranch {
     public BitbucketCloudBranch(@NonNull String name, String hash, long dateInMillis) {
         this.name = name;
         this.dateInMillis = dateInMillis;
-        this.hash = hash;
+        setRawNode(hash);
     }
 
     @Override
     public String getRawNode() {
-        return hash;
+        return packedHash != null ? BitbucketCompactStrings.unpackHash(packedHash) : hash;
     }
 
     public void setDateMillis(long dateInMillis) {
@@ -80,7 +83,8 @@ public class BitbucketCloudBranch implements BitbucketBranch {
     }
 
     public void setRawNode(String hash) {
-        this.hash = hash;
+        this.packedHash = BitbucketCompactStrings.packHash(hash);
+        this.hash = packedHash == null ? hash : null;
     }
 
     @Override
@@ -119,7 +123,7 @@ public class BitbucketCloudBranch implements BitbucketBranch {
     }
 
     public void setAuthor(String authorName) {
-        this.author = authorName;
+        this.author = BitbucketCompactStrings.intern(authorName);
     }
 
     @Restricted(NoExternalUse.class)
@@ -127,6 +131,22 @@ public class BitbucketCloudBranch implements BitbucketBranch {
         this.commitClosure = commitClosure;
     }
 
+    /**
+     * Whether the details of the head commit are still to be fetched by the commit closure.
+     */
+    @Restricted(NoExternalUse.class)
+    public boolean isHeadCommitPending() {
+        return commitClosure != null && !callableInitialised;
+    }
+
+    /**
+     * Fetches the details of the head commit now, if they are still pending.
+     */
+    @Restricted(NoExternalUse.class)
+    public void resolveHeadCommit() {
+        initHeadCommitInfo();
+    }
+
     private void initHeadCommitInfo() {
         if (callableInitialised || commitClosure == null) {
             return;
@@ -138,7 +158,7 @@ public class BitbucketCloudBranch implements BitbucketBranch {
 
             this.dateInMillis = commit.getDateMillis();
             this.message = commit.getMessage();
-            this.author = commit.getAuthor();
+            this.author = BitbucketCompactStrings.intern(commit.getAuthor());
         } catch (Exception e) {
             LOGGER.log(Level.FINER, "Could not determine head commit details", e);
             // fallback on default values
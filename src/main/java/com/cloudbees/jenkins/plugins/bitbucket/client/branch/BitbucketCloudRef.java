@@ -0,0 +1,61 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client.branch;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+/**
+ * An entry of the {@code /refs} listing of a repository, which holds both its branches and its tags.
+ */
+public class BitbucketCloudRef {
+    private final String type;
+    private final BitbucketCloudBranch branch;
+
+    @JsonCreator
+    public BitbucketCloudRef(@CheckForNull @JsonProperty("type") String type,
+                             @NonNull @JsonProperty("name") String name,
+                             @Nullable @JsonProperty("target") BitbucketCloudBranch.Target target) {
+        this.type = type;
+        this.branch = new BitbucketCloudBranch(name, target, null);
+    }
+
+    /**
+     * @return whether this ref is a tag rather than a branch.
+     */
+    public boolean isTag() {
+        return "tag".equals(type);
+    }
+
+    /**
+     * @return the branch or the tag.
+     */
+    @NonNull
+    public BitbucketCloudBranch getBranch() {
+        return branch;
+    }
+}
@@ -58,6 +58,9 @@ public class BitbucketCloudRepository implements BitbucketRepository {
     @JsonProperty
     private BitbucketProject project;
 
+    @JsonProperty
+    private Map<String, Object> mainbranch;
+
     @Override
     public String getScm() {
         return scm;
@@ -94,6 +97,21 @@ public class BitbucketCloudRepository implements BitbucketRepository {
         return this.project;
     }
 
+    public void setMainbranch(Map<String, Object> mainbranch) {
+        this.mainbranch = mainbranch;
+    }
+
+    /**
+     * Returns the name of the main branch, when the response included it.
+     *
+     * @return the name of the main branch or {@code null}.
+     */
+    @JsonIgnore
+    public String getMainBranchName() {
+        Object name = mainbranch == null ? null : mainbranch.get("name");
+        return name instanceof String ? (String) name : null;
+    }
+
     public void setUpdatedOn(Date updatedOn) {
         this.updatedOn = updatedOn == null ? null : (Date)updatedOn.clone();
     }
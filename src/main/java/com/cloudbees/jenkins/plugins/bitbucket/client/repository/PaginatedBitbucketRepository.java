@@ -23,14 +23,23 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.client.repository;
 
+import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketPage;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 
-public class PaginatedBitbucketRepository {
+public class PaginatedBitbucketRepository extends BitbucketPage<BitbucketCloudRepository> {
 
     private String next;
 
     private List<BitbucketCloudRepository> values;
 
+    private int size;
+
+    @JsonProperty("pagelen")
+    private int pageLength;
+
+    private int page;
+
     public List<BitbucketCloudRepository> getValues() {
         return values;
     }
@@ -47,4 +56,35 @@ public class PaginatedBitbucketRepository {
         this.next = next;
     }
 
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    @Override
+    public boolean isLastPage() {
+        return next == null;
+    }
+
+    @Override
+    public int getPageLength() {
+        return pageLength;
+    }
+
+    public void setPageLength(int pageLength) {
+        this.pageLength = pageLength;
+    }
+
+    @Override
+    public int getPage() {
+        return page;
+    }
+
+    public void setPage(int page) {
+        this.page = page;
+    }
 }
@@ -23,6 +23,7 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.endpoints;
 
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiMetrics;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
 import com.cloudbees.plugins.credentials.CredentialsMatchers;
 import com.cloudbees.plugins.credentials.CredentialsProvider;
@@ -37,6 +38,7 @@ import hudson.security.ACL;
 import jenkins.authentication.tokens.api.AuthenticationTokens;
 import jenkins.model.Jenkins;
 import org.apache.commons.lang.StringUtils;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.jenkinsci.plugins.displayurlapi.ClassicDisplayURLProvider;
 import org.kohsuke.stapler.DataBoundSetter;
 
@@ -67,6 +69,11 @@ public abstract class AbstractBitbucketEndpoint extends AbstractDescribableImpl<
      */
     private String bitbucketJenkinsRootUrl;
 
+    /**
+     * {@code true} if the API responses of this end-point must not be compressed.
+     */
+    private boolean disableCompression;
+
     /**
      * Constructor.
      *
@@ -133,6 +140,52 @@ public abstract class AbstractBitbucketEndpoint extends AbstractDescribableImpl<
         }
     }
 
+    /**
+     * Returns {@code true} if the API responses of this end-point must not be compressed, e.g. when a proxy in
+     * between does not cope with encoded responses.
+     *
+     * @return {@code true} if the API responses of this end-point must not be compressed.
+     */
+    public boolean isDisableCompression() {
+        return disableCompression;
+    }
+
+    @DataBoundSetter
+    public void setDisableCompression(boolean disableCompression) {
+        this.disableCompression = disableCompression;
+    }
+
+    /**
+     * Look up in the current endpoint configurations if one exists for the serverUrl and whether it allows the API
+     * responses to be compressed. They are compressed unless the end-point disables it.
+     *
+     * @param serverUrl Bitbucket Server URL for the endpoint config
+     * @return {@code true} if the API clients should ask for compressed responses.
+     */
+    public static boolean isCompressionEnabled(@NonNull String serverUrl) {
+        if (Jenkins.getInstanceOrNull() == null) {
+            return true;
+        }
+        AbstractBitbucketEndpoint endpoint = BitbucketEndpointConfiguration.get().findEndpoint(serverUrl);
+        return endpoint == null || !endpoint.isDisableCompression();
+    }
+
+    /**
+     * Configures the response compression of an API client, see {@link #isCompressionEnabled(String)}. When enabled
+     * the client asks for gzip or deflate encoded responses and the bytes received on the wire are recorded, when
+     * disabled it does not send any {@code Accept-Encoding} header.
+     *
+     * @param builder the client builder.
+     * @param enabled whether responses should be compressed.
+     */
+    public static void configureCompression(@NonNull HttpClientBuilder builder, boolean enabled) {
+        if (enabled) {
+            builder.addInterceptorFirst(BitbucketApiMetrics.wireBytesInterceptor());
+        } else {
+            builder.disableContentCompression();
+        }
+    }
+
     /**
      * Jenkins Server Root URL to be used by this Bitbucket endpoint.
      * The global setting from Jenkins.get().getRootUrl()
@@ -34,11 +34,13 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import jenkins.model.GlobalConfiguration;
@@ -63,6 +65,13 @@ public class BitbucketEndpointConfiguration extends GlobalConfiguration {
      */
     private List<AbstractBitbucketEndpoint> endpoints;
 
+    /**
+     * The immutable view of {@link #endpoints} used by readers, rebuilt whenever the endpoints change so that lookups
+     * neither lock nor scan the list.
+     */
+    @CheckForNull
+    private transient volatile Snapshot snapshot;
+
     /**
      * Constructor.
      */
@@ -70,6 +79,15 @@ public class BitbucketEndpointConfiguration extends GlobalConfiguration {
         load();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void load() {
+        super.load();
+        snapshot = null;
+    }
+
     /**
      * Gets the {@link BitbucketEndpointConfiguration} singleton.
      *
@@ -143,10 +161,28 @@ public class BitbucketEndpointConfiguration extends GlobalConfiguration {
      * @return the list of endpoints
      */
     @NonNull
-    public synchronized List<AbstractBitbucketEndpoint> getEndpoints() {
-        return endpoints == null || endpoints.isEmpty()
-                ? Collections.<AbstractBitbucketEndpoint>singletonList(new BitbucketCloudEndpoint(false, null))
-                : Collections.unmodifiableList(endpoints);
+    public List<AbstractBitbucketEndpoint> getEndpoints() {
+        return snapshot().endpoints;
+    }
+
+    /**
+     * Gets the current {@link Snapshot}, building it if the endpoints changed since the last call.
+     *
+     * @return the current {@link Snapshot}.
+     */
+    @NonNull
+    private Snapshot snapshot() {
+        Snapshot snapshot = this.snapshot;
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = this.snapshot;
+                if (snapshot == null) {
+                    snapshot = new Snapshot(endpoints);
+                    this.snapshot = snapshot;
+                }
+            }
+        }
+        return snapshot;
     }
 
     /**
@@ -176,6 +212,7 @@ public class BitbucketEndpointConfiguration extends GlobalConfiguration {
             eps.add(new BitbucketCloudEndpoint(false, null));
         }
         this.endpoints = eps;
+        this.snapshot = new Snapshot(eps);
         save();
     }
 
@@ -256,14 +293,8 @@ public class BitbucketEndpointConfiguration extends GlobalConfiguration {
      * @return the global configuration for the specified server url or {@code null} if not defined.
      */
     @CheckForNull
-    public synchronized AbstractBitbucketEndpoint findEndpoint(@CheckForNull String serverUrl) {
-        serverUrl = normalizeServerUrl(serverUrl);
-        for (AbstractBitbucketEndpoint endpoint : getEndpoints()) {
-            if (serverUrl.equals(endpoint.getServerUrl())) {
-                return endpoint;
-            }
-        }
-        return null;
+    public AbstractBitbucketEndpoint findEndpoint(@CheckForNull String serverUrl) {
+        return snapshot().find(serverUrl);
     }
 
     /**
@@ -273,12 +304,9 @@ public class BitbucketEndpointConfiguration extends GlobalConfiguration {
      * @param clazz
      * @return the global configuration for the specified server url or {@code null} if not defined.
      */
-    public synchronized Optional<AbstractBitbucketEndpoint> findEndpoint(@CheckForNull String serverUrl,
-                                                                         Class<? extends AbstractBitbucketEndpoint> clazz) {
-        return getEndpoints().stream()
-            .filter(clazz::isInstance)
-            .filter(endpoint -> normalizeServerUrl(serverUrl).equals(endpoint.getServerUrl()))
-            .findFirst();
+    public Optional<AbstractBitbucketEndpoint> findEndpoint(@CheckForNull String serverUrl,
+                                                            Class<? extends AbstractBitbucketEndpoint> clazz) {
+        return Optional.ofNullable(findEndpoint(serverUrl)).filter(clazz::isInstance);
     }
 
     /**
@@ -321,4 +349,44 @@ public class BitbucketEndpointConfiguration extends GlobalConfiguration {
         return serverUrl.replaceAll("/$", "");
     }
 
+    /**
+     * An immutable copy of the endpoints indexed by their (already normalized) server URL.
+     */
+    private static final class Snapshot {
+
+        /**
+         * The endpoints, in configuration order.
+         */
+        @NonNull
+        private final List<AbstractBitbucketEndpoint> endpoints;
+
+        /**
+         * The endpoints by server URL.
+         */
+        @NonNull
+        private final Map<String, AbstractBitbucketEndpoint> index;
+
+        Snapshot(@CheckForNull List<AbstractBitbucketEndpoint> endpoints) {
+            List<AbstractBitbucketEndpoint> eps = endpoints == null || endpoints.isEmpty()
+                    ? Collections.<AbstractBitbucketEndpoint>singletonList(new BitbucketCloudEndpoint(false, null))
+                    : new ArrayList<>(endpoints);
+            Map<String, AbstractBitbucketEndpoint> index = new HashMap<>();
+            for (AbstractBitbucketEndpoint endpoint : eps) {
+                index.putIfAbsent(endpoint.getServerUrl(), endpoint);
+            }
+            this.endpoints = Collections.unmodifiableList(eps);
+            this.index = index;
+        }
+
+        @CheckForNull
+        AbstractBitbucketEndpoint find(@CheckForNull String serverUrl) {
+            if (StringUtils.isBlank(serverUrl)) {
+                return index.get(BitbucketCloudEndpoint.SERVER_URL);
+            }
+            // callers mostly pass URLs that were normalized already, only pay for normalization when they did not
+            AbstractBitbucketEndpoint endpoint = index.get(serverUrl);
+            return endpoint != null ? endpoint : index.get(normalizeServerUrl(serverUrl));
+        }
+    }
+
 }
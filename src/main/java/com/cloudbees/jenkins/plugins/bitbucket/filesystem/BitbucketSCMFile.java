@@ -25,16 +25,21 @@
 package com.cloudbees.jenkins.plugins.bitbucket.filesystem;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import jenkins.scm.api.SCMFile;
+import org.apache.commons.io.IOUtils;
 
 public class BitbucketSCMFile  extends SCMFile {
 
     private final BitbucketApi api;
     private  String ref;
     private final String hash;
+    @CheckForNull
+    private final String contentKey;
 
     public String getRef() {
         return ref;
@@ -59,6 +64,7 @@ public class BitbucketSCMFile  extends SCMFile {
         this.api = api;
         this.ref = ref;
         this.hash = hash;
+        this.contentKey = bitBucketSCMFileSystem == null ? null : bitBucketSCMFileSystem.contentKey;
     }
 
     @Deprecated
@@ -71,6 +77,7 @@ public class BitbucketSCMFile  extends SCMFile {
         this.api = parent.api;
         this.ref = parent.ref;
         this.hash = hash;
+        this.contentKey = parent.contentKey;
         type(type);
     }
 
@@ -94,6 +101,12 @@ public class BitbucketSCMFile  extends SCMFile {
     public InputStream content() throws IOException, InterruptedException {
         if (this.isDirectory()) {
             throw new IOException("Cannot get raw content from a directory");
+        } else if (contentKey != null) {
+            return new ByteArrayInputStream(BitbucketSCMFileContentCache.get().get(contentKey + getPath(), () -> {
+                try (InputStream is = api.getFileContent(this)) {
+                    return IOUtils.toByteArray(is);
+                }
+            }));
         } else {
             return api.getFileContent(this);
         }
@@ -0,0 +1,315 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.filesystem;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Util;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import jenkins.model.Jenkins;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A bounded cache of file contents addressed by credentials, repository, commit hash and path. The content of a path
+ * at a given commit never changes, so entries never expire: once the cache is over its size bound the least recently
+ * used entries are dropped, or spilled to {@code JENKINS_HOME/caches} when enabled.
+ */
+class BitbucketSCMFileContentCache {
+
+    /**
+     * Our logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(BitbucketSCMFileContentCache.class.getName());
+
+    /**
+     * Maximum total size in bytes of the contents kept in memory.
+     */
+    private static final long MAX_SIZE = Long.getLong(BitbucketSCMFileContentCache.class.getName() + ".maxSize",
+            16L * 1024 * 1024);
+
+    /**
+     * Whether contents evicted from memory are kept on disk.
+     */
+    private static final boolean DISK_SPILL = Boolean.getBoolean(BitbucketSCMFileContentCache.class.getName()
+            + ".diskSpill");
+
+    /**
+     * Maximum total size in bytes of the contents kept on disk.
+     */
+    private static final long DISK_MAX_SIZE = Long.getLong(BitbucketSCMFileContentCache.class.getName()
+            + ".diskMaxSize", 256L * 1024 * 1024);
+
+    /**
+     * The file name suffix of spilled contents.
+     */
+    private static final String SUFFIX = ".content";
+
+    private static BitbucketSCMFileContentCache instance;
+
+    /**
+     * The contents in access order.
+     */
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long maxSize;
+
+    /**
+     * The directory to spill contents to or {@code null} if disabled.
+     */
+    @CheckForNull
+    private final File spillDir;
+
+    private final long maxSpillSize;
+
+    /**
+     * The total size of the contents in memory.
+     */
+    private long size;
+
+    /**
+     * The total size of the spilled contents, {@code -1L} until the spill directory has been looked at.
+     */
+    private long spillSize = -1L;
+
+    BitbucketSCMFileContentCache(long maxSize, @CheckForNull File spillDir, long maxSpillSize) {
+        this.maxSize = maxSize;
+        this.spillDir = spillDir;
+        this.maxSpillSize = maxSpillSize;
+    }
+
+    /**
+     * Returns the shared cache.
+     *
+     * @return the shared cache.
+     */
+    @NonNull
+    static synchronized BitbucketSCMFileContentCache get() {
+        if (instance == null) {
+            Jenkins jenkins = Jenkins.getInstanceOrNull();
+            instance = new BitbucketSCMFileContentCache(MAX_SIZE,
+                    DISK_SPILL && jenkins != null ? new File(jenkins.getRootDir(), "caches/bitbucket-content") : null,
+                    DISK_MAX_SIZE);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached content, loading it if required. The loader is not called while holding any lock, so
+     * concurrent misses of the same key may each load the content.
+     *
+     * @param key the content key.
+     * @param loader the loader of the content.
+     * @return the content.
+     * @throws IOException if the content could not be loaded.
+     * @throws InterruptedException if interrupted while loading the content.
+     */
+    @NonNull
+    byte[] get(@NonNull String key, @NonNull Loader loader) throws IOException, InterruptedException {
+        byte[] content;
+        synchronized (this) {
+            content = entries.get(key);
+        }
+        if (content != null) {
+            return content;
+        }
+        content = readSpilled(key);
+        if (content == null) {
+            content = loader.load();
+        }
+        put(key, content);
+        return content;
+    }
+
+    /**
+     * Returns the total size of the contents in memory.
+     *
+     * @return the total size of the contents in memory.
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    private void put(@NonNull String key, @NonNull byte[] content) {
+        List<Map.Entry<String, byte[]>> evicted = new ArrayList<>();
+        synchronized (this) {
+            if (content.length > maxSize) {
+                evicted.add(new AbstractMap.SimpleImmutableEntry<>(key, content));
+            } else {
+                byte[] previous = entries.put(key, content);
+                size += content.length - (previous == null ? 0 : previous.length);
+                for (Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+                        size > maxSize && it.hasNext(); ) {
+                    Map.Entry<String, byte[]> entry = it.next();
+                    it.remove();
+                    size -= entry.getValue().length;
+                    evicted.add(entry);
+                }
+            }
+        }
+        // disk I/O outside of the lock
+        for (Map.Entry<String, byte[]> entry : evicted) {
+            spill(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @CheckForNull
+    private byte[] readSpilled(@NonNull String key) {
+        if (spillDir == null) {
+            return null;
+        }
+        File file = new File(spillDir, Util.getDigestOf(key) + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (!key.equals(in.readUTF())) {
+                // digest collision, treat as a miss
+                return null;
+            }
+            byte[] content = IOUtils.toByteArray(in);
+            if (!file.setLastModified(System.currentTimeMillis())) {
+                LOGGER.log(Level.FINE, "Could not touch spilled content {0}", file);
+            }
+            return content;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not read spilled content " + file, e);
+            return null;
+        }
+    }
+
+    private void spill(@NonNull String key, @NonNull byte[] content) {
+        if (spillDir == null || content.length > maxSpillSize) {
+            return;
+        }
+        File file = new File(spillDir, Util.getDigestOf(key) + SUFFIX);
+        if (file.isFile()) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            Files.createDirectories(spillDir.toPath());
+            tmp = Files.createTempFile(spillDir.toPath(), "spill", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeUTF(key);
+                out.write(content);
+            }
+            long length = Files.size(tmp);
+            Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+            boolean trim;
+            synchronized (this) {
+                if (spillSize < 0L) {
+                    spillSize = 0L;
+                    File[] files = spillDir.listFiles((d, name) -> name.endsWith(SUFFIX));
+                    for (File f : files == null ? new File[0] : files) {
+                        spillSize += f.length();
+                    }
+                } else {
+                    spillSize += length;
+                }
+                trim = spillSize > maxSpillSize;
+            }
+            if (trim) {
+                trimSpilled();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not spill content " + key, e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the least recently used spilled contents until the total size is within the bound.
+     */
+    private synchronized void trimSpilled() {
+        File[] files = spillDir == null ? null : spillDir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        SpilledFile[] spilled = new SpilledFile[files.length];
+        long total = 0L;
+        for (int i = 0; i < files.length; i++) {
+            spilled[i] = new SpilledFile(files[i]);
+            total += spilled[i].length;
+        }
+        Arrays.sort(spilled, Comparator.comparingLong(f -> f.lastModified));
+        for (SpilledFile f : spilled) {
+            if (total <= maxSpillSize) {
+                break;
+            }
+            if (f.file.delete()) {
+                total -= f.length;
+            }
+        }
+        spillSize = total;
+    }
+
+    /**
+     * Loads the content of a file.
+     */
+    interface Loader {
+        @NonNull
+        byte[] load() throws IOException, InterruptedException;
+    }
+
+    /**
+     * A point in time view of a spilled file, so that concurrent touches cannot break the sort.
+     */
+    private static class SpilledFile {
+        private final File file;
+        private final long lastModified;
+        private final long length;
+
+        private SpilledFile(File file) {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+    }
+}
@@ -25,13 +25,18 @@
 
 package com.cloudbees.jenkins.plugins.bitbucket.filesystem;
 
+import com.cloudbees.jenkins.plugins.bitbucket.BitbucketGitSCMRevision;
 import com.cloudbees.jenkins.plugins.bitbucket.BitbucketSCMSource;
 import com.cloudbees.jenkins.plugins.bitbucket.BitbucketTagSCMHead;
 import com.cloudbees.jenkins.plugins.bitbucket.BranchSCMHead;
 import com.cloudbees.jenkins.plugins.bitbucket.PullRequestSCMHead;
+import com.cloudbees.jenkins.plugins.bitbucket.PullRequestSCMRevision;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiFactory;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketChange;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketResponseCache;
 import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudApiClient;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.AbstractBitbucketEndpoint;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketEndpointConfiguration;
@@ -52,7 +57,16 @@ import hudson.scm.SCM;
 import hudson.scm.SCMDescriptor;
 import hudson.security.ACL;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import jenkins.authentication.tokens.api.AuthenticationTokens;
+import jenkins.plugins.git.AbstractGitSCMSource;
 import jenkins.scm.api.SCMFile;
 import jenkins.scm.api.SCMFileSystem;
 import jenkins.scm.api.SCMHead;
@@ -60,16 +74,39 @@ import jenkins.scm.api.SCMRevision;
 import jenkins.scm.api.SCMSource;
 import jenkins.scm.api.SCMSourceDescriptor;
 import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
+import org.apache.commons.lang.StringUtils;
 
 public class BitbucketSCMFileSystem extends SCMFileSystem {
 
+    /**
+     * Matches a full commit hash.
+     */
+    private static final Pattern FULL_HASH = Pattern.compile("[0-9a-f]{40}");
+
+    /**
+     * The blob id used in the change log, as the API does not give the blob ids.
+     */
+    private static final String NULL_HASH = "0000000000000000000000000000000000000000";
+
     private final String ref;
     private final BitbucketApi api;
 
+    /**
+     * The prefix of the content cache keys of the files or {@code null} if the revision is not content addressed.
+     */
+    @CheckForNull
+    final String contentKey;
+
     protected BitbucketSCMFileSystem(BitbucketApi api, String ref, SCMRevision rev) throws IOException {
+        this(api, ref, rev, null);
+    }
+
+    private BitbucketSCMFileSystem(BitbucketApi api, String ref, SCMRevision rev, @CheckForNull String contentKey)
+            throws IOException {
         super(rev);
         this.ref = ref;
         this.api = api;
+        this.contentKey = contentKey;
     }
 
     /**
@@ -78,11 +115,134 @@ public class BitbucketSCMFileSystem extends SCMFileSystem {
      * @return timestamp of last commit or of tag if its annotated tag
      */
     @Override
-    public long lastModified() throws IOException {
-        // TODO figure out how to implement this
+    public long lastModified() throws IOException, InterruptedException {
+        SCMRevision revision = getRevision();
+        if (revision instanceof PullRequestSCMRevision) {
+            revision = ((PullRequestSCMRevision<?>) revision).getPull();
+        }
+        if (revision instanceof BitbucketGitSCMRevision) {
+            // the commit was already loaded when the head was indexed
+            Date date = ((BitbucketGitSCMRevision) revision).getDate();
+            if (date != null) {
+                return date.getTime();
+            }
+        }
+        String hash = hashOf(revision);
+        if (hash != null) {
+            BitbucketCommit commit = api.resolveCommit(hash);
+            if (commit != null) {
+                return commit.getDateMillis();
+            }
+        }
         return 0L;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The change log is written in the raw {@code git log} format as a single entry for the revision of this file
+     * system, listing every file changed since the given revision.
+     */
+    @Override
+    public boolean changesSince(@CheckForNull SCMRevision revision, @NonNull OutputStream changeLogStream)
+            throws UnsupportedOperationException, IOException, InterruptedException {
+        SCMRevision current = getRevision();
+        if (current instanceof PullRequestSCMRevision && ((PullRequestSCMRevision<?>) current).isMerge()) {
+            throw new UnsupportedOperationException("Cannot compute changes of a merged pull request revision");
+        }
+        String toHash = hashOf(current);
+        String fromHash = hashOf(revision);
+        if (toHash == null || fromHash == null) {
+            throw new UnsupportedOperationException("Cannot compute changes without the commit hashes");
+        }
+        if (toHash.equals(fromHash)) {
+            return false;
+        }
+        List<BitbucketChange> changes;
+        try {
+            changes = api.getChanges(fromHash, toHash);
+        } catch (UnsupportedOperationException e) {
+            // clients implemented before the changes could be listed
+            throw new UnsupportedOperationException("Cannot compute changes without listing them", e);
+        }
+        if (changes.isEmpty()) {
+            return false;
+        }
+
+        String author = null;
+        String message = null;
+        long date = 0L;
+        SCMRevision commitRevision = current instanceof PullRequestSCMRevision
+                ? ((PullRequestSCMRevision<?>) current).getPull()
+                : current;
+        if (commitRevision instanceof BitbucketGitSCMRevision) {
+            BitbucketGitSCMRevision rev = (BitbucketGitSCMRevision) commitRevision;
+            author = rev.getAuthor();
+            message = rev.getMessage();
+            date = rev.getDate() == null ? 0L : rev.getDate().getTime();
+        } else {
+            BitbucketCommit commit = api.resolveCommit(toHash);
+            if (commit != null) {
+                author = commit.getAuthor();
+                message = commit.getMessage();
+                date = commit.getDateMillis();
+            }
+        }
+        author = StringUtils.defaultIfBlank(author, "unknown <unknown>");
+
+        // do not close, the stream belongs to the caller
+        Writer out = new OutputStreamWriter(changeLogStream, StandardCharsets.UTF_8);
+        out.write("commit " + toHash + "\n");
+        out.write("parent " + fromHash + "\n");
+        out.write("author " + author + " " + TimeUnit.MILLISECONDS.toSeconds(date) + " +0000\n");
+        out.write("committer " + author + " " + TimeUnit.MILLISECONDS.toSeconds(date) + " +0000\n");
+        out.write("\n");
+        for (String line : StringUtils.defaultString(message).split("\r?\n")) {
+            out.write("    " + line + "\n");
+        }
+        out.write("\n");
+        for (BitbucketChange change : changes) {
+            switch (change.getType()) {
+                case ADDED:
+                    out.write(":000000 100644 " + NULL_HASH + " " + NULL_HASH + " A\t" + change.getPath() + "\n");
+                    break;
+                case DELETED:
+                    out.write(":100644 000000 " + NULL_HASH + " " + NULL_HASH + " D\t" + change.getPath() + "\n");
+                    break;
+                case RENAMED:
+                    out.write(":100644 100644 " + NULL_HASH + " " + NULL_HASH + " R100\t" + change.getSrcPath()
+                            + "\t" + change.getPath() + "\n");
+                    break;
+                case COPIED:
+                    out.write(":100644 100644 " + NULL_HASH + " " + NULL_HASH + " C100\t" + change.getSrcPath()
+                            + "\t" + change.getPath() + "\n");
+                    break;
+                default:
+                    out.write(":100644 100644 " + NULL_HASH + " " + NULL_HASH + " M\t" + change.getPath() + "\n");
+                    break;
+            }
+        }
+        out.flush();
+        return true;
+    }
+
+    /**
+     * Returns the commit hash of a revision.
+     *
+     * @param revision the revision.
+     * @return the commit hash or {@code null} if the revision does not point to a single commit.
+     */
+    @CheckForNull
+    private static String hashOf(@CheckForNull SCMRevision revision) {
+        if (revision instanceof PullRequestSCMRevision) {
+            revision = ((PullRequestSCMRevision<?>) revision).getPull();
+        }
+        if (revision instanceof AbstractGitSCMSource.SCMRevisionImpl) {
+            return ((AbstractGitSCMSource.SCMRevisionImpl) revision).getHash();
+        }
+        return null;
+    }
+
     @NonNull
     @Override
     public SCMFile getRoot() {
@@ -201,7 +361,32 @@ public class BitbucketSCMFileSystem extends SCMFileSystem {
                 return null;
             }
 
+            if (rev instanceof AbstractGitSCMSource.SCMRevisionImpl) {
+                String hash = ((AbstractGitSCMSource.SCMRevisionImpl) rev).getHash();
+                if (hash != null && FULL_HASH.matcher(hash).matches()) {
+                    // read at the commit rather than the moving ref, so the content can be cached by hash
+                    return new BitbucketSCMFileSystem(apiClient, hash, rev,
+                            contentKey(authenticator, serverUrl, owner, repository, hash));
+                }
+            }
             return new BitbucketSCMFileSystem(apiClient, ref, rev);
         }
     }
+
+    /**
+     * Returns the prefix of the content cache keys of the files of a repository at a commit. The credentials are part
+     * of the key: content read with some credentials must not be served to a context that cannot read it.
+     *
+     * @param authenticator the authenticator the content is read with, or {@code null} for anonymous access.
+     * @param serverUrl the server URL.
+     * @param owner the repository owner.
+     * @param repository the repository name.
+     * @param hash the full commit hash.
+     * @return the prefix of the keys, the paths are appended to it.
+     */
+    @NonNull
+    /* package */ static String contentKey(@CheckForNull BitbucketAuthenticator authenticator,
+            @NonNull String serverUrl, @NonNull String owner, @NonNull String repository, @NonNull String hash) {
+        return BitbucketResponseCache.key(authenticator, serverUrl + "/" + owner + "/" + repository + "@" + hash + ":");
+    }
 }
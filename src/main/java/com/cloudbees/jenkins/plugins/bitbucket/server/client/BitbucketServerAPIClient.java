@@ -25,19 +25,26 @@ package com.cloudbees.jenkins.plugins.bitbucket.server.client;
 
 import com.cloudbees.jenkins.plugins.bitbucket.JsonParser;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApiMetrics;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBuildStatus;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketChange;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketParallel;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryProtocol;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRequestCoalescer;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRequestException;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketResponseCache;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketTeam;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketWebHook;
 import com.cloudbees.jenkins.plugins.bitbucket.api.credentials.BitbucketUsernamePasswordAuthenticator;
 import com.cloudbees.jenkins.plugins.bitbucket.avatars.AvatarCacheSource.AvatarImage;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.UserRoleInRepository;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.AbstractBitbucketEndpoint;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketEndpointConfiguration;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketServerEndpoint;
 import com.cloudbees.jenkins.plugins.bitbucket.filesystem.BitbucketSCMFile;
@@ -45,6 +52,8 @@ import com.cloudbees.jenkins.plugins.bitbucket.server.BitbucketServerVersion;
 import com.cloudbees.jenkins.plugins.bitbucket.server.BitbucketServerWebhookImplementation;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerBranches;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerChange;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerChanges;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerCommit;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.pullrequest.BitbucketServerPullRequest;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.pullrequest.BitbucketServerPullRequestCanMerge;
@@ -64,10 +73,13 @@ import hudson.ProxyConfiguration;
 import hudson.Util;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.net.URI;
@@ -76,6 +88,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -89,6 +102,7 @@ import net.sf.json.JSONObject;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
@@ -139,6 +153,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     private static final String API_PULL_REQUEST_CHANGES_PATH = API_REPOSITORY_PATH + "/pull-requests/{id}/changes{?start,limit}";
     static final String API_BROWSE_PATH = API_REPOSITORY_PATH + "/browse{/path*}{?at}";
     private static final String API_COMMITS_PATH = API_REPOSITORY_PATH + "/commits{/hash}";
+    private static final String API_COMPARE_CHANGES_PATH = API_REPOSITORY_PATH + "/compare/changes{?from,to,start,limit}";
     private static final String API_PROJECT_PATH = API_BASE_PATH + "/projects/{owner}";
     private static final String AVATAR_PATH = API_BASE_PATH + "/projects/{owner}/avatar.png";
     private static final String API_COMMIT_COMMENT_PATH = API_REPOSITORY_PATH + "/commits{/hash}/comments";
@@ -150,12 +165,23 @@ public class BitbucketServerAPIClient implements BitbucketApi {
 
     private static final String API_COMMIT_STATUS_PATH = "/rest/build-status/1.0/commits{/hash}";
     private static final Integer DEFAULT_PAGE_LIMIT = 200;
+    /**
+     * How many pages of a listing are requested concurrently once the first page is known, {@code 1} (the default)
+     * requests them one after the other.
+     */
+    private static final int PAGE_PARALLELISM = Math.max(1,
+            Integer.getInteger(BitbucketServerAPIClient.class.getName() + ".pageParallelism", 1));
 
     /**
      * Repository owner.
      */
     private final String owner;
 
+    /**
+     * How many pages of a listing are requested concurrently, see {@link #PAGE_PARALLELISM}.
+     */
+    private int pageParallelism = PAGE_PARALLELISM;
+
     /**
      * The repository that this object is managing.
      */
@@ -178,6 +204,11 @@ public class BitbucketServerAPIClient implements BitbucketApi {
 
     private final BitbucketServerWebhookImplementation webhookImplementation;
 
+    /**
+     * Whether to ask for compressed responses.
+     */
+    private final boolean compression;
+
     @Deprecated
     public BitbucketServerAPIClient(@NonNull String baseURL, @NonNull String owner, @CheckForNull String repositoryName,
                                     @CheckForNull StandardUsernamePasswordCredentials credentials, boolean userCentric) {
@@ -199,6 +230,12 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         this.repositoryName = repositoryName;
         this.baseURL = Util.removeTrailingSlash(baseURL);
         this.webhookImplementation = requireNonNull(webhookImplementation);
+        this.compression = AbstractBitbucketEndpoint.isCompressionEnabled(this.baseURL);
+    }
+
+    // Used for testing
+    /* package */ void setPageParallelism(int pageParallelism) {
+        this.pageParallelism = Math.max(1, pageParallelism);
     }
 
     /**
@@ -334,13 +371,26 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         BitbucketServerEndpoint endpoint = (BitbucketServerEndpoint) BitbucketEndpointConfiguration.get().
             findEndpoint(this.baseURL, BitbucketServerEndpoint.class).orElse(null);
 
+        // most pull requests have the same source and destination repositories, share their details
+        Map<String, BitbucketServerRepository> repositories = new HashMap<>();
         for (BitbucketServerPullRequest pullRequest : pullRequests) {
             setupPullRequest(pullRequest, endpoint);
+            pullRequest.getSource().setRepository(shared(repositories, pullRequest.getSource().getRepository()));
+            pullRequest.getDestination().setRepository(
+                    shared(repositories, pullRequest.getDestination().getRepository()));
         }
 
         return pullRequests;
     }
 
+    private static BitbucketServerRepository shared(Map<String, BitbucketServerRepository> repositories,
+                                                    BitbucketServerRepository repository) {
+        if (repository == null || repository.getProject() == null) {
+            return repository;
+        }
+        return repositories.computeIfAbsent(repository.getFullName(), k -> repository);
+    }
+
     private void setupPullRequest(BitbucketServerPullRequest pullRequest, BitbucketServerEndpoint endpoint) throws IOException {
         // set commit closure to make commit information available when need, in a similar way to when request branches
         setupClosureForPRBranch(pullRequest);
@@ -385,15 +435,16 @@ public class BitbucketServerAPIClient implements BitbucketApi {
      * @author Nikolas Falco
      */
     private class CommitClosure implements Callable<BitbucketCommit> {
-        private final String hash;
+        // the branch keeps the hash in a compact form, do not hold another copy
+        private final BitbucketBranch branch;
 
-        public CommitClosure(@NonNull String hash) {
-            this.hash = hash;
+        public CommitClosure(@NonNull BitbucketBranch branch) {
+            this.branch = branch;
         }
 
         @Override
         public BitbucketCommit call() throws Exception {
-            return resolveCommit(hash);
+            return resolveCommit(branch.getRawNode());
         }
     }
 
@@ -401,11 +452,11 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         try {
             BitbucketServerBranch branch = (BitbucketServerBranch) pr.getSource().getBranch();
             if (branch != null) {
-                branch.setCommitClosure(new CommitClosure(branch.getRawNode()));
+                branch.setCommitClosure(new CommitClosure(branch));
             }
             branch = (BitbucketServerBranch) pr.getDestination().getBranch();
             if (branch != null) {
-                branch.setCommitClosure(new CommitClosure(branch.getRawNode()));
+                branch.setCommitClosure(new CommitClosure(branch));
             }
         } catch (NullPointerException e) {
             LOGGER.log(Level.SEVERE, "setupClosureForPRBranch", e);
@@ -429,9 +480,8 @@ public class BitbucketServerAPIClient implements BitbucketApi {
                 .set("repo", repositoryName)
                 .set("id", id)
                 .expand();
-        String response = getRequest(url);
         try {
-            return JsonParser.toJava(response, BitbucketServerPullRequestCanMerge.class).isCanMerge();
+            return getRequest(url, BitbucketServerPullRequestCanMerge.class).isCanMerge();
         } catch (IOException e) {
             throw new IOException("I/O error when accessing URL: " + url, e);
         }
@@ -449,9 +499,8 @@ public class BitbucketServerAPIClient implements BitbucketApi {
                 .set("repo", repositoryName)
                 .set("id", id)
                 .expand();
-        String response = getRequest(url);
         try {
-            BitbucketServerPullRequest pr = JsonParser.toJava(response, BitbucketServerPullRequest.class);
+            BitbucketServerPullRequest pr = getRequest(url, BitbucketServerPullRequest.class);
             setupClosureForPRBranch(pr);
             setupPullRequest(pr, (BitbucketServerEndpoint) BitbucketEndpointConfiguration.get().
                 findEndpoint(this.baseURL, BitbucketServerEndpoint.class).orElse(null));
@@ -476,9 +525,8 @@ public class BitbucketServerAPIClient implements BitbucketApi {
                 .set("owner", getUserCentricOwner())
                 .set("repo", repositoryName)
                 .expand();
-        String response = getRequest(url);
         try {
-            return JsonParser.toJava(response, BitbucketServerRepository.class);
+            return getRequest(url, BitbucketServerRepository.class);
         } catch (IOException e) {
             throw new IOException("I/O error when accessing URL: " + url, e);
         }
@@ -549,8 +597,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
                 .set("repo", repositoryName)
                 .expand();
         try {
-            String response = getRequest(url);
-            return JsonParser.toJava(response, BitbucketServerBranch.class).getName();
+            return getRequest(url, BitbucketServerBranch.class).getName();
         } catch (FileNotFoundException e) {
             LOGGER.log(Level.FINE, "Could not find default branch for {0}/{1}",
                     new Object[]{this.owner, this.repositoryName});
@@ -587,7 +634,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         List<BitbucketServerBranch> branches = getResources(template, BitbucketServerBranches.class);
         for (final BitbucketServerBranch branch : branches) {
             if (branch != null) {
-                branch.setCommitClosure(new CommitClosure(branch.getRawNode()));
+                branch.setCommitClosure(new CommitClosure(branch));
             }
         }
 
@@ -605,13 +652,32 @@ public class BitbucketServerAPIClient implements BitbucketApi {
                 .set("hash", hash)
                 .expand();
         try {
-            String response = getRequest(url);
-            return JsonParser.toJava(response, BitbucketServerCommit.class);
+            return getRequest(url, BitbucketServerCommit.class);
         } catch (IOException e) {
             throw new IOException("I/O error when accessing URL: " + url, e);
         }
     }
 
+    /** {@inheritDoc} */
+    @NonNull
+    @Override
+    public List<BitbucketChange> getChanges(@NonNull String fromHash, @NonNull String toHash)
+            throws IOException, InterruptedException {
+        UriTemplate template = UriTemplate
+                .fromTemplate(API_COMPARE_CHANGES_PATH)
+                .set("owner", getUserCentricOwner())
+                .set("repo", repositoryName)
+                // Bitbucket Server compares from the commit holding the changes to the one they are relative to
+                .set("from", toHash)
+                .set("to", fromHash);
+        List<BitbucketServerChange> values = getResources(template, BitbucketServerChanges.class);
+        List<BitbucketChange> changes = new ArrayList<>(values.size());
+        for (BitbucketServerChange change : values) {
+            changes.add(change.toChange());
+        }
+        return changes;
+    }
+
     /** {@inheritDoc} */
     @NonNull
     @Override
@@ -728,8 +794,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
                         .set("owner", getUserCentricOwner())
                         .set("repo", repositoryName)
                         .expand();
-                String response = getRequest(url);
-                return JsonParser.toJava(response, BitbucketServerWebhooks.class);
+                return getRequest(url, BitbucketServerWebhooks.class);
             case NATIVE:
                 UriTemplate urlTemplate = UriTemplate
                         .fromTemplate(API_WEBHOOKS_PATH)
@@ -751,8 +816,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         } else {
             String url = UriTemplate.fromTemplate(API_PROJECT_PATH).set("owner", getOwner()).expand();
             try {
-                String response = getRequest(url);
-                return JsonParser.toJava(response, BitbucketServerProject.class);
+                return getRequest(url, BitbucketServerProject.class);
             } catch (FileNotFoundException e) {
                 return null;
             } catch (IOException e) {
@@ -820,59 +884,121 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     private <V> List<V> getResources(UriTemplate template, Class<? extends PagedApiResponse<V>> clazz) throws IOException, InterruptedException {
         List<V> resources = new ArrayList<>();
 
-        PagedApiResponse<V> page;
-        Integer pageNumber = 0;
-        Integer limit = DEFAULT_PAGE_LIMIT;
-        do {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        PagedApiResponse<V> page = getPage(template, 0, DEFAULT_PAGE_LIMIT, clazz);
+        resources.addAll(page.getValues());
+        while (!page.isLastPage()) {
             if (Thread.interrupted()) {
                 throw new InterruptedException();
             }
-            String url = template //
-                    .set("start", pageNumber) //
-                    .set("limit", limit) //
-                    .expand();
-            String response = getRequest(url);
-            try {
-                page = JsonParser.toJava(response, clazz);
-            } catch (IOException e) {
-                throw new IOException("I/O error when parsing response from URL: " + url, e);
+            Integer limit = page.getLimit();
+            Integer start = page.getNextPageStart();
+            int parallelism = pageParallelism;
+            if (parallelism > 1 && limit != null && limit > 0 && start != null
+                    && page.getStart() != null && start == page.getStart() + limit) {
+                // the offsets are predictable, fetch the next pages at once and read them in order
+                List<String> urls = new ArrayList<>(parallelism);
+                for (int i = 0; i < parallelism; i++) {
+                    urls.add(pageUrl(template, start + i * limit, limit));
+                }
+                List<PagedApiResponse<V>> pages = BitbucketParallel.map(urls, parallelism,
+                        url -> getPage(url, clazz));
+                for (int i = 0; i < pages.size(); i++) {
+                    page = pages.get(i);
+                    resources.addAll(page.getValues());
+                    if (page.isLastPage() || page.getNextPageStart() == null
+                            || page.getNextPageStart() != start + (i + 1) * limit) {
+                        // the listing ended, or the offsets are not the predicted ones: drop the pages fetched
+                        // ahead and go on from the reported next page start
+                        break;
+                    }
+                }
+            } else {
+                page = getPage(template, start, limit, clazz);
+                resources.addAll(page.getValues());
             }
-            resources.addAll(page.getValues());
+        }
 
-            limit = page.getLimit();
-            pageNumber = page.getNextPageStart();
-        } while (!page.isLastPage());
+        return resources;
+    }
 
+    private <V> PagedApiResponse<V> getPage(UriTemplate template, Integer start, Integer limit,
+                                            Class<? extends PagedApiResponse<V>> clazz) throws IOException {
+        return getPage(pageUrl(template, start, limit), clazz);
+    }
 
-        return resources;
+    private <V> PagedApiResponse<V> getPage(String url, Class<? extends PagedApiResponse<V>> clazz)
+            throws IOException {
+        try {
+            return getRequest(url, clazz);
+        } catch (BitbucketRequestException | FileNotFoundException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new IOException("I/O error when parsing response from URL: " + url, e);
+        }
+    }
+
+    private static String pageUrl(UriTemplate template, Integer start, Integer limit) {
+        return template //
+                .set("start", start) //
+                .set("limit", limit) //
+                .expand();
     }
 
     protected String getRequest(String path) throws IOException {
+        try (InputStream content = getRequestAsInputStream(path)) {
+            return IOUtils.toString(content, StandardCharsets.UTF_8);
+        }
+    }
+
+    private <T> T getRequest(String path, Class<T> type) throws IOException {
+        try (InputStream content = getSharedRequestAsInputStream(path)) {
+            return JsonParser.toJava(content, type);
+        }
+    }
+
+    private <T> T getRequest(String path, TypeReference<T> type) throws IOException {
+        try (InputStream content = getSharedRequestAsInputStream(path)) {
+            return JsonParser.toJava(content, type);
+        }
+    }
+
+    /**
+     * Performs a GET request, or joins the identical request another thread has in flight.
+     */
+    private InputStream getSharedRequestAsInputStream(String path) throws IOException {
+        try {
+            return BitbucketRequestCoalescer.get().join(BitbucketResponseCache.key(authenticator, baseURL + path),
+                    () -> getRequestAsInputStream(path));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while requesting " + path).initCause(e);
+        }
+    }
+
+    /**
+     * Performs a GET request and returns the response body, the connection is released when the stream is closed.
+     */
+    protected InputStream getRequestAsInputStream(String path) throws IOException {
         HttpGet httpget = new HttpGet(this.baseURL + path);
 
         if (authenticator != null) {
             authenticator.configureRequest(httpget);
         }
 
-        try(CloseableHttpClient client = getHttpClient(httpget);
-                CloseableHttpResponse response = client.execute(httpget, context)) {
-            String content;
-            long len = response.getEntity().getContentLength();
-            if (len == 0) {
-                content = "";
-            } else {
-                ByteArrayOutputStream buf;
-                if (len > 0 && len <= Integer.MAX_VALUE / 2) {
-                    buf = new ByteArrayOutputStream((int) len);
-                } else {
-                    buf = new ByteArrayOutputStream();
-                }
-                try (InputStream is = response.getEntity().getContent()) {
-                    IOUtils.copy(is, buf);
-                }
-                content = new String(buf.toByteArray(), StandardCharsets.UTF_8);
+        BitbucketResponseCache responseCache = BitbucketResponseCache.get();
+        String cacheKey = BitbucketResponseCache.key(authenticator, httpget.getURI().toString());
+        BitbucketResponseCache.Entry cached = responseCache.revalidate(cacheKey, httpget);
+        CloseableHttpClient client = getHttpClient(httpget);
+        CloseableHttpResponse response = null;
+        try {
+            response = execute(client, httpget);
+            if (cached != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                release(httpget, response, client);
+                return responseCache.notModified(cached);
             }
-            EntityUtils.consume(response.getEntity());
             if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_FOUND) {
                 throw new FileNotFoundException("URL: " + path);
             }
@@ -881,15 +1007,69 @@ public class BitbucketServerAPIClient implements BitbucketApi {
                         "HTTP request error. Status: " + response.getStatusLine().getStatusCode()
                                 + ": " + response.getStatusLine().getReasonPhrase() + ".\n" + response);
             }
-            return content;
+            HttpEntity entity = response.getEntity();
+            InputStream content = entity == null ? new ByteArrayInputStream(new byte[0]) : entity.getContent();
+            return responseCache.store(cacheKey, response,
+                    new ClosingResponseInputStream(content, httpget, response, client));
         } catch (BitbucketRequestException | FileNotFoundException e) {
+            release(httpget, response, client);
             throw e;
         } catch (IOException e) {
+            release(httpget, response, client);
             throw new IOException("Communication error for url: " + path, e);
+        }
+    }
+
+    private static void release(HttpRequestBase request, @CheckForNull CloseableHttpResponse response,
+                                CloseableHttpClient client) {
+        try {
+            if (response != null) {
+                EntityUtils.consume(response.getEntity());
+                response.close();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Could not release the response of " + request.getURI(), e);
         } finally {
-            httpget.releaseConnection();
+            request.releaseConnection();
+            try {
+                client.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Could not close the client of " + request.getURI(), e);
+            }
         }
     }
+
+    /**
+     * The body of a response, closing it releases the response and its client.
+     */
+    private static class ClosingResponseInputStream extends FilterInputStream {
+        private final HttpRequestBase request;
+        private final CloseableHttpResponse response;
+        private final CloseableHttpClient client;
+        private boolean closed;
+
+        ClosingResponseInputStream(InputStream in, HttpRequestBase request, CloseableHttpResponse response,
+                                   CloseableHttpClient client) {
+            super(in);
+            this.request = request;
+            this.response = response;
+            this.client = client;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                release(request, response, client);
+            }
+        }
+    }
+
     private BufferedImage getImageRequest(String path) throws IOException, InterruptedException {
         HttpGet httpget = new HttpGet(this.baseURL + path);
 
@@ -898,7 +1078,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         }
 
         try (CloseableHttpClient client = getHttpClient(httpget);
-                CloseableHttpResponse response = client.execute(httpget, context)) {
+                CloseableHttpResponse response = execute(client, httpget)) {
             BufferedImage content;
             long len = response.getEntity().getContentLength();
             if (len == 0) {
@@ -933,6 +1113,13 @@ public class BitbucketServerAPIClient implements BitbucketApi {
 
     }
 
+    /**
+     * Executes the request, recording it in the {@link BitbucketApiMetrics}.
+     */
+    private CloseableHttpResponse execute(CloseableHttpClient client, HttpRequestBase request) throws IOException {
+        return BitbucketApiMetrics.get().execute(baseURL, request, () -> client.execute(request, context));
+    }
+
     /**
      * Create HttpClient from given host/port
      * @param request the {@link HttpRequestBase} for which an HttpClient will be created
@@ -941,6 +1128,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
     private CloseableHttpClient getHttpClient(final HttpRequestBase request) {
         HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
         httpClientBuilder.useSystemProperties();
+        AbstractBitbucketEndpoint.configureCompression(httpClientBuilder, compression);
 
         RequestConfig.Builder requestConfig = RequestConfig.custom();
         String connectTimeout = System.getProperty("http.connect.timeout", "10");
@@ -1007,7 +1195,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         }
 
         try(CloseableHttpClient client = getHttpClient(httpget);
-                CloseableHttpResponse response = client.execute(httpget, context)) {
+                CloseableHttpResponse response = execute(client, httpget)) {
             EntityUtils.consume(response.getEntity());
             return response.getStatusLine().getStatusCode();
         } finally {
@@ -1052,7 +1240,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
         }
 
         try(CloseableHttpClient client = getHttpClient(request);
-                CloseableHttpResponse response = client.execute(request, context)) {
+                CloseableHttpResponse response = execute(client, request)) {
             if (response.getStatusLine().getStatusCode() == HttpStatus.SC_NO_CONTENT) {
                 EntityUtils.consume(response.getEntity());
                 // 204, no content
@@ -1122,8 +1310,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
                 .set("start", start)
                 .set("limit", 500);
         String url = template.expand();
-        String response = getRequest(url);
-        Map<String,Object> content = JsonParser.mapper.readValue(response, new TypeReference<Map<String,Object>>(){});
+        Map<String,Object> content = getRequest(url, new TypeReference<Map<String,Object>>(){});
         Map page = (Map) content.get("children");
         List<Map> values = (List<Map>) page.get("values");
         collectFileAndDirectories(directory, values, files);
@@ -1132,8 +1319,7 @@ public class BitbucketServerAPIClient implements BitbucketApi {
             url = template
                     .set("start", start)
                     .expand();
-            response = getRequest(url);
-            content = JsonParser.mapper.readValue(response, new TypeReference<Map<String,Object>>(){});
+            content = getRequest(url, new TypeReference<Map<String,Object>>(){});
             page = (Map) content.get("children");
         }
         return files;
@@ -1170,22 +1356,20 @@ public class BitbucketServerAPIClient implements BitbucketApi {
                 .set("start", start)
                 .set("limit", 500);
         String url = template.expand();
-        String response = getRequest(url);
-        Map<String,Object> content = collectLines(response, lines);
+        Map<String,Object> content = collectLines(url, lines);
 
         while(!(boolean)content.get("isLastPage")){
             start += (int) content.get("size");
             url = template
                     .set("start", start)
                     .expand();
-            response = getRequest(url);
-            content = collectLines(response, lines);
+            content = collectLines(url, lines);
         }
         return IOUtils.toInputStream(StringUtils.join(lines,'\n'), "UTF-8");
     }
 
-    private Map<String,Object> collectLines(String response, final List<String> lines) throws IOException {
-        Map<String,Object> content = JsonParser.mapper.readValue(response, new TypeReference<Map<String,Object>>(){});
+    private Map<String,Object> collectLines(String url, final List<String> lines) throws IOException {
+        Map<String,Object> content = getRequest(url, new TypeReference<Map<String,Object>>(){});
         List<Map<String, String>> lineMap = (List<Map<String, String>>) content.get("lines");
         for(Map<String,String> line: lineMap){
             String text = line.get("text");
@@ -25,6 +25,7 @@ package com.cloudbees.jenkins.plugins.bitbucket.server.client.branch;
 
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCommit;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCompactStrings;
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -36,6 +37,8 @@ public class BitbucketServerBranch implements BitbucketBranch {
 
     private String displayId;
 
+    // full hashes are packed, other values are kept as is, see BitbucketCompactStrings
+    private byte[] packedLatestCommit;
     private String latestCommit;
 
     // initialised by callable
@@ -50,12 +53,12 @@ public class BitbucketServerBranch implements BitbucketBranch {
 
     public BitbucketServerBranch(String name, String headHash) {
         this.displayId = name;
-        this.latestCommit = headHash;
+        setLatestCommit(headHash);
     }
 
     @Override
     public String getRawNode() {
-        return latestCommit;
+        return packedLatestCommit != null ? BitbucketCompactStrings.unpackHash(packedLatestCommit) : latestCommit;
     }
 
     @Override
@@ -77,7 +80,8 @@ public class BitbucketServerBranch implements BitbucketBranch {
     }
 
     public void setLatestCommit(String latestCommit) {
-        this.latestCommit = latestCommit;
+        this.packedLatestCommit = BitbucketCompactStrings.packHash(latestCommit);
+        this.latestCommit = packedLatestCommit == null ? latestCommit : null;
     }
 
     public void setName(String displayId) {
@@ -85,7 +89,7 @@ public class BitbucketServerBranch implements BitbucketBranch {
     }
 
     public void setRawNode(String latestCommit) {
-        this.latestCommit = latestCommit;
+        setLatestCommit(latestCommit);
     }
 
     public synchronized void setTimestamp(long timestamp) {
@@ -97,6 +101,22 @@ public class BitbucketServerBranch implements BitbucketBranch {
         this.commitClosure = commitClosure;
     }
 
+    /**
+     * Whether the details of the head commit are still to be fetched by the commit closure.
+     */
+    @Restricted(NoExternalUse.class)
+    public synchronized boolean isHeadCommitPending() {
+        return commitClosure != null && !callableInitialised;
+    }
+
+    /**
+     * Fetches the details of the head commit now, if they are still pending.
+     */
+    @Restricted(NoExternalUse.class)
+    public void resolveHeadCommit() {
+        initHeadCommitInfo();
+    }
+
     private synchronized long timestamp() {
         if (timestamp == null) {
             if (commitClosure == null) {
@@ -129,7 +149,7 @@ public class BitbucketServerBranch implements BitbucketBranch {
     }
 
     public void setAuthor(String author) {
-        this.author = author;
+        this.author = BitbucketCompactStrings.intern(author);
     }
 
     private synchronized void initHeadCommitInfo() {
@@ -141,7 +161,7 @@ public class BitbucketServerBranch implements BitbucketBranch {
 
             this.timestamp = commit.getDateMillis();
             this.message = commit.getMessage();
-            this.author = commit.getAuthor();
+            this.author = BitbucketCompactStrings.intern(commit.getAuthor());
         } catch (Exception e) {
             LOGGER.log(Level.FINER, "Could not determine head commit details", e);
             // fallback on default values
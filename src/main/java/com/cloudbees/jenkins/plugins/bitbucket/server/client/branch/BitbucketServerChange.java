@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2016, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.server.client.branch;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketChange;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Represents a file changed between two commits as given by Bitbucket Server.
+ */
+public class BitbucketServerChange {
+    private String type;
+    private Path path;
+    private Path srcPath;
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public void setPath(Path path) {
+        this.path = path;
+    }
+
+    public Path getSrcPath() {
+        return srcPath;
+    }
+
+    public void setSrcPath(Path srcPath) {
+        this.srcPath = srcPath;
+    }
+
+    /**
+     * Converts to the API representation.
+     *
+     * @return the change
+     */
+    public BitbucketChange toChange() {
+        String src = srcPath == null ? null : srcPath.getValue();
+        if ("ADD".equals(type)) {
+            return new BitbucketChange(BitbucketChange.Type.ADDED, path.getValue(), null);
+        } else if ("DELETE".equals(type)) {
+            return new BitbucketChange(BitbucketChange.Type.DELETED, path.getValue(), null);
+        } else if ("MOVE".equals(type)) {
+            return new BitbucketChange(BitbucketChange.Type.RENAMED, path.getValue(), src);
+        } else if ("COPY".equals(type)) {
+            return new BitbucketChange(BitbucketChange.Type.COPIED, path.getValue(), src);
+        }
+        return new BitbucketChange(BitbucketChange.Type.MODIFIED, path.getValue(), null);
+    }
+
+    public static class Path {
+        @JsonProperty("toString")
+        private String value;
+
+        public String getValue() {
+            return value;
+        }
+
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+}
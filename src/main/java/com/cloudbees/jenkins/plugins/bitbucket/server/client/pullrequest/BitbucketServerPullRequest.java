@@ -23,6 +23,7 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.server.client.pullrequest;
 
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketCompactStrings;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketHref;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketReviewer;
@@ -137,9 +138,9 @@ public class BitbucketServerPullRequest implements BitbucketPullRequest {
     @JsonProperty
     public void setAuthor(Author author) {
         if (author != null && author.getUser() != null) {
-            authorLogin = author.getUser().getDisplayName();
-            authorEmail = author.getUser().getEmailAddress();
-            authorIdentifier = author.getUser().getName();
+            authorLogin = BitbucketCompactStrings.intern(author.getUser().getDisplayName());
+            authorEmail = BitbucketCompactStrings.intern(author.getUser().getEmailAddress());
+            authorIdentifier = BitbucketCompactStrings.intern(author.getUser().getName());
         } else {
             authorLogin = null;
             authorEmail = null;
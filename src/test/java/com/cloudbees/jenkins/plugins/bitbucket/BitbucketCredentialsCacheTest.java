@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.hudson.plugins.folder.Folder;
+import com.cloudbees.hudson.plugins.folder.properties.FolderCredentialsProvider.FolderCredentialsProperty;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import com.cloudbees.plugins.credentials.common.StandardUsernamePasswordCredentials;
+import com.cloudbees.plugins.credentials.domains.DomainCredentials;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class BitbucketCredentialsCacheTest {
+
+    @ClassRule
+    public static JenkinsRule j = new JenkinsRule();
+
+    @Test
+    public void repeatedLookupsAreCached() {
+        BitbucketCredentialsCache cache = new BitbucketCredentialsCache(16, 60000L);
+        StandardUsernamePasswordCredentials credentials = mock(StandardUsernamePasswordCredentials.class);
+        AtomicInteger lookups = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.lookup("folder/project\nSYSTEM\ntype\nid\nhttps://bitbucket.org",
+                    StandardCredentials.class, () -> {
+                        lookups.incrementAndGet();
+                        return credentials;
+                    }), sameInstance(credentials));
+        }
+        assertThat(lookups.get(), is(1));
+        assertThat(cache.getHitCount(), is(2L));
+        assertThat(cache.getMissCount(), is(1L));
+    }
+
+    @Test
+    public void missingCredentialsAreCachedUntilCleared() {
+        BitbucketCredentialsCache cache = new BitbucketCredentialsCache(16, 60000L);
+        AtomicInteger lookups = new AtomicInteger();
+
+        assertThat(cache.lookup("key", StandardCredentials.class, () -> {
+            lookups.incrementAndGet();
+            return null;
+        }), nullValue());
+        assertThat(cache.lookup("key", StandardCredentials.class, () -> {
+            lookups.incrementAndGet();
+            return null;
+        }), nullValue());
+        assertThat(lookups.get(), is(1));
+
+        cache.clear();
+        StandardCredentials credentials = mock(StandardCredentials.class);
+        assertThat(cache.lookup("key", StandardCredentials.class, () -> credentials), sameInstance(credentials));
+    }
+
+    @Test
+    public void lookupsRacingWithClearAreNotCached() {
+        BitbucketCredentialsCache cache = new BitbucketCredentialsCache(16, 60000L);
+        StandardCredentials stale = mock(StandardCredentials.class);
+        assertThat(cache.lookup("key", StandardCredentials.class, () -> {
+            cache.clear();
+            return stale;
+        }), sameInstance(stale));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void leastRecentlyUsedLookupsAreEvicted() {
+        BitbucketCredentialsCache cache = new BitbucketCredentialsCache(2, 60000L);
+        cache.lookup("a", StandardCredentials.class, () -> null);
+        cache.lookup("b", StandardCredentials.class, () -> null);
+        cache.lookup("a", StandardCredentials.class, () -> null);
+        cache.lookup("c", StandardCredentials.class, () -> null);
+        assertThat(cache.size(), is(2));
+
+        AtomicInteger lookups = new AtomicInteger();
+        cache.lookup("a", StandardCredentials.class, () -> {
+            lookups.incrementAndGet();
+            return null;
+        });
+        cache.lookup("b", StandardCredentials.class, () -> {
+            lookups.incrementAndGet();
+            return null;
+        });
+        assertThat("only b was evicted", lookups.get(), is(1));
+    }
+
+    @Test
+    public void disabledCacheAlwaysLooksUp() {
+        BitbucketCredentialsCache cache = new BitbucketCredentialsCache(0, 60000L);
+        AtomicInteger lookups = new AtomicInteger();
+        cache.lookup("key", StandardCredentials.class, () -> {
+            lookups.incrementAndGet();
+            return null;
+        });
+        cache.lookup("key", StandardCredentials.class, () -> {
+            lookups.incrementAndGet();
+            return null;
+        });
+        assertThat(lookups.get(), is(2));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void savingFoldersWithoutCredentialsKeepsTheCache() throws Exception {
+        Folder folder = j.jenkins.createProject(Folder.class, "unrelated");
+        BitbucketCredentialsCache cache = BitbucketCredentialsCache.get();
+        cache.clear();
+        cache.lookup("key", StandardCredentials.class, () -> null);
+
+        folder.save();
+        assertThat(cache.size(), is(1));
+
+        // a folder holding credentials may have changed them
+        folder.addProperty(new FolderCredentialsProperty(new DomainCredentials[0]));
+        assertThat(cache.size(), is(0));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudRepository;
+import java.util.Collections;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class BitbucketPrefetchedRepositoriesTest {
+
+    private static final String SERVER_URL = "https://bitbucket.org";
+
+    @Test
+    public void listedRepositoriesAreFoundWithTheirMainBranch() {
+        BitbucketPrefetchedRepositories prefetched = new BitbucketPrefetchedRepositories(60000L, 100);
+        BitbucketCloudRepository repository = repository("amuniz/test-repos");
+        repository.setMainbranch(Collections.<String, Object>singletonMap("name", "main"));
+        prefetched.put(SERVER_URL, "creds", repository);
+
+        BitbucketPrefetchedRepositories.Snapshot snapshot =
+                prefetched.find(SERVER_URL, "creds", "AMUNIZ", "Test-Repos");
+        assertThat(snapshot, notNullValue());
+        assertThat(snapshot.getRepository(), sameInstance(repository));
+        assertThat(snapshot.getDefaultBranch(), is("main"));
+    }
+
+    @Test
+    public void snapshotsAreScopedToTheCredentials() {
+        BitbucketPrefetchedRepositories prefetched = new BitbucketPrefetchedRepositories(60000L, 100);
+        prefetched.put(SERVER_URL, "creds", repository("amuniz/test-repos"));
+
+        assertThat(prefetched.find(SERVER_URL, "other", "amuniz", "test-repos"), nullValue());
+        assertThat(prefetched.find(SERVER_URL, null, "amuniz", "test-repos"), nullValue());
+        assertThat(prefetched.find("https://bitbucket.example.com", "creds", "amuniz", "test-repos"), nullValue());
+    }
+
+    @Test
+    public void expiredSnapshotsAreNotUsed() throws Exception {
+        BitbucketPrefetchedRepositories prefetched = new BitbucketPrefetchedRepositories(1L, 100);
+        prefetched.put(SERVER_URL, "creds", repository("amuniz/test-repos"));
+        Thread.sleep(10);
+
+        assertThat(prefetched.find(SERVER_URL, "creds", "amuniz", "test-repos"), nullValue());
+        assertThat(prefetched.size(), is(0));
+    }
+
+    @Test
+    public void snapshotsAreBounded() {
+        BitbucketPrefetchedRepositories prefetched = new BitbucketPrefetchedRepositories(60000L, 2);
+        prefetched.put(SERVER_URL, "creds", repository("amuniz/one"));
+        prefetched.put(SERVER_URL, "creds", repository("amuniz/two"));
+        prefetched.put(SERVER_URL, "creds", repository("amuniz/three"));
+
+        assertThat(prefetched.size(), is(2));
+        assertThat(prefetched.find(SERVER_URL, "creds", "amuniz", "three"), nullValue());
+    }
+
+    private static BitbucketCloudRepository repository(String fullName) {
+        BitbucketCloudRepository repository = new BitbucketCloudRepository();
+        repository.setFullName(fullName);
+        repository.setScm("git");
+        return repository;
+    }
+}
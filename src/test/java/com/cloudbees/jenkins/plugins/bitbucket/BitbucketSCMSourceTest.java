@@ -1,10 +1,17 @@
 package com.cloudbees.jenkins.plugins.bitbucket;
 
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketHref;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
+import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.AbstractBitbucketEndpoint;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketEndpointConfiguration;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.BitbucketServerAPIClient;
+import hudson.plugins.git.GitSCM;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import jenkins.model.Jenkins;
 import jenkins.model.JenkinsLocationConfiguration;
 import jenkins.scm.api.trait.SCMSourceTrait;
@@ -20,12 +27,19 @@ import org.jvnet.hudson.test.JenkinsRule;
 
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class BitbucketSCMSourceTest {
     @ClassRule
@@ -966,4 +980,62 @@ public class BitbucketSCMSourceTest {
         BitbucketSCMSource instance = load();
         assertThat(instance.getEndpointJenkinsRootUrl(), is("https://jenkins.test/jenkins/"));
     }
+
+    @Test
+    public void cloneLinksAreKeptWithTheSource() throws Exception {
+        BitbucketSCMSource source = new BitbucketSCMSource("cloudbeers", "stunning-adventure");
+        BitbucketCloudRepository repository = new BitbucketCloudRepository();
+        repository.setFullName("cloudbeers/stunning-adventure");
+        repository.setScm("git");
+        repository.setLinks(Collections.<String, List<BitbucketHref>>singletonMap("clone", Arrays.asList(
+                new BitbucketHref("https", "https://mirror.example.com/cloudbeers/stunning-adventure.git"),
+                new BitbucketHref("ssh", "ssh://git@mirror.example.com/cloudbeers/stunning-adventure.git"))));
+        assertThat(source.updateFrom(repository), is(true));
+        assertThat(source.updateFrom(repository), is(false));
+
+        String xml = Jenkins.XSTREAM2.toXML(source);
+        assertThat(xml, containsString("ssh://git@mirror.example.com/cloudbeers/stunning-adventure.git"));
+        BitbucketSCMSource restored = (BitbucketSCMSource) Jenkins.XSTREAM2.fromXML(xml);
+        assertThat(restored.updateFrom(repository), is(false));
+        // the repository is not fetched, Bitbucket Cloud ignores the clone links for its remotes
+        GitSCM scm = (GitSCM) restored.build(new BranchSCMHead("master", null));
+        assertThat(scm.getUserRemoteConfigs().get(0).getUrl(),
+                is("https://bitbucket.org/cloudbeers/stunning-adventure.git"));
+    }
+
+    @Test
+    public void serverCloneLinksAreFetchedOnceForSourcesSavedWithoutThem() throws Exception {
+        String serverUrl = "https://bitbucket.example.com";
+        BitbucketRepository repository = mock(BitbucketRepository.class);
+        when(repository.getScm()).thenReturn("git");
+        when(repository.getLinks()).thenReturn(Collections.<String, List<BitbucketHref>>singletonMap("clone",
+                Arrays.asList(
+                        new BitbucketHref("http", "https://bitbucket.example.com/scm/amuniz/test-repos.git"),
+                        new BitbucketHref("ssh", "ssh://git@bitbucket.example.com:7999/amuniz/test-repos.git"))));
+        BitbucketServerAPIClient api =
+                spy(new BitbucketServerAPIClient(serverUrl, "amuniz", "test-repos", (BitbucketAuthenticator) null, false));
+        doReturn(repository).when(api).getRepository();
+        BitbucketMockApiFactory.add(serverUrl, api);
+        try {
+            // as saved by a version that did not keep the clone links
+            BitbucketSCMSource source = new BitbucketSCMSource("amuniz", "test-repos");
+            source.setServerUrl(serverUrl);
+            source.setTraits(Collections.<SCMSourceTrait>singletonList(new SSHCheckoutTrait(null)));
+
+            GitSCM scm = (GitSCM) source.build(new BranchSCMHead("master", null));
+            assertThat(scm.getUserRemoteConfigs().get(0).getUrl(),
+                    is("ssh://git@bitbucket.example.com:7999/amuniz/test-repos.git"));
+            verify(api, times(1)).getRepository();
+
+            // the links are now kept with the source
+            BitbucketSCMSource restored = (BitbucketSCMSource) Jenkins.XSTREAM2.fromXML(
+                    Jenkins.XSTREAM2.toXML(source));
+            scm = (GitSCM) restored.build(new BranchSCMHead("master", null));
+            assertThat(scm.getUserRemoteConfigs().get(0).getUrl(),
+                    is("ssh://git@bitbucket.example.com:7999/amuniz/test-repos.git"));
+            verify(api, times(1)).getRepository();
+        } finally {
+            BitbucketMockApiFactory.remove(serverUrl);
+        }
+    }
 }
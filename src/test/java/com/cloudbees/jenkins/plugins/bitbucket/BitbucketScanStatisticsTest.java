@@ -0,0 +1,155 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import hudson.model.Item;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BitbucketScanStatisticsTest {
+
+    @ClassRule
+    public static JenkinsRule j = new JenkinsRule();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void aggregatesPerOperation() {
+        BitbucketScanStatistics statistics = new BitbucketScanStatistics("amuniz/test-repos");
+        statistics.onRequest("getBranches", "200", TimeUnit.MILLISECONDS.toNanos(100));
+        statistics.onBytes("getBranches", 2048);
+        statistics.onRequest("getBranches", "200", TimeUnit.MILLISECONDS.toNanos(50));
+        statistics.onRequest("checkPathExists", "404", TimeUnit.MILLISECONDS.toNanos(10));
+        statistics.onRequest("resolveCommit", "error", TimeUnit.MILLISECONDS.toNanos(5));
+        statistics.onRateLimitWait(TimeUnit.SECONDS.toNanos(5));
+        statistics.onCacheHit();
+        statistics.recordProbe(TimeUnit.MILLISECONDS.toNanos(20));
+        statistics.recordProcess(TimeUnit.MILLISECONDS.toNanos(30));
+        statistics.finish();
+
+        BitbucketScanStatisticsAction.Scan scan = statistics.toScan();
+        assertThat(scan.getName(), is("amuniz/test-repos"));
+        assertThat(scan.getRequests(), is(4L));
+        assertThat(scan.getErrors(), is(1L));
+        assertThat(scan.getBytes(), is(2048L));
+        assertThat(scan.getNetworkMillis(), is(165L));
+        assertThat(scan.getRateLimitWaits(), is(1L));
+        assertThat(scan.getRateLimitWaitMillis(), is(5000L));
+        assertThat(scan.getCacheHits(), is(1L));
+        assertThat(scan.getProbes(), is(1L));
+        assertThat(scan.getProcessed(), is(1L));
+        assertThat(scan.getOperations().size(), is(3));
+        assertThat(scan.getOperations().get(1).getOperation(), is("getBranches"));
+        assertThat(scan.getOperations().get(1).getRequests(), is(2L));
+        assertThat(scan.getOperations().get(1).getMillis(), is(150L));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statistics.print(new PrintStream(out, true));
+        String log = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(log, containsString("Bitbucket API usage for amuniz/test-repos: 4 requests (1 failed), 2.0 KiB received in 165 ms"));
+        assertThat(log, containsString("5.0 s waiting for rate limits (1 waits)"));
+    }
+
+    @Test
+    public void reportsCompressedBytes() {
+        BitbucketScanStatistics statistics = new BitbucketScanStatistics("amuniz/test-repos");
+        statistics.onRequest("getBranches", "200", TimeUnit.MILLISECONDS.toNanos(100));
+        statistics.onBytes("getBranches", 4096);
+        statistics.onWireBytes("getBranches", 512);
+        statistics.finish();
+
+        BitbucketScanStatisticsAction.Scan scan = statistics.toScan();
+        assertThat(scan.getBytes(), is(4096L));
+        assertThat(scan.getWireBytes(), is(512L));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statistics.print(new PrintStream(out, true));
+        String log = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(log, containsString("4.0 KiB received in 100 ms (512 B compressed)"));
+    }
+
+    @Test
+    public void reportsDeduplicatedCalls() {
+        BitbucketScanStatistics statistics = new BitbucketScanStatistics("amuniz/test-repos");
+        statistics.recordDeduplicated("repository");
+        statistics.recordDeduplicated("repository");
+        statistics.recordDeduplicated("client");
+        statistics.finish();
+
+        assertThat(statistics.getDeduplicated().get("repository"), is(2L));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        statistics.print(new PrintStream(out, true));
+        String log = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertThat(log, containsString("Reused within the scan: client x1, repository x2"));
+    }
+
+    @Test
+    public void keepsABoundedHistoryPerOwner() {
+        Item owner = mock(Item.class);
+        assertThat(BitbucketScanStatisticsAction.of(owner), nullValue());
+        for (int i = 0; i < 25; i++) {
+            BitbucketScanStatistics statistics = new BitbucketScanStatistics("scan-" + i);
+            statistics.finish();
+            BitbucketScanStatisticsAction.record(owner, statistics.toScan());
+        }
+        BitbucketScanStatisticsAction action = BitbucketScanStatisticsAction.of(owner);
+        assertThat(action.getScans().size(), is(20));
+        assertThat(action.getLastScan().getName(), is("scan-24"));
+        BitbucketScanStatisticsAction.record(new Object(), new BitbucketScanStatistics("ignored").toScan());
+    }
+
+    @Test
+    public void historyIsReadBackFromTheOwnerDirectory() throws Exception {
+        Item owner = mock(Item.class);
+        when(owner.getRootDir()).thenReturn(tmp.getRoot());
+        BitbucketScanStatistics statistics = new BitbucketScanStatistics("amuniz/test-repos");
+        statistics.onRequest("getBranches", "200", TimeUnit.MILLISECONDS.toNanos(100));
+        statistics.finish();
+        BitbucketScanStatisticsAction.record(owner, statistics.toScan());
+
+        // another instance of the same item, as after a restart
+        Item reloaded = mock(Item.class);
+        when(reloaded.getRootDir()).thenReturn(tmp.getRoot());
+        BitbucketScanStatisticsAction action = BitbucketScanStatisticsAction.of(reloaded);
+        assertThat(action.getScans().size(), is(1));
+        assertThat(action.getLastScan().getName(), is("amuniz/test-repos"));
+        assertThat(action.getLastScan().getRequests(), is(1L));
+        assertThat(action.getLastScan().getOperations().get(0).getOperation(), is("getBranches"));
+    }
+}
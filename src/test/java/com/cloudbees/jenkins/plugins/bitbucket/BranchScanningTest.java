@@ -23,9 +23,14 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket;
 
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
 import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudApiClient;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketCloudEndpoint;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerCommit;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.model.TaskListener;
 import hudson.plugins.git.GitSCM;
@@ -35,6 +40,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import jenkins.plugins.git.AbstractGitSCMSource.SCMRevisionImpl;
 import jenkins.scm.api.SCMHead;
 import jenkins.scm.api.SCMHeadObserver;
@@ -43,17 +50,20 @@ import jenkins.scm.api.SCMSource;
 import jenkins.scm.api.SCMSourceCriteria;
 import jenkins.scm.api.SCMSourceOwner;
 import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
+import jenkins.scm.impl.trait.WildcardSCMHeadFilterTrait;
 import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -130,6 +140,39 @@ public class BranchScanningTest {
         assertEquals("PR-23", observer.getBranches().get(1));
     }
 
+    @Test
+    public void excludedBranchesAreNotResolved() throws Exception {
+        String serverUrl = "https://bitbucket.example.com";
+        Set<String> resolved = ConcurrentHashMap.newKeySet();
+        List<BitbucketBranch> branches = new ArrayList<>();
+        for (String name : Arrays.asList("master", "feature/a", "feature/b", "release/1.0")) {
+            BitbucketServerBranch branch = new BitbucketServerBranch(name, "52fc8e220d77ec400f7fc96a91d2fd0bb1bc553a");
+            branch.setCommitClosure(() -> {
+                resolved.add(name);
+                return new BitbucketServerCommit("message", "52fc8e220d77ec400f7fc96a91d2fd0bb1bc553a", 0L,
+                        "Antonio Muniz <amuniz@example.com>");
+            });
+            branches.add(branch);
+        }
+        BitbucketRepository repository = mock(BitbucketRepository.class);
+        when(repository.getScm()).thenReturn("git");
+        BitbucketApi api = mock(BitbucketApi.class);
+        when(api.getRepository()).thenReturn(repository);
+        doReturn(branches).when(api).getBranches();
+        BitbucketMockApiFactory.add(serverUrl, api);
+
+        BitbucketSCMSource source = new BitbucketSCMSource("amuniz", "test-repos");
+        source.setServerUrl(serverUrl);
+        source.setTraits(Arrays.asList(new BranchDiscoveryTrait(true, true),
+                new WildcardSCMHeadFilterTrait("feature/*", "")));
+        SCMHeadObserverImpl observer = new SCMHeadObserverImpl();
+        source.fetch(observer, BitbucketClientMockUtils.getTaskListenerMock());
+
+        assertThat(observer.getBranches(), containsInAnyOrder("feature/a", "feature/b"));
+        // the commits of the branches filtered out are never fetched
+        assertThat(resolved, containsInAnyOrder("feature/a", "feature/b"));
+    }
+
     @Test
     public void gitSCMTest() throws Exception {
         BitbucketMockApiFactory.add(BitbucketCloudEndpoint.SERVER_URL,
@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudPage;
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.pullrequest.BitbucketServerPullRequests;
+import com.fasterxml.jackson.core.type.TypeReference;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class JsonParserTest {
+
+    private static final String ROOT = "/com/cloudbees/jenkins/plugins/bitbucket/";
+
+    @Test
+    public void streamAndStringGiveTheSameResult() throws Exception {
+        String json = load("server/payload/1.0-projects-amuniz-repos-test-repos-pull-requests_start_0_limit_200.json");
+        BitbucketServerPullRequests fromString = JsonParser.toJava(json, BitbucketServerPullRequests.class);
+        BitbucketServerPullRequests fromStream = JsonParser.toJava(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), BitbucketServerPullRequests.class);
+
+        assertThat(fromStream.getValues().size(), is(fromString.getValues().size()));
+        assertThat(fromStream.getValues().get(0).getTitle(), is(fromString.getValues().get(0).getTitle()));
+        assertThat(fromStream.isLastPage(), is(fromString.isLastPage()));
+    }
+
+    @Test
+    public void genericTypes() throws Exception {
+        String json = load("client/payload/2.0-repositories-amuniz-test-repos-refs-branches_pagelen_100.json");
+        TypeReference<BitbucketCloudPage<BitbucketCloudBranch>> type =
+                new TypeReference<BitbucketCloudPage<BitbucketCloudBranch>>(){};
+        BitbucketCloudPage<BitbucketCloudBranch> fromString = JsonParser.toJava(json, type);
+        BitbucketCloudPage<BitbucketCloudBranch> fromStream = JsonParser.toJava(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), type);
+
+        assertThat(fromStream.getValues().size(), is(fromString.getValues().size()));
+        assertThat(fromStream.getValues().get(0).getName(), is(fromString.getValues().get(0).getName()));
+    }
+
+    @Test
+    public void decodesUtf8Bytes() throws Exception {
+        byte[] json = "{\"name\":\"r\u00e9pertoire \u2713\"}".getBytes(StandardCharsets.UTF_8);
+        Map<String, Object> value = JsonParser.toJava(new ByteArrayInputStream(json),
+                new TypeReference<Map<String, Object>>(){});
+
+        assertThat(value.get("name"), is("r\u00e9pertoire \u2713"));
+    }
+
+    private static String load(String path) throws Exception {
+        try (InputStream is = JsonParserTest.class.getResourceAsStream(ROOT + path)) {
+            return IOUtils.toString(is, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequest;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPullRequestEvent;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketPushEvent;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketRepositoryType;
+import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudPage;
+import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudWebhookPayload;
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequests;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.BitbucketServerWebhookPayload;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerBranches;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.pullrequest.BitbucketServerPullRequests;
+import com.fasterxml.jackson.core.type.TypeReference;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.scm.api.SCMHead;
+import jenkins.scm.api.SCMHeadOrigin;
+import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures parsing of the webhook payloads and paged API responses used by the tests, and building the heads of the
+ * parsed pull requests.
+ */
+@State(Scope.Benchmark)
+public class PayloadParsingBenchmark {
+
+    private static final String ROOT = "/com/cloudbees/jenkins/plugins/bitbucket/";
+
+    private String serverPushPayload;
+    private String serverPullRequestPayload;
+    private String cloudPushPayload;
+    private String cloudPullRequestPayload;
+    private String serverBranches;
+    private String serverPullRequests;
+    private String cloudBranches;
+    private String cloudPullRequests;
+    private byte[] serverPullRequestsBytes;
+    private byte[] cloudBranchesBytes;
+    private List<BitbucketPullRequest> pullRequests;
+
+    @Setup
+    public void setup() throws IOException {
+        serverPushPayload = load("server/events/BitbucketServerPushEventTest/updatePayload.json");
+        serverPullRequestPayload = load("server/events/BitbucketServerPullRequestEventTest/updatePayload.json");
+        cloudPushPayload = load("client/events/BitbucketCloudPushEventTest/multipleChangesPayload.json");
+        cloudPullRequestPayload = load("client/events/BitbucketCloudPullRequestEventTest/createPayloadOrigin.json");
+        serverBranches = load("server/payload/1.0-projects-amuniz-repos-test-repos-branches_start_0_limit_200.json");
+        serverPullRequests = load(
+                "server/payload/1.0-projects-amuniz-repos-test-repos-pull-requests_start_0_limit_200.json");
+        cloudBranches = load("client/payload/2.0-repositories-amuniz-test-repos-refs-branches_pagelen_100.json");
+        cloudPullRequests = load(
+                "client/payload/2.0-repositories-amuniz-test-repos-pullrequests_page_1_pagelen_50.json");
+        serverPullRequestsBytes = serverPullRequests.getBytes(StandardCharsets.UTF_8);
+        cloudBranchesBytes = cloudBranches.getBytes(StandardCharsets.UTF_8);
+        pullRequests = new ArrayList<>();
+        pullRequests.addAll(parseServerPullRequests().getValues());
+        pullRequests.addAll(parseCloudPullRequests().getValues());
+    }
+
+    private static String load(String path) throws IOException {
+        try (InputStream is = PayloadParsingBenchmark.class.getResourceAsStream(ROOT + path)) {
+            if (is == null) {
+                throw new IOException("Missing fixture " + path);
+            }
+            return IOUtils.toString(is, "UTF-8");
+        }
+    }
+
+    @Benchmark
+    public BitbucketPushEvent serverPushEvent() {
+        return BitbucketServerWebhookPayload.pushEventFromPayload(serverPushPayload);
+    }
+
+    @Benchmark
+    public BitbucketPullRequestEvent serverPullRequestEvent() {
+        return BitbucketServerWebhookPayload.pullRequestEventFromPayload(serverPullRequestPayload);
+    }
+
+    @Benchmark
+    public BitbucketPushEvent cloudPushEvent() {
+        return BitbucketCloudWebhookPayload.pushEventFromPayload(cloudPushPayload);
+    }
+
+    @Benchmark
+    public BitbucketPullRequestEvent cloudPullRequestEvent() {
+        return BitbucketCloudWebhookPayload.pullRequestEventFromPayload(cloudPullRequestPayload);
+    }
+
+    @Benchmark
+    public BitbucketServerBranches serverBranchesPage() throws IOException {
+        return JsonParser.toJava(serverBranches, BitbucketServerBranches.class);
+    }
+
+    @Benchmark
+    public BitbucketServerPullRequests serverPullRequestsPage() throws IOException {
+        return parseServerPullRequests();
+    }
+
+    @Benchmark
+    public BitbucketServerPullRequests serverPullRequestsPageFromStream() throws IOException {
+        return JsonParser.toJava(new ByteArrayInputStream(serverPullRequestsBytes), BitbucketServerPullRequests.class);
+    }
+
+    @Benchmark
+    public BitbucketCloudPage<BitbucketCloudBranch> cloudBranchesPage() throws IOException {
+        return JsonParser.toJava(cloudBranches, new TypeReference<BitbucketCloudPage<BitbucketCloudBranch>>(){});
+    }
+
+    @Benchmark
+    public BitbucketCloudPage<BitbucketCloudBranch> cloudBranchesPageFromStream() throws IOException {
+        return JsonParser.toJava(new ByteArrayInputStream(cloudBranchesBytes),
+                new TypeReference<BitbucketCloudPage<BitbucketCloudBranch>>(){});
+    }
+
+    @Benchmark
+    public BitbucketPullRequests cloudPullRequestsPage() throws IOException {
+        return parseCloudPullRequests();
+    }
+
+    @Benchmark
+    public List<SCMHead> pullRequestHeads() {
+        List<SCMHead> heads = new ArrayList<>(pullRequests.size() * 2);
+        for (BitbucketPullRequest pr : pullRequests) {
+            String branchName = pr.getSource().getBranch().getName();
+            heads.add(new BranchSCMHead(branchName, BitbucketRepositoryType.GIT));
+            heads.add(new PullRequestSCMHead("PR-" + pr.getId(), "amuniz", "test-repos", BitbucketRepositoryType.GIT,
+                    branchName, pr, SCMHeadOrigin.DEFAULT, ChangeRequestCheckoutStrategy.HEAD));
+        }
+        return heads;
+    }
+
+    private BitbucketServerPullRequests parseServerPullRequests() throws IOException {
+        return JsonParser.toJava(serverPullRequests, BitbucketServerPullRequests.class);
+    }
+
+    private BitbucketPullRequests parseCloudPullRequests() throws IOException {
+        return JsonParser.toJava(cloudPullRequests, BitbucketPullRequests.class);
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.AbstractBitbucketEndpoint;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BitbucketApiMetricsTest {
+
+    private static final String CLOUD = "https://bitbucket.org";
+
+    @Test
+    public void cloudOperations() {
+        String repo = "/2.0/repositories/amuniz/test-repos";
+        assertThat(operation("GET", repo, null), is("getRepository"));
+        assertThat(operation("GET", repo + "/", "fields=mainbranch.name"), is("getDefaultBranch"));
+        assertThat(operation("GET", "/2.0/repositories/amuniz", "page=1&pagelen=100"), is("getRepositories"));
+        assertThat(operation("GET", repo + "/refs/branches", "pagelen=100"), is("getBranches"));
+        assertThat(operation("GET", repo + "/refs/tags", "pagelen=100"), is("getTags"));
+        assertThat(operation("GET", repo + "/refs", "pagelen=100"), is("getRefs"));
+        assertThat(operation("GET", repo + "/pullrequests", "page=1&pagelen=50"), is("getPullRequests"));
+        assertThat(operation("GET", repo + "/pullrequests/1", null), is("getPullRequestById"));
+        assertThat(operation("GET", repo + "/pullrequests/1/commits", "pagelen=1"), is("getPullRequestCommits"));
+        assertThat(operation("GET", repo + "/commit/046d9a3c1532", null), is("resolveCommit"));
+        assertThat(operation("POST", repo + "/commit/046d9a3c1532/statuses/build", null), is("postBuildStatus"));
+        assertThat(operation("HEAD", repo + "/src/046d9a3c1532/Jenkinsfile", null), is("checkPathExists"));
+        assertThat(operation("GET", repo + "/src/046d9a3c1532/Jenkinsfile", null), is("getFileContent"));
+        assertThat(operation("GET", repo + "/diffstat/a..b", "pagelen=100"), is("getChanges"));
+        assertThat(operation("GET", repo + "/hooks", "page=1"), is("getWebHooks"));
+        assertThat(operation("POST", repo + "/hooks", null), is("registerCommitWebHook"));
+        assertThat(operation("DELETE", repo + "/hooks/%7Bid%7D", null), is("removeCommitWebHook"));
+        assertThat(operation("GET", "/2.0/teams/myteam", null), is("getTeam"));
+    }
+
+    @Test
+    public void serverOperations() {
+        String repo = "/rest/api/1.0/projects/AMUNIZ/repos/test-repos";
+        assertThat(operation("GET", repo, null), is("getRepository"));
+        assertThat(operation("GET", "/rest/api/1.0/projects/AMUNIZ", null), is("getTeam"));
+        assertThat(operation("GET", "/rest/api/1.0/projects/AMUNIZ/avatar.png", null), is("getTeamAvatar"));
+        assertThat(operation("GET", "/rest/api/1.0/projects/AMUNIZ/repos", "start=0&limit=200"), is("getRepositories"));
+        assertThat(operation("GET", repo + "/branches/default", null), is("getDefaultBranch"));
+        assertThat(operation("GET", repo + "/branches", "start=0&limit=200"), is("getBranches"));
+        assertThat(operation("GET", repo + "/tags", "start=0&limit=200"), is("getTags"));
+        assertThat(operation("GET", repo + "/pull-requests", "start=0&limit=200"), is("getPullRequests"));
+        assertThat(operation("GET", repo + "/pull-requests/2", null), is("getPullRequestById"));
+        assertThat(operation("GET", repo + "/pull-requests/2/merge", null), is("getPullRequestCanMerge"));
+        assertThat(operation("GET", repo + "/pull-requests/2/changes", null), is("getPullRequestChanges"));
+        assertThat(operation("GET", repo + "/commits/046d9a3c1532acf4cf08fe93235c00e4d673c1d2", null), is("resolveCommit"));
+        assertThat(operation("POST", repo + "/commits/046d9a3c/comments", null), is("postCommitComment"));
+        assertThat(operation("GET", repo + "/browse/Jenkinsfile", "at=master"), is("browse"));
+        assertThat(operation("GET", repo + "/compare/changes", "from=a&to=b"), is("getChanges"));
+        assertThat(operation("POST", "/rest/build-status/1.0/commits/046d9a3c", null), is("postBuildStatus"));
+        assertThat(operation("GET", "/rest/webhook/1.0/projects/AMUNIZ/repos/test-repos/configurations", null),
+                is("getWebHooks"));
+        assertThat(operation("GET", "/something/else", null), is("other"));
+    }
+
+    @Test
+    public void recordsCountsStatusesAndBytes() throws Exception {
+        BitbucketApiMetrics metrics = new BitbucketApiMetrics(false);
+        byte[] body = "{\"values\":[]}".getBytes(StandardCharsets.UTF_8);
+
+        HttpGet get = new HttpGet("https://api.bitbucket.org/2.0/repositories/amuniz/test-repos/refs/branches?pagelen=100");
+        try (CloseableHttpResponse response = metrics.execute(CLOUD, get, () -> response(200, body));
+             InputStream content = response.getEntity().getContent()) {
+            assertThat(IOUtils.toByteArray(content).length, is(body.length));
+        }
+        metrics.execute(CLOUD, get, () -> response(429, new byte[0]));
+        metrics.execute(CLOUD, get, () -> response(200, body));
+
+        assertThat(metrics.timer(CLOUD, "getBranches", "200").getCount(), is(2L));
+        assertThat(metrics.timer(CLOUD, "getBranches", "200").getBytes(), is((long) body.length));
+        assertThat(metrics.timer(CLOUD, "getBranches", "200").getWireBytes(), is((long) body.length));
+        assertThat(metrics.timer(CLOUD, "getBranches", "429").getCount(), is(1L));
+        assertThat(metrics.getRequestCount(), is(3L));
+        assertThat(metrics.getRateLimitedCount(), is(1L));
+        assertThat(metrics.timers().size(), is(2));
+    }
+
+    @Test
+    public void recordsWireBytesOfCompressedResponses() throws Exception {
+        BitbucketApiMetrics metrics = new BitbucketApiMetrics(false);
+        StringBuilder json = new StringBuilder("{\"values\":[");
+        for (int i = 0; i < 100; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"displayId\":\"feature/branch-").append(i).append("\"}");
+        }
+        byte[] body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(body);
+        }
+        List<String> acceptEncodings = new ArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            acceptEncodings.add(String.valueOf(acceptEncoding));
+            byte[] response = body;
+            if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                response = gzipped.toByteArray();
+            }
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        try {
+            String endpoint = "http://localhost:" + server.getAddress().getPort();
+            String url = endpoint + "/rest/api/1.0/projects/AMUNIZ/repos/test-repos/branches";
+            for (boolean compression : new boolean[]{true, false}) {
+                HttpClientBuilder builder = HttpClientBuilder.create();
+                AbstractBitbucketEndpoint.configureCompression(builder, compression);
+                HttpGet get = new HttpGet(url);
+                try (CloseableHttpClient client = builder.build();
+                     CloseableHttpResponse response = metrics.execute(endpoint, get, () -> client.execute(get));
+                     InputStream content = response.getEntity().getContent()) {
+                    assertThat(IOUtils.toByteArray(content), is(body));
+                }
+            }
+        } finally {
+            server.stop(0);
+        }
+
+        assertThat(acceptEncodings.get(0), containsString("gzip"));
+        assertThat(acceptEncodings.get(1), is("null"));
+        BitbucketApiMetrics.Timer timer = metrics.timer("http://localhost:" + server.getAddress().getPort(),
+                "getBranches", "200");
+        assertThat(timer.getCount(), is(2L));
+        assertThat(timer.getCompressedCount(), is(1L));
+        assertThat(timer.getBytes(), is(2L * body.length));
+        assertThat(timer.getWireBytes(), is((long) gzipped.size() + body.length));
+    }
+
+    @Test
+    public void recordsFailures() {
+        BitbucketApiMetrics metrics = new BitbucketApiMetrics(false);
+        HttpHead head = new HttpHead("http://localhost:7990/rest/api/1.0/projects/AMUNIZ/repos/test-repos/browse/x");
+        try {
+            metrics.execute("http://localhost:7990", head, () -> {
+                throw new SocketTimeoutException();
+            });
+            fail("the failure must be propagated");
+        } catch (IOException e) {
+            // expected
+        }
+        assertThat(metrics.timer("http://localhost:7990", "browse", BitbucketApiMetrics.STATUS_ERROR).getCount(), is(1L));
+        assertThat(metrics.getErrorCount(), is(1L));
+    }
+
+    @Test
+    public void listenerReceivesTheEventsOfItsScope() throws Exception {
+        BitbucketApiMetrics metrics = new BitbucketApiMetrics(false);
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        HttpGet get = new HttpGet("https://api.bitbucket.org/2.0/teams/myteam");
+        List<String> events = new ArrayList<>();
+        BitbucketApiMetrics.Listener listener = new BitbucketApiMetrics.Listener() {
+            @Override
+            public void onRequest(String operation, String status, long nanos) {
+                events.add(operation + " " + status);
+            }
+
+            @Override
+            public void onBytes(String operation, long bytes) {
+                events.add(operation + " " + bytes + " bytes");
+            }
+
+            @Override
+            public void onRateLimitWait(long nanos) {
+                events.add("wait");
+            }
+
+            @Override
+            public void onCacheHit() {
+                events.add("hit");
+            }
+        };
+        try (BitbucketApiMetrics.Scope scope = BitbucketApiMetrics.listen(listener)) {
+            try (CloseableHttpResponse response = metrics.execute(CLOUD, get, () -> response(200, body))) {
+                EntityUtils.consume(response.getEntity());
+            }
+            metrics.recordRateLimitWait(1);
+            metrics.recordCacheHit();
+        }
+        metrics.execute(CLOUD, get, () -> response(404, body));
+
+        assertThat(events, contains("getTeam 200", "getTeam 2 bytes", "wait", "hit"));
+        assertThat(BitbucketApiMetrics.listener(), nullValue());
+        assertThat(metrics.getCacheHitCount(), is(1L));
+    }
+
+    @Test
+    public void percentilesUseBucketBounds() {
+        BitbucketApiMetrics.Timer timer = new BitbucketApiMetrics(false).timer(CLOUD, "getTeam", "200");
+        for (int i = 0; i < 90; i++) {
+            timer.update(TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        for (int i = 0; i < 10; i++) {
+            timer.update(TimeUnit.MILLISECONDS.toNanos(700));
+        }
+        assertThat(timer.get50thPercentileMillis(), is(5L));
+        assertThat(timer.get95thPercentileMillis(), is(700L));
+        assertThat(timer.getMaxMillis(), is(700L));
+        assertThat(timer.getBucketCounts()[0], is(90L));
+    }
+
+    private static String operation(String method, String path, String query) {
+        return BitbucketApiMetrics.operationOf(method, path, query);
+    }
+
+    private static CloseableHttpResponse response(int status, byte[] body) {
+        Response response = new Response(status);
+        response.setEntity(new InputStreamEntity(new ByteArrayInputStream(body), body.length));
+        return response;
+    }
+
+    private static class Response extends BasicHttpResponse implements CloseableHttpResponse {
+        Response(int status) {
+            super(HttpVersion.HTTP_1_1, status, null);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.branch.BitbucketServerBranch;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class BitbucketCompactStringsTest {
+
+    private static final String HASH = "e851558f77c098d21af6bb8cc54a423f7cf12147";
+
+    @Test
+    public void fullHashRoundTrip() {
+        byte[] packed = BitbucketCompactStrings.packHash(HASH);
+        assertThat(packed, notNullValue());
+        assertThat(packed.length, is(20));
+        assertThat(BitbucketCompactStrings.unpackHash(packed), is(HASH));
+    }
+
+    @Test
+    public void otherValuesAreNotPacked() {
+        assertThat(BitbucketCompactStrings.packHash(null), nullValue());
+        assertThat(BitbucketCompactStrings.packHash("e851558f77c0"), nullValue());
+        assertThat(BitbucketCompactStrings.packHash(HASH.toUpperCase()), nullValue());
+        assertThat(BitbucketCompactStrings.packHash(HASH.replace('e', 'x')), nullValue());
+        // fullwidth digits are digits to Character.digit but would not unpack to the same string
+        assertThat(BitbucketCompactStrings.packHash(HASH.replace('1', '\uff11')), nullValue());
+    }
+
+    @Test
+    public void internSharesEqualStrings() {
+        String a = new String("Antonio Muniz <amuniz@example.com>");
+        String b = new String("Antonio Muniz <amuniz@example.com>");
+        assertThat(BitbucketCompactStrings.intern(b), sameInstance(BitbucketCompactStrings.intern(a)));
+        assertThat(BitbucketCompactStrings.intern(null), nullValue());
+    }
+
+    @Test
+    public void branchesKeepTheirHash() {
+        assertThat(new BitbucketServerBranch("master", HASH).getRawNode(), is(HASH));
+        assertThat(new BitbucketServerBranch("master", "e851558f77c0").getRawNode(), is("e851558f77c0"));
+        assertThat(new BitbucketServerBranch("master", null).getRawNode(), nullValue());
+
+        BitbucketCloudBranch branch = new BitbucketCloudBranch("master", HASH.toUpperCase(), 0);
+        assertThat(branch.getRawNode(), is(HASH.toUpperCase()));
+        branch.setRawNode(HASH);
+        assertThat(branch.getRawNode(), is(HASH));
+    }
+}
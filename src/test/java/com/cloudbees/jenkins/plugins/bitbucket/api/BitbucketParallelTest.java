@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BitbucketParallelTest {
+
+    @Test
+    public void resultsKeepTheOrderOfTheInputs() throws Exception {
+        List<Integer> inputs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            inputs.add(i);
+        }
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<String> results = BitbucketParallel.map(inputs, 3, i -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                // later inputs complete first
+                Thread.sleep(20 - i);
+            } finally {
+                running.decrementAndGet();
+            }
+            return "page-" + i;
+        });
+        assertThat(results.size(), is(20));
+        assertThat(results.get(0), is("page-0"));
+        assertThat(results.get(19), is("page-19"));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(3));
+    }
+
+    @Test
+    public void failureIsRethrown() throws Exception {
+        try {
+            BitbucketParallel.map(Arrays.asList(1, 2, 3, 4), 2, i -> {
+                if (i == 3) {
+                    throw new IOException("page " + i);
+                }
+                return i;
+            });
+            fail("expected the failure of the third input");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("page 3"));
+        }
+    }
+
+    @Test
+    public void callsAreAccountedToTheCallingListener() throws Exception {
+        List<String> operations = new ArrayList<>();
+        BitbucketApiMetrics.Listener listener = new BitbucketApiMetrics.Listener() {
+            @Override
+            public void onRequest(@NonNull String operation, @NonNull String status, long nanos) {
+                synchronized (operations) {
+                    operations.add(operation);
+                }
+            }
+
+            @Override
+            public void onBytes(@NonNull String operation, long bytes) {
+            }
+
+            @Override
+            public void onRateLimitWait(long nanos) {
+            }
+
+            @Override
+            public void onCacheHit() {
+            }
+        };
+        try (BitbucketApiMetrics.Scope scope = BitbucketApiMetrics.listen(listener)) {
+            BitbucketParallel.map(Arrays.asList("a", "b"), 2, name -> {
+                BitbucketApiMetrics.listener().onRequest(name, "200", 0L);
+                return name;
+            });
+        }
+        operations.sort(null);
+        assertThat(operations, contains("a", "b"));
+    }
+}
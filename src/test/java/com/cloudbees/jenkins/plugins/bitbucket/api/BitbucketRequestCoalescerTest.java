@@ -0,0 +1,178 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class BitbucketRequestCoalescerTest {
+
+    private static final String KEY = "anonymous https://api.bitbucket.org/2.0/repositories/amuniz/test-repos";
+
+    @Test
+    public void concurrentIdenticalRequestsShareOneResponse() throws Exception {
+        BitbucketRequestCoalescer coalescer = new BitbucketRequestCoalescer(true);
+        AtomicInteger requests = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        BitbucketRequestCoalescer.Request request = () -> {
+            requests.incrementAndGet();
+            release.await();
+            return body("{\"slug\":\"test-repos\"}");
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Thread> threads = new ArrayList<>();
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> {
+                    synchronized (threads) {
+                        threads.add(Thread.currentThread());
+                    }
+                    return read(coalescer.join(KEY, request));
+                }));
+            }
+            // one thread performs the request, the others wait for it
+            awaitBlocked(threads, 4);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS), is("{\"slug\":\"test-repos\"}"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(requests.get(), is(1));
+
+        // nothing is kept once the request completed
+        read(coalescer.join(KEY, request));
+        assertThat(requests.get(), is(2));
+    }
+
+    @Test
+    public void responseNobodyJoinedIsStreamed() throws Exception {
+        BitbucketRequestCoalescer coalescer = new BitbucketRequestCoalescer(true);
+        InputStream content = body("{\"slug\":\"test-repos\"}");
+        try (InputStream result = coalescer.join(KEY, () -> content)) {
+            assertThat(result, sameInstance(content));
+        }
+    }
+
+    @Test
+    public void failuresAreShared() throws Exception {
+        BitbucketRequestCoalescer coalescer = new BitbucketRequestCoalescer(true);
+        CountDownLatch release = new CountDownLatch(1);
+        BitbucketRequestCoalescer.Request request = () -> {
+            release.await();
+            throw new FileNotFoundException("URL: /2.0/repositories/amuniz/test-repos");
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Thread> threads = new ArrayList<>();
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(executor.submit(() -> {
+                    synchronized (threads) {
+                        threads.add(Thread.currentThread());
+                    }
+                    return read(coalescer.join(KEY, request));
+                }));
+            }
+            awaitBlocked(threads, 2);
+            release.countDown();
+            for (Future<String> result : results) {
+                try {
+                    result.get(10, TimeUnit.SECONDS);
+                    fail("the failure must be propagated");
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause(), instanceOf(FileNotFoundException.class));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void disabledCoalescerPerformsEveryRequest() throws Exception {
+        BitbucketRequestCoalescer coalescer = new BitbucketRequestCoalescer(false);
+        AtomicInteger requests = new AtomicInteger();
+        BitbucketRequestCoalescer.Request request = () -> {
+            requests.incrementAndGet();
+            return body("{}");
+        };
+        read(coalescer.join(KEY, request));
+        read(coalescer.join(KEY, request));
+        assertThat(requests.get(), is(2));
+    }
+
+    private static void awaitBlocked(List<Thread> threads, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            int blocked = 0;
+            synchronized (threads) {
+                for (Thread thread : threads) {
+                    if (thread.getState() == Thread.State.WAITING) {
+                        blocked++;
+                    }
+                }
+            }
+            if (blocked == count) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        fail("the threads did not block");
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            return IOUtils.toString(body, StandardCharsets.UTF_8);
+        }
+    }
+}
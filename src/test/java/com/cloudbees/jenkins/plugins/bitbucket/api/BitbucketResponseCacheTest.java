@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.api;
+
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BitbucketResponseCacheTest {
+
+    private static final String URL = "https://api.bitbucket.org/2.0/repositories/amuniz/test-repos/refs/branches";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void sendsValidatorsOfTheCachedResponse() throws Exception {
+        BitbucketResponseCache cache = new BitbucketResponseCache(1024, 1024, null, 0);
+        String key = BitbucketResponseCache.key(null, URL);
+
+        HttpGet first = new HttpGet(URL);
+        assertThat(cache.revalidate(key, first), nullValue());
+        assertThat(read(cache.store(key, response("\"v1\"", "Wed, 21 Oct 2015 07:28:00 GMT", "{}"), body("{}"))),
+                is("{}"));
+
+        HttpGet second = new HttpGet(URL);
+        BitbucketResponseCache.Entry entry = cache.revalidate(key, second);
+        assertThat(entry, notNullValue());
+        assertThat(second.getFirstHeader("If-None-Match").getValue(), is("\"v1\""));
+        assertThat(second.getFirstHeader("If-Modified-Since").getValue(), is("Wed, 21 Oct 2015 07:28:00 GMT"));
+        assertThat(read(cache.notModified(entry)), is("{}"));
+        assertThat(cache.getNotModifiedCount(), is(1L));
+    }
+
+    @Test
+    public void keysIncludeTheAuthenticator() {
+        assertThat(BitbucketResponseCache.key(null, URL).equals(BitbucketResponseCache.key(new Authenticator("a"), URL)),
+                is(false));
+        assertThat(BitbucketResponseCache.key(new Authenticator("a"), URL)
+                .equals(BitbucketResponseCache.key(new Authenticator("b"), URL)), is(false));
+    }
+
+    @Test
+    public void responsesWithoutValidatorsAreNotCached() throws Exception {
+        BitbucketResponseCache cache = new BitbucketResponseCache(1024, 1024, null, 0);
+        String key = BitbucketResponseCache.key(null, URL);
+        read(cache.store(key, response(null, null, "{}"), body("{}")));
+        assertThat(cache.revalidate(key, new HttpGet(URL)), nullValue());
+        assertThat(cache.size(), is(0L));
+    }
+
+    @Test
+    public void partiallyReadBodiesAreCompletedOnClose() throws Exception {
+        BitbucketResponseCache cache = new BitbucketResponseCache(1024, 1024, null, 0);
+        String key = BitbucketResponseCache.key(null, URL);
+        try (InputStream in = cache.store(key, response("\"v1\"", null, "{\"a\":1}"), body("{\"a\":1}"))) {
+            assertThat(in.read(), is((int) '{'));
+        }
+        assertThat(read(cache.notModified(cache.revalidate(key, new HttpGet(URL)))), is("{\"a\":1}"));
+    }
+
+    @Test
+    public void largeBodiesAreNotCached() throws Exception {
+        BitbucketResponseCache cache = new BitbucketResponseCache(1024, 8, null, 0);
+        String key = BitbucketResponseCache.key(null, URL);
+        String json = "{\"values\":[]}";
+        // no content length, the size is only known once read
+        assertThat(read(cache.store(key, response("\"v1\"", null, null), body(json))), is(json));
+        assertThat(cache.revalidate(key, new HttpGet(URL)), nullValue());
+    }
+
+    @Test
+    public void evictedResponsesAreSpilledToDisk() throws Exception {
+        BitbucketResponseCache cache = new BitbucketResponseCache(300, 300, tmp.newFolder(), 1024 * 1024);
+        String json = "{\"values\":[\"" + new String(new char[100]).replace('\0', 'x') + "\"]}";
+        for (int i = 0; i < 5; i++) {
+            String key = BitbucketResponseCache.key(null, URL + "?page=" + i);
+            read(cache.store(key, response("\"v" + i + "\"", null, json), body(json)));
+        }
+        assertThat(cache.size() <= 300, is(true));
+
+        HttpGet get = new HttpGet(URL + "?page=0");
+        BitbucketResponseCache.Entry entry = cache.revalidate(BitbucketResponseCache.key(null, URL + "?page=0"), get);
+        assertThat(entry, notNullValue());
+        assertThat(get.getFirstHeader("If-None-Match").getValue(), is("\"v0\""));
+        assertThat(read(cache.notModified(entry)), is(json));
+    }
+
+    private static HttpResponse response(String etag, String lastModified, String content) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        if (etag != null) {
+            response.setHeader("ETag", etag);
+        }
+        if (lastModified != null) {
+            response.setHeader("Last-Modified", lastModified);
+        }
+        if (content != null) {
+            response.setEntity(new ByteArrayEntity(content.getBytes(StandardCharsets.UTF_8)));
+        }
+        return response;
+    }
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            return IOUtils.toString(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static class Authenticator extends BitbucketAuthenticator {
+        Authenticator(String id) {
+            super(credentials(id));
+        }
+
+        private static StandardCredentials credentials(String id) {
+            StandardCredentials credentials = mock(StandardCredentials.class);
+            when(credentials.getId()).thenReturn(id);
+            return credentials;
+        }
+    }
+}
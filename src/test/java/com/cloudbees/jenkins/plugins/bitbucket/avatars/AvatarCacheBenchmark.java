@@ -0,0 +1,88 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.avatars;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Random;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares scaling and encoding an avatar on every request with serving the pre-encoded bytes.
+ */
+@State(Scope.Benchmark)
+public class AvatarCacheBenchmark {
+
+    private BufferedImage image;
+
+    private AvatarCache.CacheEntry entry;
+
+    @Setup
+    public void setup() throws Exception {
+        Random random = new Random(42L);
+        image = new BufferedImage(128, 128, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        entry = new AvatarCache(16, Long.MAX_VALUE, null).getCacheEntry("benchmark", new AvatarCacheSource() {
+            @Override
+            public AvatarImage fetch() {
+                return new AvatarImage(image, 0L);
+            }
+
+            @Override
+            public String hashKey() {
+                return "benchmark";
+            }
+
+            @Override
+            public boolean canFetch() {
+                return true;
+            }
+        });
+        while (entry.pending()) {
+            Thread.sleep(10L);
+        }
+    }
+
+    @Benchmark
+    public byte[] scaleAndEncode() throws IOException {
+        BufferedImage scaled = AvatarCache.scaleImage(image, 48);
+        try {
+            return AvatarCache.encodePng(scaled);
+        } finally {
+            scaled.flush();
+        }
+    }
+
+    @Benchmark
+    public byte[] preEncoded() throws IOException {
+        return entry.encoded(48);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.avatars;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class AvatarCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void ensure_hits_and_misses_are_counted() throws Exception {
+        AvatarCache cache = new AvatarCache(10, Long.MAX_VALUE, null);
+
+        assertThat(cache.getCacheEntry("a", null), nullValue());
+        assertThat(cache.getCacheEntry("a", new ImageSource("a")), notNullValue());
+        assertThat(cache.getCacheEntry("a", null), notNullValue());
+
+        AvatarCache.Stats stats = cache.stats();
+        assertThat(stats.getSize(), is(1));
+        assertThat(stats.getHitCount(), is(1L));
+        assertThat(stats.getMissCount(), is(2L));
+    }
+
+    @Test
+    public void ensure_concurrent_misses_are_counted_once() throws Exception {
+        AvatarCache cache = new AvatarCache(10, Long.MAX_VALUE, null);
+        List<Callable<AvatarCache.CacheEntry>> lookups = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            lookups.add(() -> cache.getCacheEntry("a", new ImageSource("a")));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            executor.invokeAll(lookups);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(cache.stats().getSize(), is(1));
+        assertThat(cache.stats().getMissCount(), is(1L));
+    }
+
+    @Test
+    public void ensure_least_recently_used_entries_are_evicted() throws Exception {
+        AvatarCache cache = new AvatarCache(2, Long.MAX_VALUE, null);
+
+        cache.getCacheEntry("a", new ImageSource("a"));
+        Thread.sleep(5);
+        cache.getCacheEntry("b", new ImageSource("b"));
+        Thread.sleep(5);
+        cache.getCacheEntry("a", null);
+        Thread.sleep(5);
+        cache.getCacheEntry("c", new ImageSource("c"));
+        cache.evict();
+
+        assertThat(cache.getCacheEntry("b", null), nullValue());
+        assertThat(cache.getCacheEntry("a", null), notNullValue());
+        assertThat(cache.getCacheEntry("c", null), notNullValue());
+        assertThat(cache.stats().getSize(), is(2));
+        assertThat(cache.stats().getEvictionCount(), is(1L));
+    }
+
+    @Test
+    public void ensure_encoded_images_are_reused_per_size() throws Exception {
+        AvatarCache cache = new AvatarCache(10, Long.MAX_VALUE, null);
+        AvatarCache.CacheEntry entry = cache.getCacheEntry("a", new ImageSource("a"));
+        while (entry.pending()) {
+            Thread.sleep(10);
+        }
+
+        byte[] bytes = entry.encoded(48);
+        assertThat(bytes, notNullValue());
+        assertThat(entry.encoded(48), sameInstance(bytes));
+        assertThat(entry.encoded(32), not(sameInstance(bytes)));
+    }
+
+    @Test
+    public void ensure_avatars_are_read_back_from_disk() throws Exception {
+        String key = "0123456789abcdef0123456789abcdef";
+        AvatarDiskCache diskCache = new AvatarDiskCache(tmp.getRoot(), Long.MAX_VALUE);
+        AvatarCache.CacheEntry entry = new AvatarCache(10, Long.MAX_VALUE, diskCache)
+                .getCacheEntry(key, new ImageSource("a"));
+        while (entry.pending()) {
+            Thread.sleep(10);
+        }
+
+        // a new cache, as after a restart, serves the stored image without waiting for a fetch
+        entry = new AvatarCache(10, Long.MAX_VALUE, diskCache).getCacheEntry(key, new ImageSource("a"));
+        assertThat(entry.encoded(16), notNullValue());
+    }
+
+    private static class ImageSource implements AvatarCacheSource {
+        private final String key;
+
+        private ImageSource(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public AvatarImage fetch() {
+            return new AvatarImage(new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB), 0L);
+        }
+
+        @Override
+        public String hashKey() {
+            return key;
+        }
+
+        @Override
+        public boolean canFetch() {
+            return true;
+        }
+    }
+}
@@ -25,13 +25,21 @@ package com.cloudbees.jenkins.plugins.bitbucket.client;
 
 import com.cloudbees.jenkins.plugins.bitbucket.JsonParser;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketBranch;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketChange;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketHref;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketWebHook;
 import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketIntegrationClientFactory.IRequestAudit;
+import com.cloudbees.jenkins.plugins.bitbucket.client.branch.BitbucketCloudRef;
+import com.cloudbees.jenkins.plugins.bitbucket.client.pullrequest.BitbucketPullRequestValue;
 import com.cloudbees.jenkins.plugins.bitbucket.client.repository.BitbucketCloudRepository;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketCloudEndpoint;
+import com.cloudbees.jenkins.plugins.bitbucket.simulator.BitbucketSimulator;
+import com.cloudbees.jenkins.plugins.bitbucket.simulator.SimulatedCloudApiClient;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import org.apache.commons.io.IOUtils;
 import org.hamcrest.CoreMatchers;
@@ -60,6 +68,104 @@ public class BitbucketCloudApiClientTest {
         assertThat(repository.getUpdatedOn().getTime(), CoreMatchers.is(date.getTime()));
     }
 
+    @Test
+    public void get_changes_parse_diffstat() throws Exception {
+        BitbucketApi client = BitbucketIntegrationClientFactory.getApiMockClient(BitbucketCloudEndpoint.SERVER_URL);
+        List<BitbucketChange> changes = client.getChanges("046d9a3c1532", "bf4f4ce8a3a8");
+
+        assertThat(changes.size(), CoreMatchers.is(4));
+        assertThat(changes.get(0).getType(), CoreMatchers.is(BitbucketChange.Type.MODIFIED));
+        assertThat(changes.get(0).getPath(), CoreMatchers.is("Jenkinsfile"));
+        assertThat(changes.get(1).getType(), CoreMatchers.is(BitbucketChange.Type.ADDED));
+        assertThat(changes.get(1).getPath(), CoreMatchers.is("src/main.c"));
+        assertThat(changes.get(2).getType(), CoreMatchers.is(BitbucketChange.Type.DELETED));
+        assertThat(changes.get(2).getPath(), CoreMatchers.is("README"));
+        assertThat(changes.get(3).getType(), CoreMatchers.is(BitbucketChange.Type.RENAMED));
+        assertThat(changes.get(3).getPath(), CoreMatchers.is("docs/new.md"));
+        assertThat(changes.get(3).getSrcPath(), CoreMatchers.is("docs/old.md"));
+    }
+
+    @Test
+    public void pull_requests_of_all_pages_are_listed_in_order() throws Exception {
+        try (BitbucketSimulator simulator = new BitbucketSimulator("amuniz").withPullRequests(120).start()) {
+            BitbucketApi client = new SimulatedCloudApiClient(simulator, "amuniz", "repo-0000");
+            List<BitbucketPullRequestValue> pullRequests = client.getPullRequests();
+
+            assertThat(pullRequests.size(), CoreMatchers.is(120));
+            for (int i = 0; i < pullRequests.size(); i++) {
+                assertThat(pullRequests.get(i).getId(), CoreMatchers.is(String.valueOf(i + 1)));
+            }
+        }
+    }
+
+    @Test
+    public void branches_are_listed_with_the_fields_read_only() throws Exception {
+        BitbucketApi client = BitbucketIntegrationClientFactory.getApiMockClient(BitbucketCloudEndpoint.SERVER_URL);
+        IRequestAudit audit = ((IRequestAudit) client).getAudit();
+        List<? extends BitbucketBranch> branches = client.getBranches();
+
+        assertThat(branches.size(), CoreMatchers.is(4));
+        assertNotNull(branches.get(0).getMessage());
+        verify(audit).request(Mockito.eq("https://api.bitbucket.org/2.0/repositories/amuniz/test-repos/refs/branches"
+                + "?fields=next%2Cpage%2Cpagelen%2Csize%2Cvalues.name%2Cvalues.target.hash%2Cvalues.target.date"
+                + "%2Cvalues.target.author.raw%2Cvalues.target.message&pagelen=100"));
+    }
+
+    @Test
+    public void listings_trimmed_to_their_fields_hold_what_is_read() throws Exception {
+        // the mock client trims its payloads to the fields asked for, like Bitbucket Cloud does
+        BitbucketApi client = BitbucketIntegrationClientFactory.getApiMockClient(BitbucketCloudEndpoint.SERVER_URL);
+
+        List<? extends BitbucketBranch> branches = client.getBranches();
+        BitbucketBranch branch = branches.get(0);
+        assertThat(branch.getName(), CoreMatchers.is("feature/BB-1"));
+        assertThat(branch.getRawNode(), CoreMatchers.is("fb522a6f08c7c7df337312e4e65ec1b57710672e"));
+        assertNotNull(branch.getMessage());
+        assertNotNull(branch.getAuthor());
+        assertTrue(branch.getDateMillis() > 0);
+
+        List<BitbucketPullRequestValue> pullRequests = client.getPullRequests();
+        BitbucketPullRequestValue pullRequest = pullRequests.get(0);
+        assertThat(pullRequest.getId(), CoreMatchers.is("2"));
+        assertThat(pullRequest.getTitle(), CoreMatchers.is("Add one message more"));
+        assertThat(pullRequest.getLink(), CoreMatchers.is("https://bitbucket.org/amuniz/test-repos/pull-requests/3"));
+        assertThat(pullRequest.getAuthorLogin(), CoreMatchers.is("amuniz"));
+        assertThat(pullRequest.getAuthorIdentifier(), CoreMatchers.is("557058:ca1cd232-2017-4216-94be-99637899e18d"));
+        assertThat(pullRequest.getSource().getBranch().getName(), CoreMatchers.is("feature/BB-2"));
+        assertThat(pullRequest.getSource().getRepository().getFullName(), CoreMatchers.is("amuniz/test-repos-fork"));
+        assertThat(pullRequest.getDestination().getBranch().getName(), CoreMatchers.is("master"));
+        assertThat(pullRequest.getDestination().getRepository().getFullName(), CoreMatchers.is("amuniz/test-repos"));
+
+        List<BitbucketCloudRepository> repositories = ((BitbucketCloudApiClient) client).getRepositories();
+        assertThat(repositories.size(), CoreMatchers.is(1));
+        BitbucketCloudRepository repository = repositories.get(0);
+        assertThat(repository.getFullName(), CoreMatchers.is("amuniz/test-repos"));
+        assertThat(repository.getScm(), CoreMatchers.is("git"));
+        assertThat(repository.getOwner().getDisplayName(), CoreMatchers.is("Nikolas Falco"));
+        assertThat(repository.isPrivate(), CoreMatchers.is(false));
+        assertNotNull(repository.getUpdatedOn());
+        assertThat(repository.getMainBranchName(), CoreMatchers.is("master"));
+        List<BitbucketHref> cloneLinks = repository.getLinks().get("clone");
+        assertThat(cloneLinks.size(), CoreMatchers.is(2));
+        assertThat(cloneLinks.get(1).getName(), CoreMatchers.is("ssh"));
+        assertThat(cloneLinks.get(1).getHref(), CoreMatchers.is("git@bitbucket.org:amuniz/test-repos.git"));
+        assertNotNull(repository.getLinks().get("html"));
+        assertNotNull(repository.getLinks().get("avatar"));
+    }
+
+    @Test
+    public void refs_hold_both_branches_and_tags() throws Exception {
+        try (BitbucketSimulator simulator = new BitbucketSimulator("amuniz").withBranches(3).withTags(2).start()) {
+            BitbucketCloudApiClient client = new SimulatedCloudApiClient(simulator, "amuniz", "repo-0000");
+            List<BitbucketCloudRef> refs = client.getRefs();
+
+            assertThat(refs.size(), CoreMatchers.is(5));
+            assertThat(refs.stream().filter(BitbucketCloudRef::isTag).count(), CoreMatchers.is(2L));
+            assertThat(refs.get(0).getBranch().getName(), CoreMatchers.is("master"));
+            assertNotNull(refs.get(0).getBranch().getRawNode());
+        }
+    }
+
     @Test
     public void verifyUpdateWebhookURL() throws Exception {
         BitbucketApi client = BitbucketIntegrationClientFactory.getApiMockClient(BitbucketCloudEndpoint.SERVER_URL);
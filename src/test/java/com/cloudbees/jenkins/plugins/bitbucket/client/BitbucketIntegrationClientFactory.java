@@ -23,12 +23,18 @@
  */
 package com.cloudbees.jenkins.plugins.bitbucket.client;
 
+import com.cloudbees.jenkins.plugins.bitbucket.JsonParser;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
 import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
 import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketCloudEndpoint;
 import com.cloudbees.jenkins.plugins.bitbucket.server.client.BitbucketServerAPIClient;
+import com.cloudbees.jenkins.plugins.bitbucket.simulator.BitbucketSimulator;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
@@ -83,18 +89,17 @@ public class BitbucketIntegrationClientFactory {
         }
 
         @Override
-        protected String getRequest(String path) throws IOException {
+        protected InputStream getRequestAsInputStream(String path) throws IOException {
             audit.request(path);
 
             String payloadPath = path.replace("/rest/api/", "").replace('/', '-').replaceAll("[=%&?]", "_");
             payloadPath = payloadRootPath + payloadPath + ".json";
 
-            try (InputStream json = this.getClass().getResourceAsStream(payloadPath)) {
-                if (json == null) {
-                    throw new IllegalStateException("Payload for the REST path " + path + " could be found");
-                }
-                return IOUtils.toString(json);
+            InputStream json = this.getClass().getResourceAsStream(payloadPath);
+            if (json == null) {
+                throw new IllegalStateException("Payload for the REST path " + path + " could be found");
             }
+            return json;
         }
 
         @Override
@@ -106,6 +111,7 @@ public class BitbucketIntegrationClientFactory {
     private static class BitbucketClouldIntegrationClient extends BitbucketCloudApiClient implements IRequestAudit {
         private static final String PAYLOAD_RESOURCE_ROOTPATH = "/com/cloudbees/jenkins/plugins/bitbucket/client/payload/";
         private static final String API_ENDPOINT = "https://api.bitbucket.org/";
+        private static final Pattern FIELDS = Pattern.compile("[?&]fields=([^&]*)");
 
         private final String payloadRootPath;
         private final IRequestAudit audit;
@@ -132,15 +138,24 @@ public class BitbucketIntegrationClientFactory {
             String path = httpMethod.getURI().toString();
             audit.request(path);
 
-            String payloadPath = path.replace(API_ENDPOINT, "").replace('/', '-').replaceAll("[=%&?]", "_");
+            // the payloads hold complete objects, they are trimmed to the fields asked for once loaded
+            String payloadPath = path.replace(API_ENDPOINT, "").replaceAll("([?&])fields=[^&]*&?", "$1")
+                    .replaceAll("[?&]$", "");
+            payloadPath = payloadPath.replace('/', '-').replaceAll("[=%&?]", "_");
             payloadPath = payloadRootPath + payloadPath + ".json";
 
             try (InputStream json = this.getClass().getResourceAsStream(payloadPath)) {
                 if (json == null) {
                     throw new IllegalStateException("Payload for the REST path " + path + " could be found");
                 }
+                String content = IOUtils.toString(json, StandardCharsets.UTF_8);
+                Matcher fields = FIELDS.matcher(path);
+                if (fields.find()) {
+                    content = JsonParser.toJson(BitbucketSimulator.project(JsonParser.toJava(content, Object.class),
+                            URLDecoder.decode(fields.group(1), "UTF-8")));
+                }
                 HttpEntity entity = mock(HttpEntity.class);
-                when(entity.getContent()).thenReturn(new StringInputStream(IOUtils.toString(json)));
+                when(entity.getContent()).thenReturn(new StringInputStream(content));
 
                 StatusLine statusLine = mock(StatusLine.class);
                 when(statusLine.getStatusCode()).thenReturn(200);
@@ -0,0 +1,73 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.client;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures {@link Cache#get(Object, java.util.concurrent.Callable)} when several scans hit the same cache.
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+public class CacheBenchmark {
+
+    private static final int KEYS = 200;
+
+    private Cache<String, String> cache;
+
+    private String[] keys;
+
+    @Setup
+    public void setup() throws ExecutionException {
+        cache = new Cache<>(5, TimeUnit.MINUTES, KEYS);
+        keys = new String[KEYS * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "owner/repository-" + i;
+        }
+        for (int i = 0; i < KEYS; i++) {
+            String key = keys[i];
+            cache.get(key, () -> key);
+        }
+    }
+
+    @Benchmark
+    public String hit() throws ExecutionException {
+        String key = keys[ThreadLocalRandom.current().nextInt(KEYS)];
+        return cache.get(key, () -> key);
+    }
+
+    @Benchmark
+    public String mixed() throws ExecutionException {
+        // half of the keys do not fit, so the cache keeps loading and evicting
+        String key = keys[ThreadLocalRandom.current().nextInt(keys.length)];
+        return cache.get(key, () -> key);
+    }
+}
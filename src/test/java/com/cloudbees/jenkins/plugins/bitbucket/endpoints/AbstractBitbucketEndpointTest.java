@@ -29,14 +29,25 @@ import com.cloudbees.plugins.credentials.SystemCredentialsProvider;
 import com.cloudbees.plugins.credentials.domains.Domain;
 import com.cloudbees.plugins.credentials.impl.UsernamePasswordCredentialsImpl;
 import com.damnhandy.uri.template.UriTemplate;
+import com.sun.net.httpserver.HttpServer;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
 import org.junit.Before;
 import org.junit.ClassRule;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
@@ -51,6 +62,7 @@ public class AbstractBitbucketEndpointTest {
     public void reset() {
         SystemCredentialsProvider.getInstance()
                 .setDomainCredentialsMap(Collections.<Domain, List<Credentials>>emptyMap());
+        BitbucketEndpointConfiguration.get().setEndpoints(null);
     }
 
     @Test
@@ -99,6 +111,66 @@ public class AbstractBitbucketEndpointTest {
         assertThat(new Dummy(true, "dummy").credentials(), nullValue());
     }
 
+    @Test
+    public void given__compressionDisabled__when__requesting__then__noAcceptEncoding() throws Exception {
+        List<String> acceptEncodings = new ArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            acceptEncodings.add(String.valueOf(exchange.getRequestHeaders().getFirst("Accept-Encoding")));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            String serverUrl = "http://localhost:" + server.getAddress().getPort();
+            BitbucketServerEndpoint endpoint = new BitbucketServerEndpoint("Local", serverUrl, false, null);
+            BitbucketEndpointConfiguration.get().setEndpoints(Collections.singletonList(endpoint));
+            assertThat(AbstractBitbucketEndpoint.isCompressionEnabled(serverUrl), is(true));
+            request(serverUrl);
+
+            endpoint = new BitbucketServerEndpoint("Local", serverUrl, false, null);
+            endpoint.setDisableCompression(true);
+            BitbucketEndpointConfiguration.get().setEndpoints(Collections.singletonList(endpoint));
+            assertThat(AbstractBitbucketEndpoint.isCompressionEnabled(serverUrl), is(false));
+            request(serverUrl);
+        } finally {
+            server.stop(0);
+        }
+        assertThat(acceptEncodings.size(), is(2));
+        assertThat(acceptEncodings.get(0), containsString("gzip"));
+        assertThat(acceptEncodings.get(1), is("null"));
+    }
+
+    @Test
+    public void given__compressionDisabled__when__configRoundtrip__then__settingRetained() throws Exception {
+        BitbucketServerEndpoint disabled =
+                new BitbucketServerEndpoint("Example Inc", "https://bitbucket.example.com/", false, null);
+        disabled.setDisableCompression(true);
+        BitbucketEndpointConfiguration.get().setEndpoints(Arrays.asList(disabled,
+                new BitbucketServerEndpoint("Example Org", "http://example.org:8080/bitbucket/", false, null)));
+
+        j.configRoundtrip();
+
+        assertThat(BitbucketEndpointConfiguration.get().getEndpoints().get(0).isDisableCompression(), is(true));
+        assertThat(BitbucketEndpointConfiguration.get().getEndpoints().get(1).isDisableCompression(), is(false));
+        // and read back from disk
+        List<AbstractBitbucketEndpoint> loaded = new BitbucketEndpointConfiguration().getEndpoints();
+        assertThat(loaded.get(0).isDisableCompression(), is(true));
+        assertThat(loaded.get(1).isDisableCompression(), is(false));
+        assertThat(AbstractBitbucketEndpoint.isCompressionEnabled("https://bitbucket.example.com"), is(false));
+        assertThat(AbstractBitbucketEndpoint.isCompressionEnabled("http://example.org:8080/bitbucket"), is(true));
+    }
+
+    private static void request(String serverUrl) throws Exception {
+        HttpClientBuilder builder = HttpClientBuilder.create();
+        boolean compression = AbstractBitbucketEndpoint.isCompressionEnabled(serverUrl);
+        AbstractBitbucketEndpoint.configureCompression(builder, compression);
+        try (CloseableHttpClient client = builder.build();
+             CloseableHttpResponse response = client.execute(new HttpGet(serverUrl + "/rest/api/1.0/projects"))) {
+            EntityUtils.consume(response.getEntity());
+        }
+    }
+
     private static class Dummy extends AbstractBitbucketEndpoint {
 
         Dummy(boolean manageHooks, String credentialsId) {
@@ -458,6 +458,38 @@ public class BitbucketEndpointConfigurationTest {
         assertThat(instance.findEndpoint("http://invalid.port.test:65536/bitbucket/"), nullValue());
     }
 
+    @Test
+    public void given__instanceWithCloudAndServers__when__findingByType__then__onlyMatchingTypeFound() {
+        BitbucketEndpointConfiguration instance = new BitbucketEndpointConfiguration();
+        instance.setEndpoints(
+                Arrays.asList(
+                        new BitbucketCloudEndpoint(true, "first"),
+                        new BitbucketServerEndpoint("Example Inc", "https://bitbucket.example.com/", true, "second")
+                ));
+        assertThat(instance.findEndpoint("https://BITBUCKET.EXAMPLE.COM:443/", BitbucketServerEndpoint.class)
+                .map(AbstractBitbucketEndpoint::getCredentialsId).orElse(null), is("second"));
+        assertThat(instance.findEndpoint("https://bitbucket.example.com", BitbucketCloudEndpoint.class)
+                .isPresent(), is(false));
+        assertThat(instance.findEndpoint(null, BitbucketCloudEndpoint.class)
+                .map(AbstractBitbucketEndpoint::getCredentialsId).orElse(null), is("first"));
+    }
+
+    @Test
+    public void given__instanceWithServer__when__endpointsChange__then__lookupsFollow() {
+        BitbucketEndpointConfiguration instance = new BitbucketEndpointConfiguration();
+        instance.setEndpoints(Collections.<AbstractBitbucketEndpoint>singletonList(
+                new BitbucketServerEndpoint("Example Inc", "https://bitbucket.example.com/", true, "first")));
+        assertThat(instance.findEndpoint("https://bitbucket.example.com").getCredentialsId(), is("first"));
+
+        instance.updateEndpoint(
+                new BitbucketServerEndpoint("Example Inc", "https://bitbucket.example.com/", true, "second"));
+        assertThat(instance.findEndpoint("https://bitbucket.example.com").getCredentialsId(), is("second"));
+
+        instance.removeEndpoint("https://bitbucket.example.com");
+        assertThat(instance.findEndpoint("https://bitbucket.example.com"), nullValue());
+        assertThat(instance.findEndpoint(BitbucketCloudEndpoint.SERVER_URL), instanceOf(BitbucketCloudEndpoint.class));
+    }
+
     @Test
     public void given__instanceWithCloudAndServers__when__populatingDropBox__then__endpointsListed() {
         BitbucketEndpointConfiguration instance = new BitbucketEndpointConfiguration();
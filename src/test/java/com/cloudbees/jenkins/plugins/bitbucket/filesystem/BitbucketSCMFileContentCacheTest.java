@@ -0,0 +1,124 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.filesystem;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
+import com.cloudbees.plugins.credentials.common.StandardCredentials;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class BitbucketSCMFileContentCacheTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void ensure_content_is_loaded_once() throws Exception {
+        BitbucketSCMFileContentCache cache = new BitbucketSCMFileContentCache(1024, null, 0);
+        AtomicInteger loads = new AtomicInteger();
+        BitbucketSCMFileContentCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return "pipeline {}".getBytes(StandardCharsets.UTF_8);
+        };
+
+        assertThat(new String(cache.get("repo@hash:Jenkinsfile", loader), StandardCharsets.UTF_8), is("pipeline {}"));
+        assertThat(new String(cache.get("repo@hash:Jenkinsfile", loader), StandardCharsets.UTF_8), is("pipeline {}"));
+        assertThat(loads.get(), is(1));
+    }
+
+    @Test
+    public void ensure_size_is_bounded() throws Exception {
+        BitbucketSCMFileContentCache cache = new BitbucketSCMFileContentCache(10, null, 0);
+        AtomicInteger loads = new AtomicInteger();
+        BitbucketSCMFileContentCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return new byte[4];
+        };
+
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("c", loader);
+        assertThat(cache.size(), is(8L));
+        cache.get("c", loader);
+        cache.get("a", loader);
+        assertThat(loads.get(), is(4));
+    }
+
+    @Test
+    public void ensure_evicted_content_is_spilled_to_disk() throws Exception {
+        BitbucketSCMFileContentCache cache = new BitbucketSCMFileContentCache(4, tmp.getRoot(), 1024);
+        AtomicInteger loads = new AtomicInteger();
+        BitbucketSCMFileContentCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return new byte[4];
+        };
+
+        cache.get("a", loader);
+        cache.get("b", loader);
+        cache.get("a", loader);
+        assertThat(loads.get(), is(2));
+    }
+
+    @Test
+    public void ensure_content_is_not_shared_between_credentials() throws Exception {
+        BitbucketSCMFileContentCache cache = new BitbucketSCMFileContentCache(1024, null, 0);
+        AtomicInteger loads = new AtomicInteger();
+        BitbucketSCMFileContentCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return "pipeline {}".getBytes(StandardCharsets.UTF_8);
+        };
+        String hash = "e851558f77c098d21af6bb8cc54a423f7cf12147";
+
+        cache.get(BitbucketSCMFileSystem.contentKey(new Authenticator("a"), "https://bitbucket.org", "amuniz",
+                "test-repos", hash) + "Jenkinsfile", loader);
+        cache.get(BitbucketSCMFileSystem.contentKey(new Authenticator("b"), "https://bitbucket.org", "amuniz",
+                "test-repos", hash) + "Jenkinsfile", loader);
+        cache.get(BitbucketSCMFileSystem.contentKey(null, "https://bitbucket.org", "amuniz",
+                "test-repos", hash) + "Jenkinsfile", loader);
+        assertThat(loads.get(), is(3));
+        cache.get(BitbucketSCMFileSystem.contentKey(new Authenticator("a"), "https://bitbucket.org", "amuniz",
+                "test-repos", hash) + "Jenkinsfile", loader);
+        assertThat(loads.get(), is(3));
+    }
+
+    private static class Authenticator extends BitbucketAuthenticator {
+        Authenticator(String id) {
+            super(credentials(id));
+        }
+
+        private static StandardCredentials credentials(String id) {
+            StandardCredentials credentials = mock(StandardCredentials.class);
+            when(credentials.getId()).thenReturn(id);
+            return credentials;
+        }
+    }
+}
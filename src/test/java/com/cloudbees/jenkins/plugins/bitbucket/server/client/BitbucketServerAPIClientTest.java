@@ -1,14 +1,32 @@
 package com.cloudbees.jenkins.plugins.bitbucket.server.client;
 
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
+import com.cloudbees.jenkins.plugins.bitbucket.server.BitbucketServerWebhookImplementation;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.repository.BitbucketServerRepository;
 import com.damnhandy.uri.template.UriTemplate;
 import com.damnhandy.uri.template.impl.Operator;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.junit.Assert;
+import org.junit.ClassRule;
 import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
 
 import static com.cloudbees.jenkins.plugins.bitbucket.server.client.BitbucketServerAPIClient.API_BROWSE_PATH;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 
 public class BitbucketServerAPIClientTest {
 
+    @ClassRule
+    public static JenkinsRule j = new JenkinsRule();
+
     @Test
     public void repoBrowsePathFolder() {
         String expand = UriTemplate
@@ -32,4 +50,97 @@ public class BitbucketServerAPIClientTest {
         Assert.assertEquals("/rest/api/1.0/projects/test/repos/test/browse/Jenkinsfile", expand);
     }
 
+    @Test
+    public void pagesFetchedAheadPastTheLastPageAreDropped() throws Exception {
+        PagedClient client = new PagedClient(5, 2, -1);
+        client.setPageParallelism(4);
+        assertThat(names(client.getRepositories()), is(expected(5, -1)));
+        // the first page, then a single window
+        assertThat(client.requests.size(), is(5));
+    }
+
+    @Test
+    public void pagesFetchedAheadAtUnexpectedOffsetsAreDropped() throws Exception {
+        // the listing has no offset 6, the page at 6 reports 9 as the next page start instead of 8 and the page
+        // fetched ahead at 8 would repeat the entry at 8
+        PagedClient client = new PagedClient(12, 2, 6);
+        client.setPageParallelism(4);
+        assertThat(names(client.getRepositories()), is(expected(12, 6)));
+        assertThat(names(new PagedClient(12, 2, 6).getRepositories()), is(expected(12, 6)));
+    }
+
+    @Test
+    public void listingsLongerThanAWindowAreFetchedInFull() throws Exception {
+        PagedClient client = new PagedClient(20, 2, -1);
+        client.setPageParallelism(4);
+        assertThat(names(client.getRepositories()), is(expected(20, -1)));
+        // the first page, then three windows: the last page is at 18, in the third one
+        assertThat(client.requests.size(), is(13));
+    }
+
+    private static List<String> names(List<BitbucketServerRepository> repositories) {
+        List<String> names = new ArrayList<>();
+        for (BitbucketServerRepository repository : repositories) {
+            names.add(repository.getRepositoryName());
+        }
+        return names;
+    }
+
+    private static List<String> expected(int total, int skipped) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            if (i != skipped) {
+                names.add(String.format("repo-%03d", i));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Serves a listing of repositories in pages of a fixed size, whatever limit is asked for.
+     */
+    private static class PagedClient extends BitbucketServerAPIClient {
+        private static final Pattern START = Pattern.compile("[?&]start=(\\d+)");
+
+        private final int total;
+        private final int limit;
+        private final int skipped;
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+
+        /**
+         * @param total the number of offsets of the listing.
+         * @param limit the page size.
+         * @param skipped an offset the listing does not hold, or {@code -1}.
+         */
+        private PagedClient(int total, int limit, int skipped) {
+            super("https://bitbucket.example.com", "PROJ", null, (BitbucketAuthenticator) null, false,
+                    BitbucketServerWebhookImplementation.PLUGIN);
+            this.total = total;
+            this.limit = limit;
+            this.skipped = skipped;
+        }
+
+        @Override
+        protected InputStream getRequestAsInputStream(String path) {
+            requests.add(path);
+            Matcher matcher = START.matcher(path);
+            int start = matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+            StringBuilder values = new StringBuilder();
+            int offset = start;
+            int count = 0;
+            for (; offset < total && count < limit; offset++) {
+                if (offset == skipped) {
+                    continue;
+                }
+                values.append(count++ == 0 ? "" : ",").append(String.format(
+                        "{\"slug\":\"repo-%03d\",\"project\":{\"key\":\"PROJ\",\"name\":\"Project\"},"
+                                + "\"public\":false}", offset));
+            }
+            boolean last = offset >= total;
+            String json = "{\"size\":" + count + ",\"limit\":" + limit + ",\"start\":" + start
+                    + ",\"isLastPage\":" + last + (last ? "" : ",\"nextPageStart\":" + offset)
+                    + ",\"values\":[" + values + "]}";
+            return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+        }
+    }
 }
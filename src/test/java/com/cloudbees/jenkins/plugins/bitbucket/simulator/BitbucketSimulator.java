@@ -0,0 +1,945 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.simulator;
+
+import com.cloudbees.jenkins.plugins.bitbucket.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * An in-process HTTP stand-in for the Bitbucket Cloud and Bitbucket Server REST APIs that serves a synthetic
+ * workspace (Cloud) or project (Server) with a configurable number of repositories, branches, tags and pull
+ * requests.
+ * <p>
+ * Every repository has a {@code master} branch, {@code branches - 1} further branches, {@code tags} tags and
+ * {@code pullRequests} open pull requests targeting {@code master}. Commit hashes are derived from the ref name so
+ * that every scan sees the same data, and every ref contains a {@code Jenkinsfile} and nothing else.
+ * <p>
+ * The Cloud API is served under {@code /2.0} and the Server API under {@code /rest/api/1.0}. Cloud pagination links
+ * point at {@code https://api.bitbucket.org} like the real service does, so Cloud clients must redirect their
+ * requests to {@link #getServerUrl()} (see {@link SimulatedCloudApiClient}).
+ */
+public class BitbucketSimulator implements Closeable {
+
+    /**
+     * The base URL the Cloud payloads use for their links.
+     */
+    public static final String CLOUD_API_URL = "https://api.bitbucket.org";
+
+    private static final String CLOUD_PREFIX = "2.0";
+    private static final String SERVER_PREFIX = "rest/api/1.0";
+    private static final String MASTER = "master";
+    private static final String MARKER_FILE = "Jenkinsfile";
+    private static final long EPOCH = 1546300800000L; // 2019-01-01T00:00:00Z
+
+    private final String owner;
+    private int repositories = 1;
+    private int branches = 1;
+    private int tags = 0;
+    private int pullRequests = 0;
+    private long latencyMillis = 0;
+    private int rateLimitEvery = 0;
+    private boolean etags = false;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong responseBytes = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> routes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> abbreviations = new ConcurrentHashMap<>();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String serverUrl;
+
+    public BitbucketSimulator(String owner) {
+        this.owner = owner;
+    }
+
+    public BitbucketSimulator withRepositories(int repositories) {
+        this.repositories = repositories;
+        return this;
+    }
+
+    /**
+     * @param branches the number of branches per repository, including {@code master}.
+     */
+    public BitbucketSimulator withBranches(int branches) {
+        this.branches = Math.max(1, branches);
+        return this;
+    }
+
+    public BitbucketSimulator withTags(int tags) {
+        this.tags = tags;
+        return this;
+    }
+
+    public BitbucketSimulator withPullRequests(int pullRequests) {
+        this.pullRequests = pullRequests;
+        return this;
+    }
+
+    /**
+     * @param latencyMillis the delay added before answering each request.
+     */
+    public BitbucketSimulator withLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    /**
+     * Answers every {@code rateLimitEvery}-th request with HTTP 429. Note that only the Cloud client retries rate
+     * limited requests, the Server client reports them as errors.
+     *
+     * @param rateLimitEvery the period of the injected 429 responses, {@code 0} to disable them.
+     */
+    public BitbucketSimulator withRateLimitEvery(int rateLimitEvery) {
+        this.rateLimitEvery = rateLimitEvery;
+        return this;
+    }
+
+    /**
+     * Sends an {@code ETag} with every GET response and answers {@code 304} when the request matches it.
+     *
+     * @param etags whether to support conditional requests.
+     */
+    public BitbucketSimulator withETags(boolean etags) {
+        this.etags = etags;
+        return this;
+    }
+
+    public BitbucketSimulator start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(16);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        serverUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return the base URL the simulator listens on, e.g. {@code http://127.0.0.1:54321}.
+     */
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public List<String> getRepositoryNames() {
+        List<String> names = new ArrayList<>(repositories);
+        for (int i = 0; i < repositories; i++) {
+            names.add(repositoryName(i));
+        }
+        return names;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.get();
+    }
+
+    public long getNotModifiedCount() {
+        return notModified.get();
+    }
+
+    /**
+     * @return the number of response body bytes sent since the last {@link #reset()}.
+     */
+    public long getResponseBytes() {
+        return responseBytes.get();
+    }
+
+    /**
+     * @return the number of requests served per route since the last {@link #reset()}.
+     */
+    public Map<String, Long> getRouteCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : routes.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    public void reset() {
+        requests.set(0);
+        rateLimited.set(0);
+        notModified.set(0);
+        responseBytes.set(0);
+        routes.clear();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            long count = requests.incrementAndGet();
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            if (rateLimitEvery > 0 && count % rateLimitEvery == 0) {
+                rateLimited.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                send(exchange, 429, "rate-limited", "{\"type\":\"error\",\"error\":{\"message\":\"Rate limit exceeded\"}}");
+                return;
+            }
+            List<String> segments = segments(exchange.getRequestURI().getPath());
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            Response response;
+            if (startsWith(segments, CLOUD_PREFIX)) {
+                response = cloud(segments.subList(1, segments.size()), query);
+                if (response.body != null && query.containsKey("fields")) {
+                    response = new Response(response.status, response.route, project(response.body, query.get("fields")));
+                }
+            } else if (startsWith(segments, SERVER_PREFIX.split("/"))) {
+                response = server(segments.subList(3, segments.size()), query);
+            } else {
+                response = Response.NOT_FOUND;
+            }
+            String body = response.body == null ? null : JsonParser.toJson(response.body);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                body = null;
+            }
+            if (etags && body != null && response.status == 200 && "GET".equals(exchange.getRequestMethod())) {
+                String etag = '"' + DigestUtils.sha1Hex(body) + '"';
+                exchange.getResponseHeaders().add("ETag", etag);
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    send(exchange, 304, response.route, null);
+                    return;
+                }
+            }
+            send(exchange, response.status, response.route, body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            send(exchange, 503, "interrupted", null);
+        } catch (RuntimeException e) {
+            send(exchange, 500, "error", null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String route, String body) throws IOException {
+        routes.computeIfAbsent(route, k -> new AtomicLong()).incrementAndGet();
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        responseBytes.addAndGet(bytes.length);
+        exchange.getResponseHeaders().add("Content-Type", "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // Bitbucket Cloud
+
+    private Response cloud(List<String> path, Map<String, String> query) {
+        if (path.size() == 2 && "teams".equals(path.get(0)) && owner.equals(path.get(1))) {
+            return new Response("cloud:team", cloudTeam());
+        }
+        if (path.size() < 2 || !"repositories".equals(path.get(0)) || !owner.equals(path.get(1))) {
+            return Response.NOT_FOUND;
+        }
+        if (path.size() == 2) {
+            List<Object> values = new ArrayList<>();
+            for (String name : getRepositoryNames()) {
+                values.add(cloudRepository(name));
+            }
+            return new Response("cloud:repositories", cloudPage(values, query, "/2.0/repositories/" + owner));
+        }
+        String repo = path.get(2);
+        if (!isRepository(repo)) {
+            return Response.NOT_FOUND;
+        }
+        List<String> rest = path.subList(3, path.size());
+        String base = "/2.0/repositories/" + owner + "/" + repo;
+        if (rest.isEmpty()) {
+            return new Response("cloud:repository", cloudRepository(repo));
+        }
+        switch (rest.get(0)) {
+            case "refs":
+                if (rest.size() == 1) {
+                    List<Object> values = new ArrayList<>();
+                    for (String branch : branchNames()) {
+                        values.add(cloudBranch(repo, branch, "branch"));
+                    }
+                    for (String tag : tagNames()) {
+                        values.add(cloudBranch(repo, tag, "tag"));
+                    }
+                    return new Response("cloud:refs", cloudPage(values, query, base + "/refs"));
+                }
+                if (rest.size() == 2 && "branches".equals(rest.get(1))) {
+                    List<Object> values = new ArrayList<>();
+                    for (String branch : branchNames()) {
+                        values.add(cloudBranch(repo, branch, "branch"));
+                    }
+                    return new Response("cloud:branches", cloudPage(values, query, base + "/refs/branches"));
+                }
+                if (rest.size() == 2 && "tags".equals(rest.get(1))) {
+                    List<Object> values = new ArrayList<>();
+                    for (String tag : tagNames()) {
+                        values.add(cloudBranch(repo, tag, "tag"));
+                    }
+                    return new Response("cloud:tags", cloudPage(values, query, base + "/refs/tags"));
+                }
+                return Response.NOT_FOUND;
+            case "pullrequests":
+                if (rest.size() == 1) {
+                    List<Object> values = new ArrayList<>();
+                    for (int id = 1; id <= pullRequests; id++) {
+                        values.add(cloudPullRequest(repo, id));
+                    }
+                    return new Response("cloud:pullrequests", cloudPage(values, query, base + "/pullrequests"));
+                }
+                int id = pullRequestId(rest.get(1));
+                if (id < 0) {
+                    return Response.NOT_FOUND;
+                }
+                if (rest.size() == 2) {
+                    return new Response("cloud:pullrequest", cloudPullRequest(repo, id));
+                }
+                if (rest.size() == 3 && "commits".equals(rest.get(2))) {
+                    Map<String, Object> page = new LinkedHashMap<>();
+                    page.put("values", Collections.singletonList(
+                            cloudCommit(repo, hash(repo, pullRequestBranch(id)))));
+                    return new Response("cloud:pullrequest-commits", page);
+                }
+                return Response.NOT_FOUND;
+            case "commit":
+                if (rest.size() == 2) {
+                    String hash = fullHash(rest.get(1));
+                    return hash == null ? Response.NOT_FOUND : new Response("cloud:commit", cloudCommit(repo, hash));
+                }
+                return Response.NOT_FOUND;
+            case "src":
+                return rest.size() == 3 && MARKER_FILE.equals(rest.get(2))
+                        ? new Response("cloud:src", MARKER_FILE)
+                        : new Response(404, "cloud:src", null);
+            case "diffstat":
+                return new Response("cloud:diffstat", cloudPage(Collections.emptyList(), query, base + "/diffstat"));
+            default:
+                return Response.NOT_FOUND;
+        }
+    }
+
+    /**
+     * Keeps the given fields of a Cloud payload only, like the {@code fields} parameter of the real service does,
+     * e.g. {@code next,values.name}. Exclusions and additions ({@code -links}, {@code +rendered}) are not simulated.
+     *
+     * @param body the payload, as parsed into maps and lists.
+     * @param fields the value of the {@code fields} parameter.
+     * @return the projected payload.
+     */
+    public static Object project(Object body, String fields) {
+        Map<String, Object> tree = new LinkedHashMap<>();
+        for (String field : fields.split(",")) {
+            if (field.startsWith("-") || field.startsWith("+")) {
+                return body;
+            }
+            Map<String, Object> node = tree;
+            for (String name : field.split("\\.")) {
+                node = children(node, name);
+            }
+        }
+        return projectTree(body, tree);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> children(Map<String, Object> node, String name) {
+        return (Map<String, Object>) node.computeIfAbsent(name, k -> new LinkedHashMap<String, Object>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object projectTree(Object value, Map<String, Object> tree) {
+        if (tree.isEmpty()) {
+            return value;
+        }
+        if (value instanceof List) {
+            List<Object> result = new ArrayList<>();
+            for (Object item : (List<Object>) value) {
+                result.add(projectTree(item, tree));
+            }
+            return result;
+        }
+        if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : tree.entrySet()) {
+                if (map.containsKey(entry.getKey())) {
+                    result.put(entry.getKey(), projectTree(map.get(entry.getKey()), (Map<String, Object>) entry.getValue()));
+                }
+            }
+            return result;
+        }
+        return value;
+    }
+
+    private Map<String, Object> cloudPage(List<Object> values, Map<String, String> query, String path) {
+        int pagelen = intParam(query, "pagelen", 10);
+        int page = intParam(query, "page", 1);
+        int from = Math.min(values.size(), (page - 1) * pagelen);
+        int to = Math.min(values.size(), from + pagelen);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("pagelen", pagelen);
+        result.put("size", values.size());
+        result.put("page", page);
+        result.put("values", values.subList(from, to));
+        if (to < values.size()) {
+            result.put("next", CLOUD_API_URL + path + "?pagelen=" + pagelen + "&page=" + (page + 1));
+        }
+        return result;
+    }
+
+    private Map<String, Object> cloudTeam() {
+        Map<String, Object> team = new LinkedHashMap<>();
+        team.put("type", "team");
+        team.put("username", owner);
+        team.put("display_name", owner);
+        team.put("uuid", uuid(owner));
+        team.put("links", links(
+                "self", href(CLOUD_API_URL + "/2.0/teams/" + owner),
+                "html", href("https://bitbucket.org/" + owner),
+                "avatar", href("https://bitbucket.org/account/" + owner + "/avatar/")));
+        return team;
+    }
+
+    private Map<String, Object> cloudRepositoryRef(String repo) {
+        Map<String, Object> repository = new LinkedHashMap<>();
+        repository.put("type", "repository");
+        repository.put("name", repo);
+        repository.put("full_name", owner + "/" + repo);
+        repository.put("uuid", uuid(owner + "/" + repo));
+        return repository;
+    }
+
+    private Map<String, Object> cloudRepository(String repo) {
+        Map<String, Object> repository = cloudRepositoryRef(repo);
+        repository.put("slug", repo);
+        repository.put("scm", "git");
+        repository.put("is_private", true);
+        repository.put("fork_policy", "allow_forks");
+        repository.put("updated_on", cloudDate(EPOCH));
+        Map<String, Object> mainbranch = new LinkedHashMap<>();
+        mainbranch.put("type", "branch");
+        mainbranch.put("name", MASTER);
+        repository.put("mainbranch", mainbranch);
+        Map<String, Object> repoOwner = new LinkedHashMap<>();
+        repoOwner.put("type", "team");
+        repoOwner.put("username", owner);
+        repoOwner.put("display_name", owner);
+        repository.put("owner", repoOwner);
+        List<Object> clone = Arrays.asList(
+                namedHref("https://bitbucket.org/" + owner + "/" + repo + ".git", "https"),
+                namedHref("git@bitbucket.org:" + owner + "/" + repo + ".git", "ssh"));
+        repository.put("links", links(
+                "self", href(CLOUD_API_URL + "/2.0/repositories/" + owner + "/" + repo),
+                "html", href("https://bitbucket.org/" + owner + "/" + repo),
+                "clone", clone));
+        return repository;
+    }
+
+    private Map<String, Object> cloudBranch(String repo, String name, String type) {
+        Map<String, Object> branch = new LinkedHashMap<>();
+        branch.put("type", type);
+        branch.put("name", name);
+        branch.put("target", cloudCommit(repo, hash(repo, name)));
+        return branch;
+    }
+
+    private Map<String, Object> cloudCommit(String repo, String hash) {
+        Map<String, Object> commit = new LinkedHashMap<>();
+        commit.put("type", "commit");
+        commit.put("hash", hash);
+        commit.put("date", cloudDate(commitTime(hash)));
+        commit.put("message", "Synthetic commit " + hash.substring(0, 12));
+        Map<String, Object> author = new LinkedHashMap<>();
+        author.put("raw", "Simulated User <simulated@example.com>");
+        commit.put("author", author);
+        commit.put("repository", cloudRepositoryRef(repo));
+        commit.put("parents", Collections.emptyList());
+        return commit;
+    }
+
+    private Map<String, Object> cloudPullRequest(String repo, int id) {
+        Map<String, Object> pull = new LinkedHashMap<>();
+        pull.put("type", "pullrequest");
+        pull.put("id", id);
+        pull.put("title", "Synthetic pull request " + id);
+        pull.put("state", "OPEN");
+        Map<String, Object> author = new LinkedHashMap<>();
+        author.put("type", "user");
+        author.put("username", "simulated");
+        author.put("nickname", "simulated");
+        author.put("display_name", "Simulated User");
+        author.put("account_id", "simulated");
+        pull.put("author", author);
+        pull.put("source", cloudEndpoint(repo, pullRequestBranch(id)));
+        pull.put("destination", cloudEndpoint(repo, MASTER));
+        pull.put("created_on", cloudDate(EPOCH));
+        pull.put("updated_on", cloudDate(EPOCH));
+        pull.put("links", links(
+                "self", href(CLOUD_API_URL + "/2.0/repositories/" + owner + "/" + repo + "/pullrequests/" + id),
+                "html", href("https://bitbucket.org/" + owner + "/" + repo + "/pull-requests/" + id)));
+        return pull;
+    }
+
+    private Map<String, Object> cloudEndpoint(String repo, String branch) {
+        String hash = hash(repo, branch);
+        // like the real service, pull requests only carry abbreviated hashes
+        String abbreviated = hash.substring(0, 12);
+        abbreviations.putIfAbsent(abbreviated, hash);
+        Map<String, Object> endpoint = new LinkedHashMap<>();
+        Map<String, Object> branchRef = new LinkedHashMap<>();
+        branchRef.put("name", branch);
+        endpoint.put("branch", branchRef);
+        Map<String, Object> commit = new LinkedHashMap<>();
+        commit.put("type", "commit");
+        commit.put("hash", abbreviated);
+        endpoint.put("commit", commit);
+        endpoint.put("repository", cloudRepositoryRef(repo));
+        return endpoint;
+    }
+
+    // Bitbucket Server
+
+    private Response server(List<String> path, Map<String, String> query) {
+        if (path.size() < 2 || !"projects".equals(path.get(0)) || !owner.equals(path.get(1))) {
+            return Response.NOT_FOUND;
+        }
+        if (path.size() == 2) {
+            return new Response("server:project", serverProject());
+        }
+        if (!"repos".equals(path.get(2))) {
+            return Response.NOT_FOUND;
+        }
+        if (path.size() == 3) {
+            List<Object> values = new ArrayList<>();
+            for (String name : getRepositoryNames()) {
+                values.add(serverRepository(name));
+            }
+            return new Response("server:repositories", serverPage(values, query));
+        }
+        String repo = path.get(3);
+        if (!isRepository(repo)) {
+            return Response.NOT_FOUND;
+        }
+        List<String> rest = path.subList(4, path.size());
+        if (rest.isEmpty()) {
+            return new Response("server:repository", serverRepository(repo));
+        }
+        switch (rest.get(0)) {
+            case "branches":
+                if (rest.size() == 2 && "default".equals(rest.get(1))) {
+                    return new Response("server:default-branch", serverRef(repo, MASTER, "BRANCH"));
+                }
+                List<Object> branchValues = new ArrayList<>();
+                for (String branch : branchNames()) {
+                    branchValues.add(serverRef(repo, branch, "BRANCH"));
+                }
+                return new Response("server:branches", serverPage(branchValues, query));
+            case "tags":
+                List<Object> tagValues = new ArrayList<>();
+                for (String tag : tagNames()) {
+                    tagValues.add(serverRef(repo, tag, "TAG"));
+                }
+                return new Response("server:tags", serverPage(tagValues, query));
+            case "pull-requests":
+                if (rest.size() == 1) {
+                    List<Object> values = new ArrayList<>();
+                    for (int id = 1; id <= pullRequests; id++) {
+                        values.add(serverPullRequest(repo, id));
+                    }
+                    return new Response("server:pull-requests", serverPage(values, query));
+                }
+                int id = pullRequestId(rest.get(1));
+                if (id < 0) {
+                    return Response.NOT_FOUND;
+                }
+                if (rest.size() == 2) {
+                    return new Response("server:pull-request", serverPullRequest(repo, id));
+                }
+                if (rest.size() == 3 && "merge".equals(rest.get(2))) {
+                    Map<String, Object> merge = new LinkedHashMap<>();
+                    merge.put("canMerge", true);
+                    merge.put("conflicted", false);
+                    merge.put("outcome", "CLEAN");
+                    merge.put("vetoes", Collections.emptyList());
+                    return new Response("server:pull-request-merge", merge);
+                }
+                if (rest.size() == 3 && "changes".equals(rest.get(2))) {
+                    return new Response("server:pull-request-changes", serverPage(Collections.emptyList(), query));
+                }
+                return Response.NOT_FOUND;
+            case "commits":
+                if (rest.size() == 2) {
+                    String hash = fullHash(rest.get(1));
+                    return hash == null ? Response.NOT_FOUND : new Response("server:commit", serverCommit(hash));
+                }
+                return Response.NOT_FOUND;
+            case "browse":
+                if (rest.size() == 2 && MARKER_FILE.equals(rest.get(1))) {
+                    Map<String, Object> line = new LinkedHashMap<>();
+                    line.put("text", "pipeline {}");
+                    Map<String, Object> lines = new LinkedHashMap<>();
+                    lines.put("lines", Collections.singletonList(line));
+                    lines.put("start", 0);
+                    lines.put("size", 1);
+                    lines.put("isLastPage", true);
+                    return new Response("server:browse", lines);
+                }
+                return new Response(404, "server:browse", null);
+            case "compare":
+                return new Response("server:compare", serverPage(Collections.emptyList(), query));
+            default:
+                return Response.NOT_FOUND;
+        }
+    }
+
+    private Map<String, Object> serverPage(List<Object> values, Map<String, String> query) {
+        int limit = intParam(query, "limit", 25);
+        int start = intParam(query, "start", 0);
+        int from = Math.min(values.size(), start);
+        int to = Math.min(values.size(), from + limit);
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("size", to - from);
+        page.put("limit", limit);
+        page.put("start", start);
+        page.put("isLastPage", to >= values.size());
+        if (to < values.size()) {
+            page.put("nextPageStart", to);
+        }
+        page.put("values", values.subList(from, to));
+        return page;
+    }
+
+    private Map<String, Object> serverProject() {
+        Map<String, Object> project = new LinkedHashMap<>();
+        project.put("key", owner);
+        project.put("id", 1);
+        project.put("name", owner);
+        project.put("public", false);
+        project.put("type", "NORMAL");
+        project.put("links", links("self", Collections.singletonList(href(serverUrl + "/projects/" + owner))));
+        return project;
+    }
+
+    private Map<String, Object> serverRepository(String repo) {
+        Map<String, Object> repository = new LinkedHashMap<>();
+        repository.put("slug", repo);
+        repository.put("id", repositoryIndex(repo) + 1);
+        repository.put("name", repo);
+        repository.put("scmId", "git");
+        repository.put("state", "AVAILABLE");
+        repository.put("forkable", true);
+        repository.put("public", false);
+        repository.put("project", serverProject());
+        List<Object> clone = Arrays.asList(
+                namedHref(serverUrl + "/scm/" + owner.toLowerCase(Locale.ENGLISH) + "/" + repo + ".git", "http"),
+                namedHref("ssh://git@" + server.getAddress().getHostString() + ":7999/"
+                        + owner.toLowerCase(Locale.ENGLISH) + "/" + repo + ".git", "ssh"));
+        repository.put("links", links(
+                "clone", clone,
+                "self", Collections.singletonList(href(serverUrl + "/projects/" + owner + "/repos/" + repo + "/browse"))));
+        return repository;
+    }
+
+    private Map<String, Object> serverRef(String repo, String name, String type) {
+        String hash = hash(repo, name);
+        Map<String, Object> ref = new LinkedHashMap<>();
+        ref.put("id", ("TAG".equals(type) ? "refs/tags/" : "refs/heads/") + name);
+        ref.put("displayId", name);
+        ref.put("type", type);
+        ref.put("latestCommit", hash);
+        ref.put("latestChangeset", hash);
+        if ("TAG".equals(type)) {
+            ref.put("hash", hash);
+        } else {
+            ref.put("isDefault", MASTER.equals(name));
+        }
+        return ref;
+    }
+
+    private Map<String, Object> serverPullRequest(String repo, int id) {
+        Map<String, Object> pull = new LinkedHashMap<>();
+        pull.put("id", id);
+        pull.put("version", 0);
+        pull.put("title", "Synthetic pull request " + id);
+        pull.put("state", "OPEN");
+        pull.put("open", true);
+        pull.put("closed", false);
+        pull.put("createdDate", EPOCH);
+        pull.put("updatedDate", EPOCH);
+        pull.put("fromRef", serverPullRequestRef(repo, pullRequestBranch(id)));
+        pull.put("toRef", serverPullRequestRef(repo, MASTER));
+        pull.put("locked", false);
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("name", "simulated");
+        user.put("emailAddress", "simulated@example.com");
+        user.put("displayName", "Simulated User");
+        user.put("slug", "simulated");
+        Map<String, Object> author = new LinkedHashMap<>();
+        author.put("user", user);
+        author.put("role", "AUTHOR");
+        pull.put("author", author);
+        pull.put("links", links("self", Collections.singletonList(
+                href(serverUrl + "/projects/" + owner + "/repos/" + repo + "/pull-requests/" + id))));
+        return pull;
+    }
+
+    private Map<String, Object> serverPullRequestRef(String repo, String branch) {
+        Map<String, Object> ref = new LinkedHashMap<>();
+        ref.put("id", "refs/heads/" + branch);
+        ref.put("displayId", branch);
+        ref.put("latestCommit", hash(repo, branch));
+        ref.put("repository", serverRepository(repo));
+        return ref;
+    }
+
+    private Map<String, Object> serverCommit(String hash) {
+        Map<String, Object> person = new LinkedHashMap<>();
+        person.put("name", "Simulated User");
+        person.put("emailAddress", "simulated@example.com");
+        Map<String, Object> commit = new LinkedHashMap<>();
+        commit.put("id", hash);
+        commit.put("displayId", hash.substring(0, 11));
+        commit.put("author", person);
+        commit.put("authorTimestamp", commitTime(hash));
+        commit.put("committer", person);
+        commit.put("committerTimestamp", commitTime(hash));
+        commit.put("message", "Synthetic commit " + hash.substring(0, 12));
+        commit.put("parents", Collections.emptyList());
+        return commit;
+    }
+
+    // synthetic data
+
+    private static String repositoryName(int index) {
+        return String.format("repo-%04d", index);
+    }
+
+    private int repositoryIndex(String repo) {
+        if (repo.startsWith("repo-")) {
+            try {
+                return Integer.parseInt(repo.substring(5));
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        return -1;
+    }
+
+    private boolean isRepository(String repo) {
+        int index = repositoryIndex(repo);
+        return index >= 0 && index < repositories && repositoryName(index).equals(repo);
+    }
+
+    private List<String> branchNames() {
+        List<String> names = new ArrayList<>(branches);
+        names.add(MASTER);
+        for (int i = 1; i < branches; i++) {
+            names.add(String.format("feature/branch-%04d", i));
+        }
+        return names;
+    }
+
+    private List<String> tagNames() {
+        List<String> names = new ArrayList<>(tags);
+        for (int i = 1; i <= tags; i++) {
+            names.add(String.format("v1.%d", i));
+        }
+        return names;
+    }
+
+    private static String pullRequestBranch(int id) {
+        return String.format("pr/change-%04d", id);
+    }
+
+    private int pullRequestId(String segment) {
+        try {
+            int id = Integer.parseInt(segment);
+            return id >= 1 && id <= pullRequests ? id : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String hash(String repo, String ref) {
+        return DigestUtils.sha1Hex(owner + "/" + repo + "@" + ref);
+    }
+
+    private String fullHash(String hash) {
+        if (hash.length() == 40) {
+            return hash;
+        }
+        return abbreviations.get(hash);
+    }
+
+    private static long commitTime(String hash) {
+        // spread the commits over a year, deterministically
+        return EPOCH + (Long.parseLong(hash.substring(0, 8), 16) % 31536000L) * 1000L;
+    }
+
+    private static String cloudDate(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'+00:00'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(millis));
+    }
+
+    private static String uuid(String seed) {
+        String hex = DigestUtils.md5Hex(seed);
+        return "{" + hex.substring(0, 8) + "-" + hex.substring(8, 12) + "-" + hex.substring(12, 16) + "-"
+                + hex.substring(16, 20) + "-" + hex.substring(20, 32) + "}";
+    }
+
+    private static Map<String, Object> href(String href) {
+        Map<String, Object> link = new LinkedHashMap<>();
+        link.put("href", href);
+        return link;
+    }
+
+    private static Map<String, Object> namedHref(String href, String name) {
+        Map<String, Object> link = href(href);
+        link.put("name", name);
+        return link;
+    }
+
+    private static Map<String, Object> links(Object... nameAndValues) {
+        Map<String, Object> links = new LinkedHashMap<>();
+        for (int i = 0; i < nameAndValues.length; i += 2) {
+            links.put((String) nameAndValues[i], nameAndValues[i + 1]);
+        }
+        return links;
+    }
+
+    // request parsing
+
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    private static boolean startsWith(List<String> segments, String... prefix) {
+        return segments.size() >= prefix.length && segments.subList(0, prefix.length).equals(Arrays.asList(prefix));
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int idx = pair.indexOf('=');
+            try {
+                if (idx < 0) {
+                    query.put(URLDecoder.decode(pair, "UTF-8"), "");
+                } else {
+                    query.put(URLDecoder.decode(pair.substring(0, idx), "UTF-8"),
+                            URLDecoder.decode(pair.substring(idx + 1), "UTF-8"));
+                }
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return query;
+    }
+
+    private static int intParam(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static class Response {
+        static final Response NOT_FOUND = new Response(404, "not-found", null);
+
+        final int status;
+        final String route;
+        final Object body;
+
+        Response(String route, Object body) {
+            this(200, route, body);
+        }
+
+        Response(int status, String route, Object body) {
+            this.status = status;
+            this.route = route;
+            this.body = body;
+        }
+    }
+}
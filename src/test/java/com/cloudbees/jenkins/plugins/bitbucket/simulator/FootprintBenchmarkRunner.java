@@ -0,0 +1,153 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.simulator;
+
+import com.cloudbees.jenkins.plugins.bitbucket.JsonParser;
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketApi;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketEndpointConfiguration;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketServerEndpoint;
+import com.cloudbees.jenkins.plugins.bitbucket.server.client.BitbucketServerAPIClient;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the heap retained by the branch and pull request listings of a large repository served by a
+ * {@link BitbucketSimulator}.
+ * <p>
+ * Not part of the regular test run, use {@code mvn test -Dtest=FootprintBenchmarkRunner} (or {@code -Dbenchmark}).
+ * The workload is configured with system properties prefixed by the name of this class: {@code .branches},
+ * {@code .pullRequests} and {@code .copies} (how many listings are held at once, to smooth out the measurement).
+ * Results are written to {@code footprint-report.json}.
+ */
+public class FootprintBenchmarkRunner {
+
+    private static final String PREFIX = FootprintBenchmarkRunner.class.getName();
+    private static final int BRANCHES = Integer.getInteger(PREFIX + ".branches", 2000);
+    private static final int PULL_REQUESTS = Integer.getInteger(PREFIX + ".pullRequests", 1000);
+    private static final int COPIES = Integer.getInteger(PREFIX + ".copies", 5);
+
+    private static final String OWNER = "SIMULATED";
+
+    @ClassRule
+    public static JenkinsRule j = new JenkinsRule();
+
+    private static final List<Map<String, Object>> results = new ArrayList<>();
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        FileUtils.writeStringToFile(new File("footprint-report.json"), JsonParser.toJson(results),
+                StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void cloudListings() throws Exception {
+        try (BitbucketSimulator simulator = simulator().start()) {
+            String repository = simulator.getRepositoryNames().get(0);
+            measure("cloud", () -> new SimulatedCloudApiClient(simulator, OWNER, repository));
+        }
+    }
+
+    @Test
+    public void serverListings() throws Exception {
+        try (BitbucketSimulator simulator = simulator().start()) {
+            BitbucketEndpointConfiguration.get()
+                    .updateEndpoint(new BitbucketServerEndpoint("Simulator", simulator.getServerUrl(), false, null));
+            String repository = simulator.getRepositoryNames().get(0);
+            measure("server", () -> new BitbucketServerAPIClient(simulator.getServerUrl(), OWNER, repository,
+                    null, false));
+        }
+    }
+
+    private static BitbucketSimulator simulator() {
+        return new BitbucketSimulator(OWNER)
+                .withRepositories(1)
+                .withBranches(BRANCHES)
+                .withTags(0)
+                .withPullRequests(PULL_REQUESTS);
+    }
+
+    private static void measure(String name, ClientFactory factory) throws Exception {
+        // warm up class loading and the shared interner before taking the baseline
+        factory.create().getBranches();
+
+        List<Object> held = new ArrayList<>();
+        long baseline = retainedHeap();
+        for (int i = 0; i < COPIES; i++) {
+            held.add(factory.create().getBranches());
+        }
+        long branches = retainedHeap() - baseline;
+
+        baseline = retainedHeap();
+        for (int i = 0; i < COPIES; i++) {
+            held.add(factory.create().getPullRequests());
+        }
+        long pullRequests = retainedHeap() - baseline;
+
+        assertEquals(2 * COPIES, held.size());
+        long bytesPerBranch = branches / ((long) COPIES * BRANCHES);
+        long bytesPerPullRequest = pullRequests / ((long) COPIES * PULL_REQUESTS);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("client", name);
+        result.put("branches", BRANCHES);
+        result.put("pullRequests", PULL_REQUESTS);
+        result.put("copies", COPIES);
+        result.put("bytesPerBranch", bytesPerBranch);
+        result.put("bytesPerPullRequest", bytesPerPullRequest);
+        results.add(result);
+        System.out.format("%-8s %6d bytes per branch, %6d bytes per pull request%n",
+                name, bytesPerBranch, bytesPerPullRequest);
+        held.clear();
+    }
+
+    private static long retainedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        // a few collections in a row so that weakly reachable and finalizable objects are gone too
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private interface ClientFactory {
+        BitbucketApi create();
+    }
+}
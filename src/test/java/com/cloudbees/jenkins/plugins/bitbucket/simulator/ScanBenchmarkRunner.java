@@ -0,0 +1,283 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.simulator;
+
+import com.cloudbees.jenkins.plugins.bitbucket.BitbucketSCMNavigator;
+import com.cloudbees.jenkins.plugins.bitbucket.BitbucketSCMSource;
+import com.cloudbees.jenkins.plugins.bitbucket.BranchDiscoveryTrait;
+import com.cloudbees.jenkins.plugins.bitbucket.JsonParser;
+import com.cloudbees.jenkins.plugins.bitbucket.OriginPullRequestDiscoveryTrait;
+import com.cloudbees.jenkins.plugins.bitbucket.TagDiscoveryTrait;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketEndpointConfiguration;
+import com.cloudbees.jenkins.plugins.bitbucket.endpoints.BitbucketServerEndpoint;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.TaskListener;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import jenkins.scm.api.SCMHeadObserver;
+import jenkins.scm.api.SCMNavigator;
+import jenkins.scm.api.SCMSource;
+import jenkins.scm.api.SCMSourceCriteria;
+import jenkins.scm.api.SCMSourceObserver;
+import jenkins.scm.api.SCMSourceOwner;
+import jenkins.scm.api.mixin.ChangeRequestCheckoutStrategy;
+import jenkins.scm.api.trait.SCMTrait;
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.mockito.Mockito;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times complete {@link BitbucketSCMSource} and {@link BitbucketSCMNavigator} scans against a
+ * {@link BitbucketSimulator}, recording the wall time and the number of API requests of every scan.
+ * <p>
+ * Not part of the regular test run, use {@code mvn test -Dtest=ScanBenchmarkRunner} (or {@code -Dbenchmark}). The
+ * workload is configured with system properties prefixed by the name of this class: {@code .repositories},
+ * {@code .branches}, {@code .tags}, {@code .pullRequests}, {@code .latency} (milliseconds per request),
+ * {@code .rateLimitEvery} (Cloud only), {@code .etags} (answer conditional requests) and {@code .iterations}. Results
+ * are written to {@code scan-report.json}. The Cloud scans ask for the fields they read only, compare with
+ * {@code -Dcom.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudApiClient.fullObjects=true} for the size of
+ * the complete objects, and with {@code -Dcom.cloudbees.jenkins.plugins.bitbucket.BitbucketSCMSource.singleRefsListing=true}
+ * to list the branches and tags of Cloud repositories at once.
+ */
+public class ScanBenchmarkRunner {
+
+    private static final String PREFIX = ScanBenchmarkRunner.class.getName();
+    private static final int REPOSITORIES = Integer.getInteger(PREFIX + ".repositories", 10);
+    private static final int BRANCHES = Integer.getInteger(PREFIX + ".branches", 50);
+    private static final int TAGS = Integer.getInteger(PREFIX + ".tags", 10);
+    private static final int PULL_REQUESTS = Integer.getInteger(PREFIX + ".pullRequests", 25);
+    private static final long LATENCY = Long.getLong(PREFIX + ".latency", 0L);
+    private static final int RATE_LIMIT_EVERY = Integer.getInteger(PREFIX + ".rateLimitEvery", 0);
+    private static final boolean ETAGS = Boolean.getBoolean(PREFIX + ".etags");
+    private static final int ITERATIONS = Integer.getInteger(PREFIX + ".iterations", 3);
+
+    private static final String OWNER = "SIMULATED";
+
+    private static final SCMSourceCriteria CRITERIA = new SCMSourceCriteria() {
+        @Override
+        public boolean isHead(@NonNull Probe probe, @NonNull TaskListener listener) throws IOException {
+            return probe.stat("Jenkinsfile").exists();
+        }
+    };
+
+    @ClassRule
+    public static JenkinsRule j = new JenkinsRule();
+
+    private static final List<Map<String, Object>> results = new ArrayList<>();
+
+    @AfterClass
+    public static void writeReport() throws IOException {
+        FileUtils.writeStringToFile(new File("scan-report.json"), JsonParser.toJson(results), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void cloudSourceRetrieve() throws Exception {
+        try (BitbucketSimulator simulator = simulator(RATE_LIMIT_EVERY).start()) {
+            SimulatorApiFactory.bind(simulator);
+            try {
+                BitbucketSCMSource source = source(simulator.getRepositoryNames().get(0));
+                measure("cloud-source-retrieve", simulator, 1, () -> fetch(source));
+            } finally {
+                SimulatorApiFactory.bind(null);
+            }
+        }
+    }
+
+    @Test
+    public void serverSourceRetrieve() throws Exception {
+        // the Server client does not retry rate limited requests
+        try (BitbucketSimulator simulator = simulator(0).start()) {
+            registerEndpoint(simulator);
+            BitbucketSCMSource source = source(simulator.getRepositoryNames().get(0));
+            source.setServerUrl(simulator.getServerUrl());
+            measure("server-source-retrieve", simulator, 1, () -> fetch(source));
+        }
+    }
+
+    @Test
+    public void cloudNavigatorVisitSources() throws Exception {
+        try (BitbucketSimulator simulator = simulator(RATE_LIMIT_EVERY).start()) {
+            SimulatorApiFactory.bind(simulator);
+            try {
+                BitbucketSCMNavigator navigator = navigator();
+                measure("cloud-navigator-visit", simulator, REPOSITORIES, () -> visit(navigator));
+            } finally {
+                SimulatorApiFactory.bind(null);
+            }
+        }
+    }
+
+    @Test
+    public void serverNavigatorVisitSources() throws Exception {
+        try (BitbucketSimulator simulator = simulator(0).start()) {
+            registerEndpoint(simulator);
+            BitbucketSCMNavigator navigator = navigator();
+            navigator.setServerUrl(simulator.getServerUrl());
+            measure("server-navigator-visit", simulator, REPOSITORIES, () -> visit(navigator));
+        }
+    }
+
+    private static BitbucketSimulator simulator(int rateLimitEvery) {
+        return new BitbucketSimulator(OWNER)
+                .withRepositories(REPOSITORIES)
+                .withBranches(BRANCHES)
+                .withTags(TAGS)
+                .withPullRequests(PULL_REQUESTS)
+                .withLatency(LATENCY)
+                .withRateLimitEvery(rateLimitEvery)
+                .withETags(ETAGS);
+    }
+
+    private static void registerEndpoint(BitbucketSimulator simulator) {
+        BitbucketEndpointConfiguration.get()
+                .updateEndpoint(new BitbucketServerEndpoint("Simulator", simulator.getServerUrl(), false, null));
+    }
+
+    private static BitbucketSCMSource source(String repository) {
+        BitbucketSCMSource source = new BitbucketSCMSource(OWNER, repository);
+        source.setTraits(Arrays.asList(
+                new BranchDiscoveryTrait(true, false),
+                new OriginPullRequestDiscoveryTrait(EnumSet.of(ChangeRequestCheckoutStrategy.HEAD)),
+                new TagDiscoveryTrait()
+        ));
+        return source;
+    }
+
+    private static BitbucketSCMNavigator navigator() {
+        BitbucketSCMNavigator navigator = new BitbucketSCMNavigator(OWNER);
+        List<SCMTrait<? extends SCMTrait<?>>> traits = new ArrayList<>();
+        traits.add(new BranchDiscoveryTrait(true, false));
+        traits.add(new OriginPullRequestDiscoveryTrait(EnumSet.of(ChangeRequestCheckoutStrategy.HEAD)));
+        traits.add(new TagDiscoveryTrait());
+        navigator.setTraits(traits);
+        return navigator;
+    }
+
+    private static int fetch(SCMSource source) throws IOException, InterruptedException {
+        return source.fetch(CRITERIA, SCMHeadObserver.collect(), TaskListener.NULL).result().size();
+    }
+
+    private static int visit(SCMNavigator navigator) throws IOException, InterruptedException {
+        ScanningObserver observer = new ScanningObserver();
+        navigator.visitSources(observer);
+        return observer.heads.get();
+    }
+
+    private void measure(String name, BitbucketSimulator simulator, int repositories, Scan scan) throws Exception {
+        int expectedHeads = repositories * (BRANCHES + TAGS + PULL_REQUESTS);
+        for (int iteration = 1; iteration <= ITERATIONS; iteration++) {
+            simulator.reset();
+            long start = System.nanoTime();
+            int heads = scan.run();
+            long wall = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals("heads discovered by " + name, expectedHeads, heads);
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("scan", name);
+            result.put("iteration", iteration);
+            result.put("wallMillis", wall);
+            result.put("heads", heads);
+            result.put("requests", simulator.getRequestCount());
+            result.put("rateLimited", simulator.getRateLimitedCount());
+            result.put("notModified", simulator.getNotModifiedCount());
+            result.put("responseBytes", simulator.getResponseBytes());
+            result.put("latencyMillis", LATENCY);
+            result.put("routes", simulator.getRouteCounts());
+            results.add(result);
+            System.out.format("%-24s #%d: %6d ms, %6d requests (%d rate limited), %d KiB received, %d heads%n",
+                    name, iteration, wall, simulator.getRequestCount(), simulator.getRateLimitedCount(),
+                    simulator.getResponseBytes() / 1024, heads);
+        }
+    }
+
+    private interface Scan {
+        int run() throws IOException, InterruptedException;
+    }
+
+    /**
+     * Scans every source the navigator discovers, like an organization folder would.
+     */
+    private static class ScanningObserver extends SCMSourceObserver {
+        private final SCMSourceOwner owner = Mockito.mock(SCMSourceOwner.class);
+        private final AtomicInteger heads = new AtomicInteger();
+
+        @NonNull
+        @Override
+        public SCMSourceOwner getContext() {
+            return owner;
+        }
+
+        @NonNull
+        @Override
+        public TaskListener getListener() {
+            return TaskListener.NULL;
+        }
+
+        @NonNull
+        @Override
+        public ProjectObserver observe(@NonNull String projectName) {
+            return new ProjectObserver() {
+                private final List<SCMSource> sources = new ArrayList<>();
+
+                @Override
+                public void addSource(@NonNull SCMSource source) {
+                    sources.add(source);
+                }
+
+                @Override
+                public void addAttribute(@NonNull String key, Object value) {
+                }
+
+                @Override
+                public void complete() throws InterruptedException {
+                    for (SCMSource source : sources) {
+                        try {
+                            heads.addAndGet(fetch(source));
+                        } catch (IOException e) {
+                            throw new IllegalStateException("Could not scan " + projectName, e);
+                        }
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void addAttribute(@NonNull String key, Object value) {
+        }
+    }
+}
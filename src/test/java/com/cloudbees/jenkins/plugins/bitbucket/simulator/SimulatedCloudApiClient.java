@@ -0,0 +1,57 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2017, CloudBees, Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.cloudbees.jenkins.plugins.bitbucket.simulator;
+
+import com.cloudbees.jenkins.plugins.bitbucket.api.BitbucketAuthenticator;
+import com.cloudbees.jenkins.plugins.bitbucket.client.BitbucketCloudApiClient;
+import java.io.IOException;
+import java.net.URI;
+import org.apache.http.HttpHost;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+
+/**
+ * A {@link BitbucketCloudApiClient} that sends every request to a {@link BitbucketSimulator} instead of
+ * {@code api.bitbucket.org}, keeping the real client code path (connection pool, paging, rate limit handling).
+ */
+public class SimulatedCloudApiClient extends BitbucketCloudApiClient {
+
+    private final String serverUrl;
+    private final HttpHost host;
+
+    public SimulatedCloudApiClient(BitbucketSimulator simulator, String owner, String repositoryName) {
+        super(false, 0, 0, owner, repositoryName, (BitbucketAuthenticator) null);
+        this.serverUrl = simulator.getServerUrl();
+        this.host = HttpHost.create(serverUrl);
+    }
+
+    @Override
+    protected CloseableHttpResponse executeMethod(HttpHost host, HttpRequestBase httpMethod)
+            throws InterruptedException, IOException {
+        URI uri = httpMethod.getURI();
+        String query = uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery();
+        httpMethod.setURI(URI.create(serverUrl + uri.getRawPath() + query));
+        return super.executeMethod(this.host, httpMethod);
+    }
+}